@@ -16,6 +16,10 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Face verification needs the embedding model in assets/face_embedder.tflite, which is
+        // not bundled yet. Until it is, attendance uses face detection (and liveness) only.
+        buildConfigField("boolean", "FACE_RECOGNITION_ENABLED", "false")
     }
 
     buildTypes {
@@ -35,6 +39,19 @@ android {
 
     buildFeatures {
         viewBinding = true
+        buildConfig = true
+    }
+
+    // Keep TFLite models uncompressed so they can be memory-mapped
+    androidResources {
+        noCompress += "tflite"
+    }
+
+    // Local unit tests (src/test) run on Robolectric
+    testOptions {
+        unitTests {
+            isIncludeAndroidResources = true
+        }
     }
 }
 
@@ -68,6 +85,9 @@ dependencies {
     // ML Kit
     implementation(libs.face.detection)
 
+    // TensorFlow Lite (face embeddings, model in assets/face_embedder.tflite)
+    implementation(libs.tensorflow.lite)
+
     // Retrofit
     implementation(libs.retrofit)
     implementation(libs.converter.gson)
@@ -94,6 +114,8 @@ dependencies {
 
     // Testing
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.mockito.core)
     androidTestImplementation(libs.androidx.junit.v115)
     androidTestImplementation(libs.androidx.espresso.core.v351)
 }
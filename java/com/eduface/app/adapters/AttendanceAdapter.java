@@ -1,7 +1,6 @@
 package com.eduface.app.adapters;
 
 import android.content.Context;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,31 +8,54 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.eduface.app.BuildConfig;
 import com.eduface.app.R;
-import com.eduface.app.models.Attendance; // Import your Attendance model
-// Removed Timestamp import as your model uses Date
-// import com.google.firebase.Timestamp;
 
-import java.text.SimpleDateFormat;
-import java.util.Date; // Import Date
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 /**
- * Adapter for displaying a list of Attendance objects in a RecyclerView,
- * using the item_attendance.xml layout and your Attendance model.
+ * Adapter for displaying a list of attendance records in a RecyclerView,
+ * using the item_attendance.xml layout. Rows arrive as precomputed AttendanceRowViewModels,
+ * so binding only assigns values. Updates are diffed on a background thread by document ID, so only changed rows are rebound.
  */
 public class AttendanceAdapter extends RecyclerView.Adapter<AttendanceAdapter.AttendanceViewHolder> {
 
-    private List<Attendance> attendanceList;
+    // Package-private so the diff rules can be tested
+    static final DiffUtil.ItemCallback<AttendanceRowViewModel> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<AttendanceRowViewModel>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull AttendanceRowViewModel oldItem,
+                                               @NonNull AttendanceRowViewModel newItem) {
+                    return oldItem.getId().equals(newItem.getId());
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull AttendanceRowViewModel oldItem,
+                                                  @NonNull AttendanceRowViewModel newItem) {
+                    return oldItem.equals(newItem);
+                }
+            };
+
+    private final AsyncListDiffer<AttendanceRowViewModel> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // Last list submitted to the differ. The differ's current list lags behind it while a
+    // diff is running, so changes are built on this one (never mutated once submitted).
+    private List<AttendanceRowViewModel> submittedList;
     private Context context;
 
+    // Bind timing, debug builds only (main thread only)
+    private long bindCount;
+    private long bindNanos;
+
     // Constructor
-    public AttendanceAdapter(List<Attendance> attendanceList, Context context) {
-        this.attendanceList = attendanceList;
+    public AttendanceAdapter(List<AttendanceRowViewModel> attendanceList, Context context) {
         this.context = context;
+        submittedList = new ArrayList<>(attendanceList);
+        differ.submitList(submittedList);
     }
 
     // ViewHolder class to hold the views for a single list item (item_attendance.xml)
@@ -67,85 +89,85 @@ public class AttendanceAdapter extends RecyclerView.Adapter<AttendanceAdapter.At
     public AttendanceViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         // Inflate the item_attendance.xml layout for each list item
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_attendance, parent, false);
-        return new AttendanceViewHolder(view);
+        AttendanceViewHolder holder = new AttendanceViewHolder(view);
+        // White text on both status backgrounds, so it is set once per view
+        holder.attendanceStatusTextView.setTextColor(ContextCompat.getColor(context, R.color.white));
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull AttendanceViewHolder holder, int position) {
-        // Get the Attendance object for the current position
-        Attendance attendance = attendanceList.get(position);
-
-        // --- Bind the data from the Attendance object to the views ---
-
-        if (attendance != null) {
-            // Set meeting title
-            holder.meetingTitleTextView.setText(attendance.getMeetingTitle());
-
-            // Set student name and email
-            holder.studentNameTextView.setText(attendance.getStudentName());
-            holder.studentEmailTextView.setText(attendance.getStudentEmail());
-
-
-            // Set attendance status and style based on the 'present' boolean
-            if (attendance.isPresent()) {
-                holder.attendanceStatusTextView.setText("Present");
-                holder.attendanceStatusTextView.setBackgroundResource(R.drawable.status_present_background); // Assuming you have this drawable
-                holder.attendanceStatusTextView.setTextColor(ContextCompat.getColor(context, R.color.white)); // Assuming white text on background
-            } else {
-                holder.attendanceStatusTextView.setText("Absent");
-                holder.attendanceStatusTextView.setBackgroundResource(R.drawable.status_absent_background); // Assuming you have this drawable
-                holder.attendanceStatusTextView.setTextColor(ContextCompat.getColor(context, R.color.white)); // Assuming white text on background
-            }
-
-
-            // Set join time
-            Date joinedAt = attendance.getJoinedAt(); // Use Date from your model
-            if (joinedAt != null) {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy, hh:mm a", Locale.US); // Matches format in XML tools:text
-                holder.joinTimeTextView.setText(dateFormat.format(joinedAt));
-                holder.joinTimeLabelTextView.setVisibility(View.VISIBLE);
-                holder.joinTimeTextView.setVisibility(View.VISIBLE);
-            } else {
-                holder.joinTimeTextView.setText("N/A");
-                holder.joinTimeLabelTextView.setVisibility(View.GONE); // Hide label if no time
-                holder.joinTimeTextView.setVisibility(View.GONE);
-            }
-
-            // Set duration (calculated in your Attendance model)
-            String duration = attendance.getFormattedDuration(); // Use the formatted duration from your model
-            if (!TextUtils.isEmpty(duration)) {
-                holder.durationTextView.setText(duration);
-                holder.durationLabelTextView.setVisibility(View.VISIBLE);
-                holder.durationTextView.setVisibility(View.VISIBLE);
-            } else {
-                holder.durationTextView.setText("N/A");
-                holder.durationLabelTextView.setVisibility(View.GONE); // Hide label if no duration
-                holder.durationTextView.setVisibility(View.GONE);
-            }
-
-
-        } else {
-            // Handle case where attendance object is null
-            holder.meetingTitleTextView.setText("Error loading attendance");
-            holder.attendanceStatusTextView.setText("");
-            holder.studentNameTextView.setText("");
-            holder.studentEmailTextView.setText("");
-            holder.joinTimeTextView.setText("");
-            holder.durationTextView.setText("");
-            holder.joinTimeLabelTextView.setVisibility(View.GONE);
-            holder.durationLabelTextView.setVisibility(View.GONE);
+        long start = BuildConfig.DEBUG ? System.nanoTime() : 0;
+        // Get the precomputed view model for the current position
+        AttendanceRowViewModel attendance = differ.getCurrentList().get(position);
+
+        // --- Assign the resolved values to the views ---
+        holder.meetingTitleTextView.setText(attendance.getMeetingTitle());
+        holder.studentNameTextView.setText(attendance.getStudentName());
+        holder.studentEmailTextView.setText(attendance.getStudentEmail());
+        holder.attendanceStatusTextView.setText(attendance.getStatusText());
+        holder.attendanceStatusTextView.setBackgroundResource(attendance.getStatusBackground());
+
+        // Hide the join time and its label if unknown
+        String joinTime = attendance.getJoinTime();
+        int joinTimeVisibility = joinTime != null ? View.VISIBLE : View.GONE;
+        holder.joinTimeTextView.setText(joinTime);
+        holder.joinTimeTextView.setVisibility(joinTimeVisibility);
+        holder.joinTimeLabelTextView.setVisibility(joinTimeVisibility);
+
+        // Hide the duration and its label if there is none
+        String duration = attendance.getDuration();
+        int durationVisibility = duration != null ? View.VISIBLE : View.GONE;
+        holder.durationTextView.setText(duration);
+        holder.durationTextView.setVisibility(durationVisibility);
+        holder.durationLabelTextView.setVisibility(durationVisibility);
+
+        if (BuildConfig.DEBUG) {
+            bindCount++;
+            bindNanos += System.nanoTime() - start;
         }
     }
 
+    /**
+     * Average time spent in onBindViewHolder, in microseconds (0 in release builds)
+     */
+    public double getAverageBindMicros() {
+        return bindCount == 0 ? 0 : bindNanos / (double) bindCount / 1000.0;
+    }
+
+    public long getBindCount() {
+        return bindCount;
+    }
+
     @Override
     public int getItemCount() {
         // Return the number of items in the list
-        return attendanceList != null ? attendanceList.size() : 0;
+        return differ.getCurrentList().size();
+    }
+
+    // Method to update the data in the adapter (diffed in the background, then applied)
+    public void updateAttendance(List<AttendanceRowViewModel> newAttendanceList) {
+        updateAttendance(newAttendanceList, null);
+    }
+
+    /**
+     * Replace the list; onCommitted runs on the main thread once the change is applied
+     */
+    public void updateAttendance(List<AttendanceRowViewModel> newAttendanceList, Runnable onCommitted) {
+        submittedList = new ArrayList<>(newAttendanceList);
+        differ.submitList(submittedList, onCommitted);
     }
 
-    // Method to update the data in the adapter
-    public void updateAttendance(List<Attendance> newAttendanceList) {
-        this.attendanceList = newAttendanceList;
-        notifyDataSetChanged(); // Notify the RecyclerView that the data has changed
+    /**
+     * Add a page of records at the end of the list; onCommitted runs once it is applied.
+     * Appends to the last submitted list, so a page arriving while an earlier update is
+     * still being diffed is not lost.
+     */
+    public void appendAttendance(List<AttendanceRowViewModel> page, Runnable onCommitted) {
+        List<AttendanceRowViewModel> combined = new ArrayList<>(submittedList.size() + page.size());
+        combined.addAll(submittedList);
+        combined.addAll(page);
+        submittedList = combined;
+        differ.submitList(combined, onCommitted);
     }
 }
@@ -0,0 +1,135 @@
+package com.eduface.app.adapters;
+
+import com.eduface.app.R;
+import com.eduface.app.models.AttendanceRow;
+import com.eduface.app.utils.DateFormatCache;
+
+import java.util.Objects;
+
+/**
+ * Display-ready attendance row for AttendanceAdapter.
+ * Every string and the status style are resolved once, off the main thread, when a page
+ * arrives (see from()); binding a row only assigns these values to views.
+ */
+public final class AttendanceRowViewModel {
+
+    public static final int STATUS_PRESENT = 0;
+    public static final int STATUS_ABSENT = 1;
+
+    private final String id;
+    private final String meetingTitle;
+    private final String studentName;
+    private final String studentEmail;
+    private final int status;
+    private final String statusText;
+    private final int statusBackground;
+    private final String joinTime; // Null when the join time is unknown
+    private final String duration; // Null when there is no duration to show
+
+    private AttendanceRowViewModel(String id, String meetingTitle, String studentName, String studentEmail,
+                                   int status, String joinTime, String duration) {
+        this.id = id;
+        this.meetingTitle = meetingTitle;
+        this.studentName = studentName;
+        this.studentEmail = studentEmail;
+        this.status = status;
+        this.statusText = status == STATUS_PRESENT ? "Present" : "Absent";
+        this.statusBackground = status == STATUS_PRESENT
+                ? R.drawable.status_present_background : R.drawable.status_absent_background;
+        this.joinTime = joinTime;
+        this.duration = duration;
+    }
+
+    /**
+     * Resolve the display values of a row (safe to call on any thread).
+     * An open attendance's duration is computed against the current time and then kept:
+     * like every other value here it is a snapshot taken when the page was decoded, and it
+     * only moves on when the list is loaded again (which decodes the pages afresh).
+     */
+    public static AttendanceRowViewModel from(AttendanceRow row) {
+        String joinTime = row.getJoinedAtMillis() != AttendanceRow.NO_TIME
+                ? DateFormatCache.forPattern(DateFormatCache.PATTERN_ATTENDANCE_TIME).format(row.getJoinedAtMillis())
+                : null;
+        String duration = row.getFormattedDuration();
+        return new AttendanceRowViewModel(row.getId(), row.getMeetingTitle(), row.getStudentName(),
+                row.getStudentEmail(), row.isPresent() ? STATUS_PRESENT : STATUS_ABSENT, joinTime,
+                duration == null || duration.isEmpty() ? null : duration);
+    }
+
+    /**
+     * Firestore document ID of the attendance record
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getMeetingTitle() {
+        return meetingTitle;
+    }
+
+    public String getStudentName() {
+        return studentName;
+    }
+
+    public String getStudentEmail() {
+        return studentEmail;
+    }
+
+    /**
+     * STATUS_PRESENT or STATUS_ABSENT
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public String getStatusText() {
+        return statusText;
+    }
+
+    /**
+     * Drawable resource for the status badge
+     */
+    public int getStatusBackground() {
+        return statusBackground;
+    }
+
+    /**
+     * Formatted join time, or null if unknown
+     */
+    public String getJoinTime() {
+        return joinTime;
+    }
+
+    /**
+     * Formatted duration, or null if there is none
+     */
+    public String getDuration() {
+        return duration;
+    }
+
+    /**
+     * View models are equal when they would bind identically (used to diff list refreshes)
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AttendanceRowViewModel)) {
+            return false;
+        }
+        AttendanceRowViewModel other = (AttendanceRowViewModel) o;
+        return status == other.status
+                && Objects.equals(id, other.id)
+                && Objects.equals(meetingTitle, other.meetingTitle)
+                && Objects.equals(studentName, other.studentName)
+                && Objects.equals(studentEmail, other.studentEmail)
+                && Objects.equals(joinTime, other.joinTime)
+                && Objects.equals(duration, other.duration);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, meetingTitle, studentName, studentEmail, status, joinTime, duration);
+    }
+}
@@ -10,24 +10,47 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.eduface.app.R;
 import com.eduface.app.models.Meeting; // Import your Meeting model
 import com.eduface.app.ui.meeting.MeetingActivity; // Import your MeetingActivity
 import com.eduface.app.ui.dashboard.TeacherDashboardActivity; // Import TeacherDashboardActivity if needed for context checks
+import com.eduface.app.utils.DateFormatCache;
 import com.google.firebase.Timestamp; // Import Timestamp
 
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
-// Adapter for displaying a list of Meeting objects in a RecyclerView
+// Adapter for displaying a list of Meeting objects in a RecyclerView.
+// Updates are diffed on a background thread by document ID, so a refresh only rebinds changed rows.
 public class MeetingAdapter extends RecyclerView.Adapter<MeetingAdapter.MeetingViewHolder> {
 
-    private List<Meeting> meetingList;
+    // Package-private so the diff rules can be tested
+    static final DiffUtil.ItemCallback<Meeting> DIFF_CALLBACK = new DiffUtil.ItemCallback<Meeting>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Meeting oldItem, @NonNull Meeting newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Meeting oldItem, @NonNull Meeting newItem) {
+            // Only the fields shown by onBindViewHolder
+            return Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                    && Objects.equals(oldItem.getMeetingCode(), newItem.getMeetingCode())
+                    && oldItem.isActive() == newItem.isActive()
+                    && Objects.equals(oldItem.getScheduledTime(), newItem.getScheduledTime())
+                    && Objects.equals(oldItem.getCreatedAt(), newItem.getCreatedAt());
+        }
+    };
+
+    private final AsyncListDiffer<Meeting> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private Context context;
+    private final DateFormatCache dateTimeFormat = DateFormatCache.forPattern(DateFormatCache.PATTERN_MEETING_TIME);
     private OnMeetingActionListener listener; // Listener for button clicks
 
     // Interface to handle button clicks in the adapter
@@ -38,9 +61,9 @@ public class MeetingAdapter extends RecyclerView.Adapter<MeetingAdapter.MeetingV
 
     // Constructor
     public MeetingAdapter(List<Meeting> meetingList, Context context, OnMeetingActionListener listener) {
-        this.meetingList = meetingList;
         this.context = context;
         this.listener = listener;
+        differ.submitList(new ArrayList<>(meetingList));
     }
 
     // ViewHolder class to hold the views for a single list item (item_meeting.xml)
@@ -75,7 +98,7 @@ public class MeetingAdapter extends RecyclerView.Adapter<MeetingAdapter.MeetingV
     @Override
     public void onBindViewHolder(@NonNull MeetingViewHolder holder, int position) {
         // Get the Meeting object for the current position
-        Meeting meeting = meetingList.get(position);
+        Meeting meeting = differ.getCurrentList().get(position);
 
         // --- Crucial part: Bind the data from the Meeting object to the views ---
 
@@ -116,8 +139,7 @@ public class MeetingAdapter extends RecyclerView.Adapter<MeetingAdapter.MeetingV
             }
 
             if (displayDate != null) {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy 'at' hh:mm a", Locale.US);
-                holder.dateTimeTextView.setText(label + dateFormat.format(displayDate));
+                holder.dateTimeTextView.setText(label + dateTimeFormat.format(displayDate));
             } else {
                 holder.dateTimeTextView.setText("Date/Time N/A");
             }
@@ -126,9 +148,11 @@ public class MeetingAdapter extends RecyclerView.Adapter<MeetingAdapter.MeetingV
             // --- Set click listeners for buttons and handle visibility ---
 
             // Join button click listener
+            // Look the meeting up on click: an unchanged row is not rebound when the list refreshes
             holder.joinMeetingButton.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onJoinMeetingClick(meeting);
+                int current = holder.getBindingAdapterPosition();
+                if (listener != null && current != RecyclerView.NO_POSITION) {
+                    listener.onJoinMeetingClick(differ.getCurrentList().get(current));
                 }
             });
 
@@ -163,12 +187,11 @@ public class MeetingAdapter extends RecyclerView.Adapter<MeetingAdapter.MeetingV
     @Override
     public int getItemCount() {
         // Return the number of items in the list
-        return meetingList != null ? meetingList.size() : 0;
+        return differ.getCurrentList().size();
     }
 
-    // Method to update the data in the adapter and refresh the RecyclerView
+    // Method to update the data in the adapter; unchanged meetings are not rebound
     public void updateMeetings(List<Meeting> newMeetingList) {
-        this.meetingList = newMeetingList;
-        notifyDataSetChanged(); // Notify the RecyclerView that the data has changed
+        differ.submitList(new ArrayList<>(newMeetingList));
     }
 }
@@ -127,8 +127,13 @@ public class Attendance {
      */
     @Exclude
     public String getFormattedDuration() {
-        long minutes = getDurationMinutes();
+        return formatDuration(getDurationMinutes());
+    }
 
+    /**
+     * Format a duration in minutes as shown in attendance lists
+     */
+    public static String formatDuration(long minutes) {
         if (minutes < 60) {
             return minutes + " min";
         } else {
@@ -0,0 +1,150 @@
+package com.eduface.app.models;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Immutable attendance record for display in lists.
+ * Decoded from a Firestore snapshot off the main thread (see fromSnapshot()); times are
+ * kept as epoch millis rather than Date objects so a page of rows stays small.
+ */
+public final class AttendanceRow {
+
+    // Value of a time that is not set
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private final String id;
+    private final String meetingId;
+    private final String userId;
+    private final String studentEmail;
+    private final String studentName;
+    private final String meetingTitle;
+    private final long joinedAtMillis;
+    private final long leftAtMillis;
+    private final boolean present;
+
+    public AttendanceRow(String id, String meetingId, String userId, String studentEmail,
+                         String studentName, String meetingTitle, long joinedAtMillis,
+                         long leftAtMillis, boolean present) {
+        this.id = id;
+        this.meetingId = meetingId;
+        this.userId = userId;
+        this.studentEmail = studentEmail;
+        this.studentName = studentName;
+        this.meetingTitle = meetingTitle;
+        this.joinedAtMillis = joinedAtMillis;
+        this.leftAtMillis = leftAtMillis;
+        this.present = present;
+    }
+
+    /**
+     * Decode an attendance document (safe to call on any thread)
+     */
+    public static AttendanceRow fromSnapshot(DocumentSnapshot document) {
+        return new AttendanceRow(
+                document.getId(),
+                document.getString("meetingId"),
+                document.getString("userId"),
+                document.getString("studentEmail"),
+                document.getString("studentName"),
+                document.getString("meetingTitle"),
+                toMillis(document.getDate("joinedAt")),
+                toMillis(document.getDate("leftAt")),
+                Boolean.TRUE.equals(document.getBoolean("present")));
+    }
+
+    private static long toMillis(Date date) {
+        return date != null ? date.getTime() : NO_TIME;
+    }
+
+    /**
+     * Firestore document ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getMeetingId() {
+        return meetingId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getStudentEmail() {
+        return studentEmail;
+    }
+
+    public String getStudentName() {
+        return studentName;
+    }
+
+    public String getMeetingTitle() {
+        return meetingTitle;
+    }
+
+    /**
+     * Join time in epoch millis, or NO_TIME
+     */
+    public long getJoinedAtMillis() {
+        return joinedAtMillis;
+    }
+
+    /**
+     * Leave time in epoch millis, or NO_TIME while the student is still in the meeting
+     */
+    public long getLeftAtMillis() {
+        return leftAtMillis;
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    /**
+     * Duration of attendance in minutes (same rules as Attendance.getDurationMinutes())
+     */
+    public long getDurationMinutes() {
+        if (joinedAtMillis == NO_TIME) {
+            return 0;
+        }
+        long endMillis = leftAtMillis != NO_TIME ? leftAtMillis : System.currentTimeMillis();
+        return (endMillis - joinedAtMillis) / (60 * 1000);
+    }
+
+    public String getFormattedDuration() {
+        return Attendance.formatDuration(getDurationMinutes());
+    }
+
+    /**
+     * Rows are equal when every decoded field is (used to diff list refreshes)
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AttendanceRow)) {
+            return false;
+        }
+        AttendanceRow other = (AttendanceRow) o;
+        return joinedAtMillis == other.joinedAtMillis
+                && leftAtMillis == other.leftAtMillis
+                && present == other.present
+                && Objects.equals(id, other.id)
+                && Objects.equals(meetingId, other.meetingId)
+                && Objects.equals(userId, other.userId)
+                && Objects.equals(studentEmail, other.studentEmail)
+                && Objects.equals(studentName, other.studentName)
+                && Objects.equals(meetingTitle, other.meetingTitle);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, meetingId, userId, studentEmail, studentName, meetingTitle,
+                joinedAtMillis, leftAtMillis, present);
+    }
+}
@@ -0,0 +1,217 @@
+package com.eduface.app.recognition;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import com.eduface.app.BuildConfig;
+import com.eduface.app.utils.PreferenceManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks the fastest backend for the embedding model on this device with a short
+ * micro-benchmark: each backend runs the model on the same synthetic face, warm-up runs
+ * first, then the median of the timed runs counts. A backend is only eligible if its
+ * embedding agrees with the reference CPU kernels, since some accelerator drivers lose
+ * precision. The choice is cached per device model, so the benchmark runs once; a failed
+ * benchmark is cached too and only retried after an app update.
+ */
+public final class EmbedderDelegateSelector {
+
+    private static final String TAG = "EmbedderDelegate";
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int TIMED_RUNS = 10;
+    // Minimum cosine similarity to the CPU embedding of the same input
+    private static final float MIN_AGREEMENT = 0.99f;
+    // Cached in place of a backend name when the benchmark failed, followed by the version code
+    private static final String FAILED_PREFIX = "failed:";
+
+    private static boolean backgroundSelectionStarted;
+
+    private EmbedderDelegateSelector() {
+    }
+
+    /**
+     * Backend to use on this device: the cached benchmark result, or XNNPACK if the
+     * device has not been benchmarked yet
+     */
+    public static int getPreferredDelegate(Context context) {
+        int delegate = FaceEmbedder.parseDelegate(
+                new PreferenceManager(context).getEmbedderDelegate(Build.MODEL));
+        return delegate >= 0 ? delegate : FaceEmbedder.DELEGATE_XNNPACK;
+    }
+
+    /**
+     * Whether this device model has neither a cached backend nor a failure cached by this app version
+     */
+    public static boolean needsSelection(Context context) {
+        String cached = new PreferenceManager(context).getEmbedderDelegate(Build.MODEL);
+        return cached == null || (cached.startsWith(FAILED_PREFIX) && !cached.equals(failureMarker()));
+    }
+
+    /**
+     * Run selectAndCache() once per process on its own low-priority thread, keeping the
+     * multi-second benchmark off the shared camera analysis thread
+     */
+    public static synchronized void selectInBackground(Context context) {
+        if (backgroundSelectionStarted || !needsSelection(context)) {
+            return;
+        }
+        backgroundSelectionStarted = true;
+        final Context appContext = context.getApplicationContext();
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                selectAndCache(appContext);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Embedding backend benchmark failed", e);
+            }
+        }, "EduFace-EmbedderBenchmark");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String failureMarker() {
+        return FAILED_PREFIX + BuildConfig.VERSION_CODE;
+    }
+
+    /**
+     * Benchmark the backends on the bundled model and cache the winner, unless this device
+     * model already has a cached choice or failure. A failure is cached before it is rethrown.
+     * Blocks for up to a few seconds; call off the main thread.
+     *
+     * @return The chosen backend
+     * @throws IOException if the model asset is missing
+     */
+    public static int selectAndCache(Context context) throws IOException {
+        PreferenceManager preferenceManager = new PreferenceManager(context);
+        int cached = FaceEmbedder.parseDelegate(preferenceManager.getEmbedderDelegate(Build.MODEL));
+        if (cached >= 0) {
+            return cached;
+        }
+        if (!needsSelection(context)) {
+            // Failed before on this version
+            return FaceEmbedder.DELEGATE_XNNPACK;
+        }
+
+        StringBuilder report = new StringBuilder();
+        int delegate;
+        try {
+            delegate = select(FaceEmbedder.loadModel(context), report);
+        } catch (IOException | RuntimeException e) {
+            preferenceManager.setEmbedderDelegate(Build.MODEL, failureMarker());
+            throw e;
+        }
+        preferenceManager.setEmbedderDelegate(Build.MODEL, FaceEmbedder.getDelegateName(delegate));
+        Log.d(TAG, "Embedding backend for " + Build.MODEL + ": " + FaceEmbedder.getDelegateName(delegate)
+                + " (" + report + ")");
+        return delegate;
+    }
+
+    /**
+     * Benchmark every backend on a model and return the fastest one that produces correct
+     * embeddings.
+     *
+     * @param report Receives one line per backend: latency or why it was skipped
+     */
+    public static int select(ByteBuffer model, StringBuilder report) {
+        return select(model, report, FaceEmbedder.Backend::open);
+    }
+
+    /**
+     * select() with the backends opened by a given factory (tests substitute their own)
+     */
+    static int select(ByteBuffer model, StringBuilder report, FaceEmbedder.BackendFactory backendFactory) {
+        // The reference kernels run first: their output is what the others are checked against
+        float[] reference = null;
+        int best = FaceEmbedder.DELEGATE_CPU;
+        long bestNanos = Long.MAX_VALUE;
+        for (int delegate = FaceEmbedder.DELEGATE_CPU; delegate >= FaceEmbedder.DELEGATE_NNAPI; delegate--) {
+            FaceEmbedder.Backend backend;
+            try {
+                backend = backendFactory.open(model, delegate);
+            } catch (RuntimeException e) {
+                report.append(FaceEmbedder.getDelegateName(delegate)).append(": unavailable, ")
+                        .append(e.getMessage()).append('\n');
+                continue;
+            }
+            try {
+                float[] embedding = new float[backend.interpreter.getOutputTensor(0).shape()[1]];
+                long nanos = benchmark(backend, embedding);
+                if (reference == null) {
+                    reference = embedding;
+                } else if (agreement(reference, embedding) < MIN_AGREEMENT) {
+                    report.append(FaceEmbedder.getDelegateName(delegate)).append(": embeddings differ from cpu\n");
+                    continue;
+                }
+                report.append(FaceEmbedder.getDelegateName(delegate)).append(": ")
+                        .append(nanos / 1000).append(" us per embedding\n");
+                if (nanos < bestNanos) {
+                    best = delegate;
+                    bestNanos = nanos;
+                }
+            } catch (RuntimeException e) {
+                report.append(FaceEmbedder.getDelegateName(delegate)).append(": failed, ")
+                        .append(e.getMessage()).append('\n');
+            } finally {
+                backend.close();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Median latency of one embedding
+     *
+     * @param embedding Receives the (normalized) output of the last run
+     */
+    private static long benchmark(FaceEmbedder.Backend backend, float[] embedding) {
+        int[] shape = backend.interpreter.getInputTensor(0).shape();
+        ByteBuffer input = syntheticFace(shape[1]);
+        float[][] output = new float[1][embedding.length];
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            input.rewind();
+            backend.interpreter.run(input, output);
+        }
+        long[] nanos = new long[TIMED_RUNS];
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            input.rewind();
+            long start = System.nanoTime();
+            backend.interpreter.run(input, output);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        System.arraycopy(output[0], 0, embedding, 0, embedding.length);
+        EmbeddingIndex.normalize(embedding);
+        return nanos[TIMED_RUNS / 2];
+    }
+
+    /**
+     * Deterministic noise input in the model's range, the same for every backend
+     */
+    private static ByteBuffer syntheticFace(int size) {
+        ByteBuffer input = ByteBuffer.allocateDirect(4 * size * size * 3).order(ByteOrder.nativeOrder());
+        Random random = new Random(42);
+        while (input.hasRemaining()) {
+            input.putFloat(FaceEmbedder.normalizeChannel(random.nextInt(256)));
+        }
+        return input;
+    }
+
+    private static float agreement(float[] a, float[] b) {
+        float dot = 0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+}
@@ -0,0 +1,182 @@
+package com.eduface.app.recognition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of enrolled face embeddings, keyed by user ID.
+ * Vectors are kept int8-quantized, either in memory in a QuantizedEmbeddingStore (one flat
+ * byte array) or in a memory-mapped FaceTemplateFile that is searched in place, so a whole
+ * school fits in a few hundred KB and a search is one linear pass.
+ */
+public class EmbeddingIndex {
+
+    // Exactly one of these holds the templates
+    private final QuantizedEmbeddingStore store;
+    private final FaceTemplateFile templates;
+    private final Map<String, Integer> rowsById = new HashMap<>();
+
+    // Single-result scratch for findBest
+    private final int[] bestRow = new int[1];
+    private final float[] bestScore = new float[1];
+
+    /**
+     * Best match for a query embedding
+     */
+    public static class Match {
+        private final String id;
+        private final float score;
+        private final float[] embedding;
+
+        public Match(String id, float score) {
+            this(id, score, null);
+        }
+
+        public Match(String id, float score, float[] embedding) {
+            this.id = id;
+            this.score = score;
+            this.embedding = embedding;
+        }
+
+        /**
+         * Enrolled user ID
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Cosine similarity between the query and the enrolled embedding (-1 to 1)
+         */
+        public float getScore() {
+            return score;
+        }
+
+        /**
+         * Normalized query embedding that produced this match, or null if not kept
+         */
+        public float[] getEmbedding() {
+            return embedding;
+        }
+    }
+
+    public EmbeddingIndex(int dimension) {
+        this.store = new QuantizedEmbeddingStore(dimension);
+        this.templates = null;
+    }
+
+    /**
+     * Index backed by a template file (see FaceTemplateFile.loadIndex)
+     */
+    EmbeddingIndex(FaceTemplateFile templates) {
+        this.store = null;
+        this.templates = templates;
+    }
+
+    public int getDimension() {
+        return templates != null ? templates.getDimension() : store.getDimension();
+    }
+
+    public synchronized int size() {
+        return templates != null ? templates.getLiveCount() : store.size();
+    }
+
+    /**
+     * Add an embedding for a user.
+     * Adding an ID that already exists replaces its embedding.
+     * A file-backed index appends the embedding to its file.
+     *
+     * @throws UncheckedIOException If the template file could not be written
+     */
+    public synchronized void add(String id, float[] embedding) {
+        if (templates != null) {
+            try {
+                templates.append(id, embedding);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+        Integer row = rowsById.get(id);
+        if (row != null) {
+            store.set(row, embedding);
+        } else {
+            rowsById.put(id, store.add(id, embedding));
+        }
+    }
+
+    /**
+     * Whether a user is enrolled
+     */
+    public synchronized boolean contains(String id) {
+        return templates != null ? templates.contains(id) : rowsById.containsKey(id);
+    }
+
+    /**
+     * Decoded embedding of a user, or null if not enrolled.
+     * Values are dequantized, so they are close to (not exactly) what was added.
+     */
+    public synchronized float[] getEmbedding(String id) {
+        if (templates != null) {
+            return templates.getEmbedding(id);
+        }
+        Integer row = rowsById.get(id);
+        return row != null ? store.get(row) : null;
+    }
+
+    /**
+     * Find the enrolled embedding most similar to a query
+     *
+     * @return Best match, or null if the index is empty
+     */
+    public synchronized Match findBest(float[] query) {
+        if (templates != null) {
+            // One lock on the file, so the record cannot be compacted away before its ID is read
+            synchronized (templates) {
+                int found = templates.search(query, 1, -Float.MAX_VALUE, bestRow, bestScore);
+                return found == 0 ? null : new Match(templates.getId(bestRow[0]), bestScore[0]);
+            }
+        }
+        int found = store.search(query, 1, -Float.MAX_VALUE, bestRow, bestScore);
+        return found == 0 ? null : new Match(store.getId(bestRow[0]), bestScore[0]);
+    }
+
+    /**
+     * Find up to k enrolled users with a similarity of at least threshold,
+     * writing rows and scores into the caller's arrays (no allocation).
+     * Rows of a file-backed index are valid until the file is next modified.
+     *
+     * @return Number of results written
+     */
+    public synchronized int findTopK(float[] query, int k, float threshold, int[] outRows, float[] outScores) {
+        return templates != null
+                ? templates.search(query, k, threshold, outRows, outScores)
+                : store.search(query, k, threshold, outRows, outScores);
+    }
+
+    /**
+     * User ID stored in a row returned by findTopK
+     */
+    public synchronized String getId(int row) {
+        return templates != null ? templates.getId(row) : store.getId(row);
+    }
+
+    /**
+     * Scale a vector to unit length in place
+     */
+    public static void normalize(float[] vector) {
+        float sum = 0f;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0f) {
+            return;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.eduface.app.recognition;
+
+import android.util.Log;
+
+import com.eduface.app.utils.IoExecutor;
+
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.SetOptions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads enrolled face embeddings from the Firestore "users" collection.
+ * Each enrolled user stores their embedding in the "faceEmbedding" field
+ * as a Blob of little-endian float32 values. A local FaceTemplateFile caches them
+ * between app starts.
+ */
+public class EnrolledFaceRepository {
+
+    private static final String TAG = "EnrolledFaceRepository";
+
+    public static final String FIELD_FACE_EMBEDDING = "faceEmbedding";
+
+    private final FirebaseFirestore db;
+
+    /**
+     * Interface for index loading callbacks
+     */
+    public interface IndexCallback {
+        void onIndexLoaded(EmbeddingIndex index);
+        void onFailure(String error);
+    }
+
+    /**
+     * Interface for template save callbacks
+     */
+    public interface SaveCallback {
+        void onSaved();
+        void onFailure(String error);
+    }
+
+    public EnrolledFaceRepository() {
+        this.db = FirebaseFirestore.getInstance();
+    }
+
+    /**
+     * Build an index of every student with an enrolled face.
+     * Embeddings of a different dimension (older model) are skipped.
+     */
+    public void loadStudentIndex(final int dimension, final IndexCallback callback) {
+        db.collection("users")
+                .whereEqualTo("role", "student")
+                .get()
+                .addOnSuccessListener(queryDocumentSnapshots -> {
+                    EmbeddingIndex index = new EmbeddingIndex(dimension);
+                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
+                        Blob blob = document.getBlob(FIELD_FACE_EMBEDDING);
+                        if (blob == null) {
+                            continue;
+                        }
+                        float[] embedding = decode(blob.toBytes());
+                        if (embedding.length == dimension) {
+                            index.add(document.getId(), embedding);
+                        }
+                    }
+                    callback.onIndexLoaded(index);
+                })
+                .addOnFailureListener(e -> callback.onFailure(
+                        "Failed to load enrolled faces: " + e.getMessage()));
+    }
+
+    /**
+     * Bring a local template file up to date with Firestore: append new or changed
+     * templates, tombstone users who no longer have one, compact if needed,
+     * then return the refreshed index. The file is updated on the I/O thread;
+     * the callback runs on the main thread.
+     */
+    public void syncTemplateFile(final FaceTemplateFile templateFile, final IndexCallback callback) {
+        final int dimension = templateFile.getDimension();
+        db.collection("users")
+                .whereEqualTo("role", "student")
+                .get()
+                .continueWith(IoExecutor.get(), task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    Map<String, float[]> changed = new HashMap<>();
+                    Set<String> removed = templateFile.getLiveIds();
+                    for (QueryDocumentSnapshot document : task.getResult()) {
+                        Blob blob = document.getBlob(FIELD_FACE_EMBEDDING);
+                        if (blob == null) {
+                            continue;
+                        }
+                        float[] embedding = decode(blob.toBytes());
+                        if (embedding.length != dimension) {
+                            continue;
+                        }
+                        removed.remove(document.getId());
+                        if (!templateFile.isCurrent(document.getId(), embedding)) {
+                            changed.put(document.getId(), embedding);
+                        }
+                    }
+
+                    try {
+                        templateFile.appendAll(changed);
+                        for (String id : removed) {
+                            templateFile.remove(id);
+                        }
+                        if (templateFile.needsCompaction()) {
+                            templateFile.compact();
+                        }
+                        templateFile.setLastSyncMillis(System.currentTimeMillis());
+                        Log.d(TAG, "Template file synced: " + changed.size() + " updated, "
+                                + removed.size() + " removed.");
+                    } catch (IOException e) {
+                        Log.e(TAG, "Failed to update template file", e);
+                    }
+                    return templateFile.loadIndex();
+                })
+                .addOnSuccessListener(callback::onIndexLoaded)
+                .addOnFailureListener(e -> callback.onFailure(
+                        "Failed to load enrolled faces: " + e.getMessage()));
+    }
+
+    /**
+     * Store a user's face template (see FaceEnrollment), replacing any previous one
+     */
+    public void saveTemplate(String userId, float[] template, final SaveCallback callback) {
+        Map<String, Object> data = new HashMap<>();
+        data.put(FIELD_FACE_EMBEDDING, Blob.fromBytes(encode(template)));
+        db.collection("users").document(userId)
+                .set(data, SetOptions.merge())
+                .addOnSuccessListener(unused -> callback.onSaved())
+                .addOnFailureListener(e -> callback.onFailure(
+                        "Failed to save face template: " + e.getMessage()));
+    }
+
+    /**
+     * Serialize an embedding for storage
+     */
+    public static byte[] encode(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    /**
+     * Deserialize an embedding written by encode()
+     */
+    public static float[] decode(byte[] bytes) {
+        float[] embedding = new float[bytes.length / 4];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+}
@@ -0,0 +1,65 @@
+package com.eduface.app.recognition;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+
+import androidx.camera.core.ImageProxy;
+
+/**
+ * Cuts the face region out of a camera frame for the embedding model
+ */
+public class FaceCropper {
+
+    // Extra margin around the ML Kit bounding box, as a fraction of its size
+    private static final float BOX_MARGIN = 0.1f;
+
+    private FaceCropper() {
+    }
+
+    /**
+     * Crop a face from a camera frame.
+     *
+     * @param imageProxy Camera frame (still open)
+     * @param boundingBox Face box from ML Kit, in upright (rotated) image coordinates
+     * @param outputSize Side length of the returned square bitmap
+     * @return Face crop, or null if the box lies outside the frame
+     */
+    public static Bitmap crop(ImageProxy imageProxy, Rect boundingBox, int outputSize) {
+        Bitmap frame = imageProxy.toBitmap();
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        if (rotation != 0) {
+            // ML Kit reports boxes in the upright image
+            Matrix matrix = new Matrix();
+            matrix.postRotate(rotation);
+            frame = Bitmap.createBitmap(frame, 0, 0, frame.getWidth(), frame.getHeight(), matrix, true);
+        }
+        return crop(frame, boundingBox, outputSize);
+    }
+
+    /**
+     * Crop a face from an upright bitmap
+     */
+    public static Bitmap crop(Bitmap frame, Rect boundingBox, int outputSize) {
+        Rect region = expand(boundingBox, frame.getWidth(), frame.getHeight());
+        if (region.isEmpty()) {
+            return null;
+        }
+        Bitmap face = Bitmap.createBitmap(frame, region.left, region.top, region.width(), region.height());
+        return Bitmap.createScaledBitmap(face, outputSize, outputSize, true);
+    }
+
+    /**
+     * Square region around the box with a small margin, clamped to the frame
+     */
+    static Rect expand(Rect box, int frameWidth, int frameHeight) {
+        int side = (int) (Math.max(box.width(), box.height()) * (1 + 2 * BOX_MARGIN));
+        int left = box.centerX() - side / 2;
+        int top = box.centerY() - side / 2;
+        Rect region = new Rect(left, top, left + side, top + side);
+        if (!region.intersect(0, 0, frameWidth, frameHeight)) {
+            region.setEmpty();
+        }
+        return region;
+    }
+}
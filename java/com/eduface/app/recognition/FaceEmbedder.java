@@ -0,0 +1,287 @@
+package com.eduface.app.recognition;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.Nullable;
+
+import com.eduface.app.BuildConfig;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.nnapi.NnApiDelegate;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Computes a compact face embedding with the bundled on-device TFLite model.
+ * The model takes a square RGB face crop and outputs one float vector;
+ * embeddings are L2-normalized so cosine similarity is a plain dot product.
+ *
+ * The model runs on one of three backends, tried in this order from the preferred one:
+ * NNAPI (accelerator drivers, Android 9+), XNNPACK (multi-threaded optimized CPU kernels)
+ * and the reference CPU kernels. EmbedderDelegateSelector picks the preferred backend per
+ * device.
+ */
+public class FaceEmbedder implements Closeable {
+
+    // Bundled model (stored uncompressed in assets so it can be memory-mapped)
+    public static final String MODEL_ASSET = "face_embedder.tflite";
+
+    public static final int DELEGATE_NNAPI = 0;
+    public static final int DELEGATE_XNNPACK = 1;
+    public static final int DELEGATE_CPU = 2;
+
+    private static final String[] DELEGATE_NAMES = {"nnapi", "xnnpack", "cpu"};
+
+    private static final int NUM_THREADS = 2;
+    private static final float PIXEL_MEAN = 127.5f;
+    private static final float PIXEL_SCALE = 1 / 128f;
+
+    /**
+     * Whether this build ships the embedding model. When false, recognition, enrollment,
+     * backend selection and template refresh are all skipped (detection only).
+     */
+    public static boolean isEnabled() {
+        return BuildConfig.FACE_RECOGNITION_ENABLED;
+    }
+
+    private final Backend backend;
+    private final Interpreter interpreter;
+    private final int inputSize;
+    private final int embeddingSize;
+
+    // Reused between calls
+    private final ByteBuffer inputBuffer;
+    private final float[][] output;
+    private final int[] pixels;
+
+    /**
+     * Load the bundled model on the XNNPACK backend
+     *
+     * @throws IOException if the model asset is missing
+     */
+    public FaceEmbedder(Context context) throws IOException {
+        this(context, DELEGATE_XNNPACK);
+    }
+
+    /**
+     * Load the bundled model
+     *
+     * @param preferredDelegate First backend to try (see EmbedderDelegateSelector)
+     * @throws IOException if the model asset is missing
+     */
+    public FaceEmbedder(Context context, int preferredDelegate) throws IOException {
+        this(loadModel(context), preferredDelegate);
+    }
+
+    /**
+     * Load a model from a buffer (e.g. from loadModel()).
+     * Backends that fail to initialize fall back to the next one in the chain.
+     */
+    public FaceEmbedder(ByteBuffer model, int preferredDelegate) {
+        this(model, preferredDelegate, Backend::open);
+    }
+
+    /**
+     * @param backendFactory Opens an interpreter on one backend (tests substitute their own)
+     */
+    FaceEmbedder(ByteBuffer model, int preferredDelegate, BackendFactory backendFactory) {
+        if (preferredDelegate < DELEGATE_NNAPI || preferredDelegate > DELEGATE_CPU) {
+            throw new IllegalArgumentException("Unknown delegate: " + preferredDelegate);
+        }
+        Backend opened = null;
+        RuntimeException failure = null;
+        for (int delegate = preferredDelegate; delegate <= DELEGATE_CPU && opened == null; delegate++) {
+            try {
+                opened = backendFactory.open(model, delegate);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (opened == null) {
+            throw failure;
+        }
+        backend = opened;
+        interpreter = opened.interpreter;
+
+        // Input shape is [1, size, size, 3], output shape is [1, embeddingSize]
+        inputSize = interpreter.getInputTensor(0).shape()[1];
+        embeddingSize = interpreter.getOutputTensor(0).shape()[1];
+
+        inputBuffer = ByteBuffer.allocateDirect(4 * inputSize * inputSize * 3)
+                .order(ByteOrder.nativeOrder());
+        output = new float[1][embeddingSize];
+        pixels = new int[inputSize * inputSize];
+    }
+
+    /**
+     * Side length of the square face crop the model expects
+     */
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * Backend the model is running on (one of the DELEGATE_ constants)
+     */
+    public int getDelegate() {
+        return backend.delegate;
+    }
+
+    /**
+     * Number of floats in an embedding
+     */
+    public int getEmbeddingSize() {
+        return embeddingSize;
+    }
+
+    /**
+     * Compute the normalized embedding of a face crop.
+     * The crop is scaled to the model input size if needed.
+     */
+    public synchronized float[] embed(Bitmap faceCrop) {
+        Bitmap input = faceCrop;
+        if (faceCrop.getWidth() != inputSize || faceCrop.getHeight() != inputSize) {
+            input = Bitmap.createScaledBitmap(faceCrop, inputSize, inputSize, true);
+        }
+
+        input.getPixels(pixels, 0, inputSize, 0, 0, inputSize, inputSize);
+        inputBuffer.rewind();
+        for (int pixel : pixels) {
+            inputBuffer.putFloat(normalizeChannel((pixel >> 16) & 0xFF));
+            inputBuffer.putFloat(normalizeChannel((pixel >> 8) & 0xFF));
+            inputBuffer.putFloat(normalizeChannel(pixel & 0xFF));
+        }
+        inputBuffer.rewind();
+
+        return embed(inputBuffer);
+    }
+
+    /**
+     * Compute the normalized embedding of a prepared model input
+     * (float32 RGB, inputSize x inputSize, values from normalizeChannel), e.g. from YuvFaceCropper.
+     */
+    public synchronized float[] embed(ByteBuffer modelInput) {
+        interpreter.run(modelInput, output);
+
+        float[] embedding = output[0].clone();
+        EmbeddingIndex.normalize(embedding);
+        return embedding;
+    }
+
+    /**
+     * Map an 8-bit colour channel to the model's input range
+     */
+    static float normalizeChannel(float value) {
+        return (value - PIXEL_MEAN) * PIXEL_SCALE;
+    }
+
+    @Override
+    public synchronized void close() {
+        backend.close();
+    }
+
+    /**
+     * Name of a backend, as stored in preferences
+     */
+    public static String getDelegateName(int delegate) {
+        return DELEGATE_NAMES[delegate];
+    }
+
+    /**
+     * Backend for a stored name
+     *
+     * @return The DELEGATE_ constant, or -1 for an unknown name
+     */
+    public static int parseDelegate(@Nullable String name) {
+        for (int i = 0; i < DELEGATE_NAMES.length; i++) {
+            if (DELEGATE_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Opens the model on one backend; Backend::open in production
+     */
+    interface BackendFactory {
+        /**
+         * @throws RuntimeException if the backend is unavailable or cannot run the model
+         */
+        Backend open(ByteBuffer model, int delegate);
+    }
+
+    /**
+     * An interpreter on one backend, without fallback
+     */
+    static final class Backend {
+        final Interpreter interpreter;
+        final int delegate;
+        @Nullable
+        private final NnApiDelegate nnApiDelegate;
+
+        Backend(Interpreter interpreter, int delegate, @Nullable NnApiDelegate nnApiDelegate) {
+            this.interpreter = interpreter;
+            this.delegate = delegate;
+            this.nnApiDelegate = nnApiDelegate;
+        }
+
+        /**
+         * @throws RuntimeException if the backend is unavailable or cannot run the model
+         */
+        static Backend open(ByteBuffer model, int delegate) {
+            Interpreter.Options options = new Interpreter.Options();
+            switch (delegate) {
+                case DELEGATE_NNAPI:
+                    // NNAPI before Android 9 lacks many ops and is often slower than the CPU
+                    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+                        throw new UnsupportedOperationException("NNAPI needs Android 9 or later");
+                    }
+                    NnApiDelegate nnApiDelegate = new NnApiDelegate();
+                    options.addDelegate(nnApiDelegate);
+                    try {
+                        return new Backend(new Interpreter(model, options), delegate, nnApiDelegate);
+                    } catch (RuntimeException e) {
+                        nnApiDelegate.close();
+                        throw e;
+                    }
+                case DELEGATE_XNNPACK:
+                    options.setNumThreads(NUM_THREADS);
+                    options.setUseXNNPACK(true);
+                    return new Backend(new Interpreter(model, options), delegate, null);
+                default:
+                    options.setNumThreads(1);
+                    options.setUseXNNPACK(false);
+                    return new Backend(new Interpreter(model, options), DELEGATE_CPU, null);
+            }
+        }
+
+        void close() {
+            interpreter.close();
+            if (nnApiDelegate != null) {
+                nnApiDelegate.close();
+            }
+        }
+    }
+
+    /**
+     * Memory-map the model from assets
+     */
+    static MappedByteBuffer loadModel(Context context) throws IOException {
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(MODEL_ASSET);
+             FileInputStream inputStream = new FileInputStream(descriptor.getFileDescriptor())) {
+            FileChannel channel = inputStream.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getDeclaredLength());
+        }
+    }
+}
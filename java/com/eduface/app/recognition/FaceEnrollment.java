@@ -0,0 +1,99 @@
+package com.eduface.app.recognition;
+
+/**
+ * Builds a user's face template from several shots. Shots are spaced in time so the
+ * template covers small changes in pose and expression, and a shot that disagrees with
+ * the shots so far (another person, a bad crop) is rejected. The template is the
+ * normalized mean of the accepted embeddings, so verification later is one dot product.
+ */
+public class FaceEnrollment {
+
+    public static final int DEFAULT_SHOTS = 5;
+
+    // Minimum time between accepted shots
+    private static final long MIN_SHOT_INTERVAL_MILLIS = 400;
+    // Minimum cosine similarity between a new shot and the mean of the accepted ones
+    private static final float MIN_CONSISTENCY = 0.5f;
+
+    private final int requiredShots;
+    private float[] sum;
+    private int shots;
+    private long lastShotMillis;
+
+    public FaceEnrollment() {
+        this(DEFAULT_SHOTS);
+    }
+
+    public FaceEnrollment(int requiredShots) {
+        this.requiredShots = Math.max(1, requiredShots);
+    }
+
+    /**
+     * Offer the embedding of one quality-gated face
+     *
+     * @param nowMillis Monotonic time of the shot (e.g. SystemClock.elapsedRealtime())
+     * @return True if the shot was accepted
+     */
+    public synchronized boolean addShot(float[] embedding, long nowMillis) {
+        if (isComplete() || (shots > 0 && nowMillis - lastShotMillis < MIN_SHOT_INTERVAL_MILLIS)) {
+            return false;
+        }
+        if (sum == null) {
+            sum = new float[embedding.length];
+        } else if (embedding.length != sum.length || consistency(embedding) < MIN_CONSISTENCY) {
+            return false;
+        }
+
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += embedding[i];
+        }
+        shots++;
+        lastShotMillis = nowMillis;
+        return true;
+    }
+
+    private float consistency(float[] embedding) {
+        float dot = 0f;
+        float norm = 0f;
+        for (int i = 0; i < sum.length; i++) {
+            dot += sum[i] * embedding[i];
+            norm += sum[i] * sum[i];
+        }
+        return norm > 0f ? dot / (float) Math.sqrt(norm) : 0f;
+    }
+
+    public synchronized int getShotCount() {
+        return shots;
+    }
+
+    public int getRequiredShots() {
+        return requiredShots;
+    }
+
+    public synchronized boolean isComplete() {
+        return shots >= requiredShots;
+    }
+
+    /**
+     * Normalized mean of the accepted shots
+     *
+     * @throws IllegalStateException if no shot has been accepted
+     */
+    public synchronized float[] getTemplate() {
+        if (shots == 0) {
+            throw new IllegalStateException("No shots captured");
+        }
+        float[] template = sum.clone();
+        EmbeddingIndex.normalize(template);
+        return template;
+    }
+
+    /**
+     * Discard all shots (e.g. to retry after a failed save)
+     */
+    public synchronized void reset() {
+        sum = null;
+        shots = 0;
+        lastShotMillis = 0;
+    }
+}
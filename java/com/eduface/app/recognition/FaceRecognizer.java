@@ -0,0 +1,104 @@
+package com.eduface.app.recognition;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProxy;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+/**
+ * Recognition stage run after face detection: crops the face, computes its
+ * embedding and matches it against the enrolled students' index.
+ */
+public class FaceRecognizer implements Closeable {
+
+    // Minimum cosine similarity for a face to count as a match
+    public static final float DEFAULT_MATCH_THRESHOLD = 0.6f;
+
+    private final FaceEmbedder embedder;
+    private final YuvFaceCropper yuvCropper;
+    private volatile EmbeddingIndex index;
+    private final float matchThreshold;
+
+    public FaceRecognizer(FaceEmbedder embedder, EmbeddingIndex index) {
+        this(embedder, index, DEFAULT_MATCH_THRESHOLD);
+    }
+
+    public FaceRecognizer(FaceEmbedder embedder, EmbeddingIndex index, float matchThreshold) {
+        this.embedder = embedder;
+        this.index = index;
+        this.matchThreshold = matchThreshold;
+        this.yuvCropper = new YuvFaceCropper(embedder.getInputSize());
+    }
+
+    public EmbeddingIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Swap in a refreshed index (e.g. after a template sync)
+     */
+    public void setIndex(EmbeddingIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Recognize the face inside a camera frame
+     *
+     * @return Match above the threshold, or null if the face is unknown
+     */
+    public EmbeddingIndex.Match recognize(ImageProxy imageProxy, Rect boundingBox) {
+        float[] embedding = embed(imageProxy, boundingBox);
+        return embedding != null ? match(embedding) : null;
+    }
+
+    /**
+     * Compute the normalized embedding of the face inside a camera frame (e.g. for enrollment)
+     *
+     * @return Embedding, or null if the face could not be cropped
+     */
+    @Nullable
+    public float[] embed(ImageProxy imageProxy, Rect boundingBox) {
+        if (!YuvFaceCropper.supports(imageProxy)) {
+            Bitmap faceCrop = FaceCropper.crop(imageProxy, boundingBox, embedder.getInputSize());
+            return faceCrop != null ? embedder.embed(faceCrop) : null;
+        }
+
+        // Crop straight from the YUV planes into a pooled model input buffer
+        ByteBuffer modelInput = yuvCropper.acquire();
+        try {
+            if (!yuvCropper.crop(imageProxy, boundingBox, modelInput)) {
+                return null;
+            }
+            return embedder.embed(modelInput);
+        } finally {
+            yuvCropper.release(modelInput);
+        }
+    }
+
+    /**
+     * Recognize a face crop
+     *
+     * @return Match above the threshold, or null if the face is unknown
+     */
+    public EmbeddingIndex.Match recognize(Bitmap faceCrop) {
+        return match(embedder.embed(faceCrop));
+    }
+
+    private EmbeddingIndex.Match match(float[] embedding) {
+        EmbeddingIndex.Match match = index.findBest(embedding);
+        if (match == null || match.getScore() < matchThreshold) {
+            return null;
+        }
+        // Keep the embedding with the match so a confident capture can refresh the template
+        return new EmbeddingIndex.Match(match.getId(), match.getScore(), embedding);
+    }
+
+    @Override
+    public void close() {
+        embedder.close();
+    }
+}
@@ -0,0 +1,531 @@
+package com.eduface.app.recognition;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Versioned binary file of enrolled face templates, memory-mapped when opened.
+ *
+ * Layout (little-endian):
+ *   header  magic "EFTP", version, dimension, recordSize, recordCount, lastSyncMillis (long), reserved
+ *   records fixed-size, one per enrollment: status, idLength, id (UTF-8, padded), scale, int8 codes
+ *
+ * The file is append-only: re-enrolling a user appends a new record and removing one appends
+ * a tombstone; the last record for an ID wins. compact() rewrites the file with only the
+ * current records. Codes use the same quantization as QuantizedEmbeddingStore and are searched
+ * in place in the mapping (see search()), so templates are never copied onto the heap; the
+ * only per-template heap state is an int table of the latest record of each ID.
+ */
+public class FaceTemplateFile implements Closeable {
+
+    public static final String DEFAULT_FILE_NAME = "face_templates.bin";
+
+    private static final int MAGIC = 0x50544645; // "EFTP" read little-endian
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int OFFSET_RECORD_COUNT = 16;
+    private static final int OFFSET_LAST_SYNC = 20;
+
+    private static final int MAX_ID_BYTES = 62;
+    private static final int RECORD_ID_OFFSET = 2;
+    private static final int RECORD_SCALE_OFFSET = RECORD_ID_OFFSET + MAX_ID_BYTES;
+    private static final int RECORD_CODES_OFFSET = RECORD_SCALE_OFFSET + 4;
+
+    private static final byte STATUS_LIVE = 1;
+    private static final byte STATUS_DELETED = 2;
+
+    private static final int MIN_TABLE_SIZE = 64;
+
+    private final File file;
+    private final int dimension;
+    private final int recordSize;
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int recordCount;
+
+    // Open-addressing table of the latest record for every ID ever written (live or
+    // tombstone), stored as record + 1 (0 = empty) and keyed by the ID bytes in the mapping
+    private int[] latestTable = new int[MIN_TABLE_SIZE];
+    private int idCount;
+    // Records of the current live templates in file order: the set search() scans
+    private int[] liveRecords = new int[0];
+    private int liveCount;
+
+    // Scratch space for the quantized query, reused between searches
+    private final byte[] queryCodes;
+
+    private FaceTemplateFile(File file, int dimension) {
+        this.file = file;
+        this.dimension = dimension;
+        // Keep records 4-byte aligned so the scale float never straddles a boundary
+        this.recordSize = (RECORD_CODES_OFFSET + dimension + 3) & ~3;
+        this.queryCodes = new byte[dimension];
+    }
+
+    /**
+     * Open (or create) a template file. A file written by another version or for a
+     * different embedding dimension is discarded and started afresh.
+     */
+    public static FaceTemplateFile open(File file, int dimension) throws IOException {
+        FaceTemplateFile templateFile = new FaceTemplateFile(file, dimension);
+        templateFile.openChannel();
+        return templateFile;
+    }
+
+    private void openChannel() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+
+        if (!hasValidHeader()) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(recordSize)
+                    .putInt(0).putLong(0L).putInt(0);
+            header.flip();
+            channel.write(header, 0);
+        }
+
+        ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(count, OFFSET_RECORD_COUNT);
+
+        // Ignore a partially written record at the end (e.g. process killed mid-append)
+        long complete = (channel.size() - HEADER_SIZE) / recordSize;
+        recordCount = (int) Math.min(count.getInt(0), complete);
+        remap();
+
+        latestTable = new int[tableSizeFor(recordCount)];
+        idCount = 0;
+        indexRecords(0, recordCount);
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC
+                && header.getInt(4) == VERSION
+                && header.getInt(8) == dimension
+                && header.getInt(12) == recordSize;
+    }
+
+    private void remap() throws IOException {
+        long length = HEADER_SIZE + (long) recordCount * recordSize;
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Number of users with a current (non-deleted) template
+     */
+    public synchronized int getLiveCount() {
+        return liveCount;
+    }
+
+    /**
+     * IDs of users with a current template
+     */
+    public synchronized Set<String> getLiveIds() {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < liveCount; i++) {
+            ids.add(readId(liveRecords[i]));
+        }
+        return ids;
+    }
+
+    /**
+     * Time of the last successful sync with Firestore (0 if never)
+     */
+    public synchronized long getLastSyncMillis() {
+        return mapped.getLong(OFFSET_LAST_SYNC);
+    }
+
+    public synchronized void setLastSyncMillis(long lastSyncMillis) throws IOException {
+        ensureOpen();
+        ByteBuffer value = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        value.putLong(lastSyncMillis).flip();
+        channel.write(value, OFFSET_LAST_SYNC);
+    }
+
+    /**
+     * Whether the stored template for a user already equals this embedding
+     */
+    public synchronized boolean isCurrent(String id, float[] embedding) {
+        int record = findLive(id);
+        if (record < 0) {
+            return false;
+        }
+        byte[] codes = new byte[dimension];
+        float scale = QuantizedEmbeddingStore.quantize(embedding, codes, 0, dimension);
+        int codesOffset = recordOffset(record) + RECORD_CODES_OFFSET;
+        for (int i = 0; i < dimension; i++) {
+            if (mapped.get(codesOffset + i) != codes[i]) {
+                return false;
+            }
+        }
+        return mapped.getFloat(recordOffset(record) + RECORD_SCALE_OFFSET) == scale;
+    }
+
+    /**
+     * Append (or replace) the template of one user
+     */
+    public synchronized void append(String id, float[] embedding) throws IOException {
+        appendAll(Collections.singletonMap(id, embedding));
+    }
+
+    /**
+     * Append (or replace) templates for several users with a single remap.
+     * Nothing changes (in memory or in the published file) unless every record and the
+     * header are written.
+     */
+    public synchronized void appendAll(Map<String, float[]> embeddings) throws IOException {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+        ensureOpen();
+        ByteBuffer record = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] codes = new byte[dimension];
+        int appended = 0;
+        for (Map.Entry<String, float[]> entry : embeddings.entrySet()) {
+            if (entry.getValue().length != dimension) {
+                throw new IllegalArgumentException("Expected " + dimension + " values for " + entry.getKey());
+            }
+            float scale = QuantizedEmbeddingStore.quantize(entry.getValue(), codes, 0, dimension);
+            writeRecord(record, recordCount + appended, STATUS_LIVE, entry.getKey(), scale, codes);
+            appended++;
+        }
+        commitAppends(appended);
+    }
+
+    /**
+     * Remove a user's template (appends a tombstone)
+     */
+    public synchronized void remove(String id) throws IOException {
+        if (findLive(id) < 0) {
+            return;
+        }
+        ensureOpen();
+        ByteBuffer record = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        writeRecord(record, recordCount, STATUS_DELETED, id, 0f, new byte[dimension]);
+        commitAppends(1);
+    }
+
+    /**
+     * Write a record past the published end of the file (not visible until committed)
+     */
+    private void writeRecord(ByteBuffer record, int position, byte status, String id, float scale, byte[] codes)
+            throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("ID too long for template file: " + id);
+        }
+
+        record.clear();
+        record.put(status);
+        record.put((byte) idBytes.length);
+        record.put(Arrays.copyOf(idBytes, MAX_ID_BYTES));
+        record.putFloat(scale);
+        record.put(codes);
+        while (record.hasRemaining()) {
+            record.put((byte) 0);
+        }
+        record.flip();
+
+        channel.write(record, HEADER_SIZE + (long) position * recordSize);
+    }
+
+    /**
+     * Publish appended records: force them to disk, then update and force the header count,
+     * then remap and index them. The count never reaches the disk ahead of the records it
+     * covers, so a crash cannot publish garbage; if the header write fails the records stay
+     * unpublished and are overwritten by the next append.
+     */
+    private void commitAppends(int appended) throws IOException {
+        int newCount = recordCount + appended;
+        channel.force(false);
+        ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        count.putInt(newCount).flip();
+        channel.write(count, OFFSET_RECORD_COUNT);
+        channel.force(false);
+
+        int first = recordCount;
+        recordCount = newCount;
+        remap();
+        indexRecords(first, newCount);
+    }
+
+    /**
+     * Whether superseded records outnumber current ones
+     */
+    public synchronized boolean needsCompaction() {
+        return recordCount - idCount > idCount || idCount > liveCount * 2;
+    }
+
+    /**
+     * Rewrite the file keeping only the current live record of each user.
+     * If the new file cannot replace the old one, the old one stays open unchanged.
+     */
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(tempFile, "rw")) {
+            FileChannel outChannel = out.getChannel();
+            outChannel.truncate(0);
+
+            ByteBuffer source = mapped.duplicate();
+            for (int i = 0; i < liveCount; i++) {
+                int offset = recordOffset(liveRecords[i]);
+                source.limit(offset + recordSize).position(offset);
+                outChannel.write(source, HEADER_SIZE + (long) i * recordSize);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(recordSize)
+                    .putInt(liveCount).putLong(getLastSyncMillis()).putInt(0);
+            header.flip();
+            outChannel.write(header, 0);
+            outChannel.force(true);
+        }
+
+        close();
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            openChannel();
+            throw new IOException("Failed to replace " + file);
+        }
+        openChannel();
+    }
+
+    /**
+     * Search index over this file. It searches the mapping directly and follows later
+     * appends, removals and compactions; adding to it appends to this file.
+     */
+    public EmbeddingIndex loadIndex() {
+        return new EmbeddingIndex(this);
+    }
+
+    /**
+     * Find the live templates most similar to a query, scanning the codes in the mapping.
+     * Results are written into the caller's arrays in descending score order.
+     *
+     * @param outRecords Receives record numbers, valid until the file is next modified (see getId)
+     * @return Number of results written
+     */
+    public synchronized int search(float[] query, int k, float threshold, int[] outRecords, float[] outScores) {
+        k = Math.min(k, Math.min(outRecords.length, outScores.length));
+        if (k <= 0 || liveCount == 0) {
+            return 0;
+        }
+
+        float queryScale = QuantizedEmbeddingStore.quantize(query, queryCodes, 0, dimension);
+        byte[] q = queryCodes;
+        ByteBuffer m = mapped;
+        int found = 0;
+
+        for (int i = 0; i < liveCount; i++) {
+            int record = liveRecords[i];
+            int offset = recordOffset(record);
+            int codesOffset = offset + RECORD_CODES_OFFSET;
+            int acc = 0;
+            for (int j = 0; j < dimension; j++) {
+                acc += m.get(codesOffset + j) * q[j];
+            }
+
+            float score = acc * m.getFloat(offset + RECORD_SCALE_OFFSET) * queryScale;
+            if (score < threshold || (found == k && score <= outScores[k - 1])) {
+                continue;
+            }
+            found = QuantizedEmbeddingStore.insertResult(record, score, found, k, outRecords, outScores);
+        }
+        return found;
+    }
+
+    /**
+     * User ID of a record returned by search()
+     */
+    public synchronized String getId(int record) {
+        return readId(record);
+    }
+
+    /**
+     * Whether a user has a current template
+     */
+    public synchronized boolean contains(String id) {
+        return findLive(id) >= 0;
+    }
+
+    /**
+     * Decoded template of a user (approximate, within the int8 quantization error),
+     * or null if the user has no current template
+     */
+    public synchronized float[] getEmbedding(String id) {
+        int record = findLive(id);
+        if (record < 0) {
+            return null;
+        }
+        int offset = recordOffset(record);
+        float scale = mapped.getFloat(offset + RECORD_SCALE_OFFSET);
+        float[] embedding = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            embedding[i] = mapped.get(offset + RECORD_CODES_OFFSET + i) * scale;
+        }
+        return embedding;
+    }
+
+    /**
+     * Record the records [from, to) of the current mapping as the latest of their IDs,
+     * then rebuild the live set
+     */
+    private void indexRecords(int from, int to) {
+        for (int record = from; record < to; record++) {
+            if ((idCount + 1) * 4 > latestTable.length * 3) {
+                growTable();
+            }
+            int slot = findSlot(record);
+            if (latestTable[slot] == 0) {
+                idCount++;
+            }
+            latestTable[slot] = record + 1;
+        }
+
+        liveRecords = new int[idCount];
+        liveCount = 0;
+        for (int entry : latestTable) {
+            if (entry != 0 && mapped.get(recordOffset(entry - 1)) == STATUS_LIVE) {
+                liveRecords[liveCount++] = entry - 1;
+            }
+        }
+        Arrays.sort(liveRecords, 0, liveCount);
+    }
+
+    private void growTable() {
+        int[] old = latestTable;
+        latestTable = new int[old.length * 2];
+        for (int entry : old) {
+            if (entry != 0) {
+                latestTable[findSlot(entry - 1)] = entry;
+            }
+        }
+    }
+
+    /**
+     * Slot holding the ID of a record, or the empty slot where it belongs
+     */
+    private int findSlot(int record) {
+        int offset = recordOffset(record);
+        int length = mapped.get(offset + 1) & 0xFF;
+        int mask = latestTable.length - 1;
+        int slot = hashId(mapped, offset + RECORD_ID_OFFSET, length) & mask;
+        while (latestTable[slot] != 0 && !sameId(latestTable[slot] - 1, offset + RECORD_ID_OFFSET, length)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Latest live record of a user, or -1
+     */
+    private int findLive(String id) {
+        ByteBuffer idBytes = ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+        int length = idBytes.remaining();
+        if (length > MAX_ID_BYTES) {
+            return -1;
+        }
+        int mask = latestTable.length - 1;
+        int slot = hashId(idBytes, 0, length) & mask;
+        while (latestTable[slot] != 0) {
+            int record = latestTable[slot] - 1;
+            int offset = recordOffset(record);
+            if ((mapped.get(offset + 1) & 0xFF) == length && idEquals(offset + RECORD_ID_OFFSET, idBytes, length)) {
+                return mapped.get(offset) == STATUS_LIVE ? record : -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean sameId(int record, int idOffset, int length) {
+        int offset = recordOffset(record);
+        return (mapped.get(offset + 1) & 0xFF) == length
+                && idEquals(offset + RECORD_ID_OFFSET, mapped, idOffset, length);
+    }
+
+    private boolean idEquals(int idOffset, ByteBuffer other, int length) {
+        return idEquals(idOffset, other, 0, length);
+    }
+
+    private boolean idEquals(int idOffset, ByteBuffer other, int otherOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (mapped.get(idOffset + i) != other.get(otherOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hashId(ByteBuffer buffer, int offset, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        // Spread the bits, since the table index only uses the low ones
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int tableSizeFor(int records) {
+        int size = MIN_TABLE_SIZE;
+        while (size * 3 < records * 4) {
+            size *= 2;
+        }
+        return size;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("Template file is closed");
+        }
+    }
+
+    private int recordOffset(int record) {
+        return HEADER_SIZE + record * recordSize;
+    }
+
+    private String readId(int record) {
+        int offset = recordOffset(record);
+        int length = mapped.get(offset + 1) & 0xFF;
+        byte[] idBytes = new byte[length];
+        ByteBuffer view = mapped.duplicate();
+        view.position(offset + RECORD_ID_OFFSET);
+        view.get(idBytes);
+        return new String(idBytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (randomAccessFile != null) {
+            randomAccessFile.close();
+            randomAccessFile = null;
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.eduface.app.recognition;
+
+import java.util.Arrays;
+
+/**
+ * Flat int8 store for face embeddings.
+ * Each embedding is normalized, then quantized symmetrically to signed bytes with one
+ * float scale per row. All rows live in a single byte array (row i starts at i * dimension),
+ * so a search is a tight integer dot-product loop with no boxing and no allocation.
+ * Memory per template is dimension + 4 bytes (about 132 bytes for a 128-d model).
+ */
+public class QuantizedEmbeddingStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int dimension;
+    private byte[] codes;
+    private float[] scales;
+    private String[] ids;
+    private int size;
+
+    // Scratch space for the quantized query, reused between searches
+    private final byte[] queryCodes;
+
+    public QuantizedEmbeddingStore(int dimension) {
+        this(dimension, INITIAL_CAPACITY);
+    }
+
+    public QuantizedEmbeddingStore(int dimension, int initialCapacity) {
+        this.dimension = dimension;
+        int capacity = Math.max(1, initialCapacity);
+        this.codes = new byte[capacity * dimension];
+        this.scales = new float[capacity];
+        this.ids = new String[capacity];
+        this.queryCodes = new byte[dimension];
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Append an embedding and return its row
+     */
+    public synchronized int add(String id, float[] embedding) {
+        if (embedding.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " values, got " + embedding.length);
+        }
+        ensureCapacity(size + 1);
+        int row = size++;
+        ids[row] = id;
+        set(row, embedding);
+        return row;
+    }
+
+    /**
+     * Replace the embedding stored in a row
+     */
+    public synchronized void set(int row, float[] embedding) {
+        if (embedding.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " values, got " + embedding.length);
+        }
+        scales[row] = quantize(embedding, codes, row * dimension, dimension);
+    }
+
+    public synchronized String getId(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Decode a row back to a unit-length vector (approximate, within the int8 quantization error)
+     */
+    public synchronized float[] get(int row) {
+        float[] embedding = new float[dimension];
+        float scale = scales[row];
+        for (int i = 0, offset = row * dimension; i < dimension; i++) {
+            embedding[i] = codes[offset + i] * scale;
+        }
+        return embedding;
+    }
+
+    /**
+     * Find the rows most similar to a query.
+     * Results are written into the caller's arrays in descending score order.
+     *
+     * @param query Query embedding (normalized or not)
+     * @param k Maximum number of results (bounded by the output array lengths)
+     * @param threshold Minimum cosine similarity for a result
+     * @param outRows Receives the matching rows
+     * @param outScores Receives the cosine similarity of each row
+     * @return Number of results written
+     */
+    public synchronized int search(float[] query, int k, float threshold, int[] outRows, float[] outScores) {
+        k = Math.min(k, Math.min(outRows.length, outScores.length));
+        if (k <= 0 || size == 0) {
+            return 0;
+        }
+
+        float queryScale = quantize(query, queryCodes, 0, dimension);
+        byte[] q = queryCodes;
+        byte[] c = codes;
+        int found = 0;
+
+        for (int row = 0, offset = 0; row < size; row++, offset += dimension) {
+            // Keep this a plain byte dot product so the compiler can vectorize it
+            int acc = 0;
+            for (int i = 0; i < dimension; i++) {
+                acc += c[offset + i] * q[i];
+            }
+
+            float score = acc * scales[row] * queryScale;
+            if (score < threshold || (found == k && score <= outScores[k - 1])) {
+                continue;
+            }
+
+            found = insertResult(row, score, found, k, outRows, outScores);
+        }
+        return found;
+    }
+
+    /**
+     * Insert a result into a top-k list sorted by descending score, dropping the last
+     * one if the list is full (the caller has checked the score beats it)
+     *
+     * @return New number of results
+     */
+    static int insertResult(int row, float score, int found, int k, int[] outRows, float[] outScores) {
+        int position = found < k ? found++ : k - 1;
+        while (position > 0 && outScores[position - 1] < score) {
+            outScores[position] = outScores[position - 1];
+            outRows[position] = outRows[position - 1];
+            position--;
+        }
+        outScores[position] = score;
+        outRows[position] = row;
+        return found;
+    }
+
+    /**
+     * Normalize and quantize values into codes[offset..offset+length)
+     *
+     * @return Scale that maps a code back to the normalized value
+     */
+    static float quantize(float[] values, byte[] codes, int offset, int length) {
+        float sumSquares = 0f;
+        float maxAbs = 0f;
+        for (int i = 0; i < length; i++) {
+            float v = values[i];
+            sumSquares += v * v;
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        if (maxAbs == 0f) {
+            Arrays.fill(codes, offset, offset + length, (byte) 0);
+            return 0f;
+        }
+
+        float toCode = 127f / maxAbs;
+        for (int i = 0; i < length; i++) {
+            codes[offset + i] = (byte) Math.round(values[i] * toCode);
+        }
+        // code * scale == value / |value|
+        return (float) (maxAbs / 127.0 / Math.sqrt(sumSquares));
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > ids.length) {
+            int capacity = Math.max(required, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            codes = Arrays.copyOf(codes, capacity * dimension);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.eduface.app.recognition;
+
+import java.util.Locale;
+
+/**
+ * Keeps a user's face template current as their appearance slowly changes (haircut, glasses,
+ * a year of growing up). Each confident attendance match folds its embedding into an
+ * exponential moving average of the template. The average lives on the device and is only
+ * written back once it has drifted far enough from the stored template to matter, so a
+ * student attending every day costs one Firestore write every few weeks, not one per meeting.
+ */
+public class TemplateRefresher {
+
+    // Only matches at least this similar to the stored template update it
+    public static final float DEFAULT_MIN_SCORE = 0.8f;
+    // Weight of a new embedding in the moving average
+    public static final float DEFAULT_ALPHA = 0.1f;
+    // Write back once 1 - cosine(stored, average) reaches this
+    public static final float DEFAULT_DRIFT_THRESHOLD = 0.02f;
+
+    private final float minScore;
+    private final float alpha;
+    private final float driftThreshold;
+
+    private final float[] stored;
+    private final float[] current;
+
+    /**
+     * @param storedTemplate Template as last written back (e.g. decoded from the index)
+     * @param pendingTemplate Moving average saved from earlier sessions, or null to start from the stored template
+     */
+    public TemplateRefresher(float[] storedTemplate, float[] pendingTemplate) {
+        this(storedTemplate, pendingTemplate, DEFAULT_MIN_SCORE, DEFAULT_ALPHA, DEFAULT_DRIFT_THRESHOLD);
+    }
+
+    public TemplateRefresher(float[] storedTemplate, float[] pendingTemplate,
+                             float minScore, float alpha, float driftThreshold) {
+        this.minScore = minScore;
+        this.alpha = alpha;
+        this.driftThreshold = driftThreshold;
+        this.stored = storedTemplate.clone();
+        EmbeddingIndex.normalize(stored);
+        boolean usePending = pendingTemplate != null && pendingTemplate.length == stored.length;
+        this.current = usePending ? pendingTemplate.clone() : stored.clone();
+        EmbeddingIndex.normalize(current);
+    }
+
+    /**
+     * Fold the embedding of a matched capture into the moving average
+     *
+     * @param embedding Normalized embedding of the captured face
+     * @param score Similarity of the match against the stored template
+     * @return True if the embedding was confident enough to be used
+     */
+    public synchronized boolean offer(float[] embedding, float score) {
+        if (score < minScore || embedding.length != current.length) {
+            return false;
+        }
+        for (int i = 0; i < current.length; i++) {
+            current[i] = (1f - alpha) * current[i] + alpha * embedding[i];
+        }
+        EmbeddingIndex.normalize(current);
+        return true;
+    }
+
+    /**
+     * How far the moving average has moved from the stored template (1 - cosine similarity)
+     */
+    public synchronized float getDrift() {
+        float dot = 0f;
+        for (int i = 0; i < current.length; i++) {
+            dot += stored[i] * current[i];
+        }
+        return 1f - dot;
+    }
+
+    /**
+     * Whether the moving average has drifted enough to be written back
+     */
+    public synchronized boolean needsWriteBack() {
+        return getDrift() >= driftThreshold;
+    }
+
+    /**
+     * Copy of the current moving average (normalized)
+     */
+    public synchronized float[] getTemplate() {
+        return current.clone();
+    }
+
+    /**
+     * One-line summary suitable for logcat
+     */
+    public synchronized String summary() {
+        return String.format(Locale.US, "drift=%.4f (threshold %.4f)", getDrift(), driftThreshold);
+    }
+}
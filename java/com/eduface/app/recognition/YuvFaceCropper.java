@@ -0,0 +1,146 @@
+package com.eduface.app.recognition;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Crops a face straight from the Y/U/V planes of a camera frame into a model input buffer.
+ * Rotation, crop, resampling (nearest neighbour) and YUV to RGB conversion happen in one
+ * pass over the output pixels, reading the planes in place. No Bitmap or full-frame
+ * buffer is created; output buffers come from a small pool and are reused.
+ */
+public class YuvFaceCropper {
+
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    private final int outputSize;
+    private final int bufferBytes;
+    private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+
+    // Source coordinates for each output column / row, reused between crops
+    private final int[] sourceColumns;
+    private final int[] sourceRows;
+
+    public YuvFaceCropper(int outputSize) {
+        this.outputSize = outputSize;
+        this.bufferBytes = 4 * outputSize * outputSize * 3;
+        this.sourceColumns = new int[outputSize];
+        this.sourceRows = new int[outputSize];
+    }
+
+    /**
+     * Whether a frame can be cropped by this class (otherwise use FaceCropper)
+     */
+    public static boolean supports(ImageProxy imageProxy) {
+        return imageProxy.getFormat() == ImageFormat.YUV_420_888 && imageProxy.getPlanes().length == 3;
+    }
+
+    /**
+     * Take a model input buffer from the pool (allocated on first use)
+     */
+    public synchronized ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer obtained from acquire()
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        if (pool.size() < MAX_POOLED_BUFFERS) {
+            pool.push(buffer);
+        }
+    }
+
+    /**
+     * Write the face region of a YUV_420_888 frame into a model input buffer
+     * (float32 RGB, normalized as FaceEmbedder expects).
+     *
+     * @param imageProxy Camera frame (still open)
+     * @param boundingBox Face box from ML Kit, in upright (rotated) image coordinates
+     * @param output Buffer from acquire(); rewound and ready to read on return
+     * @return false if the box lies outside the frame
+     */
+    public synchronized boolean crop(ImageProxy imageProxy, Rect boundingBox, ByteBuffer output) {
+        int width = imageProxy.getWidth();
+        int height = imageProxy.getHeight();
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        boolean swapped = rotation == 90 || rotation == 270;
+
+        Rect region = FaceCropper.expand(boundingBox,
+                swapped ? height : width, swapped ? width : height);
+        if (region.isEmpty()) {
+            return false;
+        }
+
+        // Nearest-neighbour sample positions in the upright image
+        for (int i = 0; i < outputSize; i++) {
+            sourceColumns[i] = region.left + (int) ((i + 0.5f) * region.width() / outputSize);
+            sourceRows[i] = region.top + (int) ((i + 0.5f) * region.height() / outputSize);
+        }
+
+        ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
+        ByteBuffer yPlane = planes[0].getBuffer();
+        ByteBuffer uPlane = planes[1].getBuffer();
+        ByteBuffer vPlane = planes[2].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        int yPixelStride = planes[0].getPixelStride();
+        int uvRowStride = planes[1].getRowStride();
+        int uvPixelStride = planes[1].getPixelStride();
+
+        output.clear();
+        for (int oy = 0; oy < outputSize; oy++) {
+            int uy = sourceRows[oy];
+            for (int ox = 0; ox < outputSize; ox++) {
+                int ux = sourceColumns[ox];
+
+                // Map the upright position back to sensor coordinates
+                int sx, sy;
+                switch (rotation) {
+                    case 90:
+                        sx = uy;
+                        sy = height - 1 - ux;
+                        break;
+                    case 180:
+                        sx = width - 1 - ux;
+                        sy = height - 1 - uy;
+                        break;
+                    case 270:
+                        sx = width - 1 - uy;
+                        sy = ux;
+                        break;
+                    default:
+                        sx = ux;
+                        sy = uy;
+                        break;
+                }
+
+                int y = yPlane.get(sy * yRowStride + sx * yPixelStride) & 0xFF;
+                int uvIndex = (sy >> 1) * uvRowStride + (sx >> 1) * uvPixelStride;
+                int u = (uPlane.get(uvIndex) & 0xFF) - 128;
+                int v = (vPlane.get(uvIndex) & 0xFF) - 128;
+
+                // BT.601 full range, as produced by the camera
+                output.putFloat(FaceEmbedder.normalizeChannel(clamp(y + 1.402f * v)));
+                output.putFloat(FaceEmbedder.normalizeChannel(clamp(y - 0.344136f * u - 0.714136f * v)));
+                output.putFloat(FaceEmbedder.normalizeChannel(clamp(y + 1.772f * u)));
+            }
+        }
+        output.rewind();
+        return true;
+    }
+
+    private static float clamp(float value) {
+        return value < 0f ? 0f : (value > 255f ? 255f : value);
+    }
+}
@@ -8,6 +8,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import android.content.DialogInterface;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -15,24 +16,26 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.eduface.app.BuildConfig;
 import com.eduface.app.R;
-import com.eduface.app.models.Attendance;
+import com.eduface.app.adapters.AttendanceAdapter;
+import com.eduface.app.adapters.AttendanceRowViewModel;
 import com.eduface.app.utils.AbsenteeNotifier;
 import com.eduface.app.utils.PreferenceManager;
 import com.eduface.app.utils.WhatsAppHelper;
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.Task;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Query;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 
-public class AttendanceActivity extends AppCompatActivity {
+public class AttendanceActivity extends AppCompatActivity implements AttendancePager.Listener {
+
+    private static final String TAG = "AttendanceActivity";
+    // Start loading the next page when the last visible row is this close to the end
+    private static final int PREFETCH_DISTANCE = 10;
 
     private RecyclerView attendanceRecyclerView;
     private TextView noRecordsTextView;
@@ -43,7 +46,9 @@ public class AttendanceActivity extends AppCompatActivity {
     private PreferenceManager preferenceManager;
     private boolean isTeacher;
     private String currentMeetingId; // For storing the current meeting ID if viewing specific meeting
-    private List<Attendance> attendanceList = new ArrayList<>(); // Store attendance records
+    private AttendanceAdapter attendanceAdapter;
+    private AttendancePager attendancePager; // Cursor over the attendance query
+    private final AttendanceDecodeStats decodeStats = new AttendanceDecodeStats();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -72,6 +77,16 @@ public class AttendanceActivity extends AppCompatActivity {
         
         // Set up recycler view
         attendanceRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        attendanceAdapter = new AttendanceAdapter(new ArrayList<>(), this);
+        attendanceRecyclerView.setAdapter(attendanceAdapter);
+        attendanceRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0) {
+                    maybeLoadNextPage();
+                }
+            }
+        });
         
         // Set up toolbar
         setSupportActionBar(findViewById(R.id.toolbar));
@@ -124,6 +139,19 @@ public class AttendanceActivity extends AppCompatActivity {
         onBackPressed();
         return true;
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Don't deliver a page still in flight to the destroyed screen
+        if (attendancePager != null) {
+            attendancePager.cancel();
+        }
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "Attendance list: " + decodeStats.summary() + String.format(Locale.US,
+                    ", binds=%d avg=%.1fus", attendanceAdapter.getBindCount(), attendanceAdapter.getAverageBindMicros()));
+        }
+    }
     
     private void loadAttendanceRecords() {
         // Show progress
@@ -138,85 +166,73 @@ public class AttendanceActivity extends AppCompatActivity {
             return;
         }
         
-        // Clear existing list
-        attendanceList.clear();
-        
-        // Query attendance records based on role and current meeting ID
+        // Query attendance records based on role and current meeting ID, newest first
+        Query query = db.collection("attendance");
         if (currentMeetingId != null) {
             // Load attendance for a specific meeting
-            db.collection("attendance")
-                    .whereEqualTo("meetingId", currentMeetingId)
-                    .get()
-                    .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
-                        @Override
-                        public void onComplete(@NonNull Task<QuerySnapshot> task) {
-                            handleAttendanceResults(task);
-                        }
-                    });
-        } else if (isTeacher) {
-            // For teachers, load all attendance records
-            db.collection("attendance")
-                    .get()
-                    .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
-                        @Override
-                        public void onComplete(@NonNull Task<QuerySnapshot> task) {
-                            handleAttendanceResults(task);
-                        }
-                    });
-        } else {
+            query = query.whereEqualTo("meetingId", currentMeetingId);
+        } else if (!isTeacher) {
             // For students, load only their own records
-            db.collection("attendance")
-                    .whereEqualTo("userId", userId)
-                    .get()
-                    .addOnCompleteListener(new OnCompleteListener<QuerySnapshot>() {
-                        @Override
-                        public void onComplete(@NonNull Task<QuerySnapshot> task) {
-                            handleAttendanceResults(task);
-                        }
-                    });
+            query = query.whereEqualTo("userId", userId);
         }
+        // Teachers without a meeting page through all attendance records
+        query = query.orderBy("joinedAt", Query.Direction.DESCENDING);
+
+        if (attendancePager != null) {
+            attendancePager.cancel();
+        }
+        attendancePager = new AttendancePager(query, AttendancePager.DEFAULT_PAGE_SIZE, this, decodeStats);
+        attendancePager.start();
     }
-    
-    private void handleAttendanceResults(Task<QuerySnapshot> task) {
+
+    /**
+     * Prefetch the next page while the user is still a few rows from the end
+     */
+    private void maybeLoadNextPage() {
+        if (attendancePager == null || !attendancePager.hasMore() || attendancePager.isLoading()) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) attendanceRecyclerView.getLayoutManager();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible >= attendanceAdapter.getItemCount() - PREFETCH_DISTANCE) {
+            attendancePager.loadNextPage();
+        }
+    }
+
+    @Override
+    public void onPageLoaded(List<AttendanceRowViewModel> rows, boolean firstPage, boolean hasMore) {
         // Hide progress
         progressBar.setVisibility(View.GONE);
-        
-        if (task.isSuccessful()) {
-            // Process attendance records
-            for (QueryDocumentSnapshot document : task.getResult()) {
-                // Create Attendance object from document
-                Attendance attendance = new Attendance();
-                attendance.setId(document.getId());
-                attendance.setMeetingId(document.getString("meetingId"));
-                attendance.setUserId(document.getString("userId"));
-                attendance.setStudentEmail(document.getString("studentEmail"));
-                attendance.setJoinedAt(document.getDate("joinedAt"));
-                attendance.setLeftAt(document.getDate("leftAt"));
-                attendance.setPresent(Boolean.TRUE.equals(document.getBoolean("present")));
-                attendance.setMeetingTitle(document.getString("meetingTitle"));
-                attendance.setStudentName(document.getString("studentName"));
-                
-                attendanceList.add(attendance);
-            }
-            
-            if (attendanceList.isEmpty()) {
-                // No records found
-                attendanceRecyclerView.setVisibility(View.GONE);
-                noRecordsTextView.setVisibility(View.VISIBLE);
-            } else {
-                // Display records
-                attendanceRecyclerView.setVisibility(View.VISIBLE);
-                noRecordsTextView.setVisibility(View.GONE);
-                
-                // Set adapter for recycler view
-                // AttendanceAdapter adapter = new AttendanceAdapter(attendanceList, isTeacher);
-                // attendanceRecyclerView.setAdapter(adapter);
-            }
+        Log.d(TAG, "Attendance page loaded, " + decodeStats.summary());
+
+        // The page may not fill the screen, in which case no scroll will follow
+        Runnable onCommitted = () -> attendanceRecyclerView.post(this::maybeLoadNextPage);
+        if (firstPage) {
+            attendanceAdapter.updateAttendance(rows, onCommitted);
         } else {
-            // Query failed
-            Toast.makeText(AttendanceActivity.this, getString(R.string.error_occurred), 
-                    Toast.LENGTH_SHORT).show();
+            attendanceAdapter.appendAttendance(rows, onCommitted);
         }
+
+        if (firstPage && rows.isEmpty()) {
+            // No records found
+            attendanceRecyclerView.setVisibility(View.GONE);
+            noRecordsTextView.setVisibility(View.VISIBLE);
+        } else {
+            // Display records
+            attendanceRecyclerView.setVisibility(View.VISIBLE);
+            noRecordsTextView.setVisibility(View.GONE);
+        }
+    }
+
+    @Override
+    public void onPageFailed(Exception e) {
+        // Hide progress
+        progressBar.setVisibility(View.GONE);
+
+        // Query failed; scrolling again retries the page
+        Log.e(TAG, "Error loading attendance records", e);
+        Toast.makeText(AttendanceActivity.this, getString(R.string.error_occurred), 
+                Toast.LENGTH_SHORT).show();
     }
     
     /**
@@ -0,0 +1,57 @@
+package com.eduface.app.ui.attendance;
+
+import java.util.Locale;
+
+/**
+ * Time spent decoding attendance pages from Firestore snapshots into rows, per page.
+ * Used to track whether decoding large classes stays cheap enough to keep off the frame budget.
+ */
+public class AttendanceDecodeStats {
+
+    private long pages;
+    private long rows;
+    private long totalNanos;
+    private long maxNanos;
+
+    /**
+     * Record the decoding of one page
+     */
+    public synchronized void record(int rowCount, long nanos) {
+        pages++;
+        rows += rowCount;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    public synchronized long getPageCount() {
+        return pages;
+    }
+
+    public synchronized long getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Average decode time per page, in milliseconds
+     */
+    public synchronized double getAverageMillis() {
+        return pages == 0 ? 0 : totalNanos / (double) pages / 1_000_000.0;
+    }
+
+    /**
+     * Worst decode time of a page, in milliseconds
+     */
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary suitable for logcat
+     */
+    public synchronized String summary() {
+        return String.format(Locale.US, "pages=%d, rows=%d, decode avg=%.2fms max=%.2fms",
+                pages, rows, getAverageMillis(), getMaxMillis());
+    }
+}
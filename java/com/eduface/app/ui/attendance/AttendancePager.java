@@ -0,0 +1,185 @@
+package com.eduface.app.ui.attendance;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.eduface.app.adapters.AttendanceRowViewModel;
+import com.eduface.app.models.AttendanceRow;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads attendance records one page at a time with a Firestore cursor
+ * (orderBy + startAfter + limit), so memory and time to first paint don't
+ * grow with the size of the attendance history.
+ * Snapshots are decoded into AttendanceRows and resolved into display-ready view models
+ * on a background thread; the finished page is handed to the listener on the main thread
+ * in one call.
+ * Only one page is in flight at a time.
+ */
+public class AttendancePager {
+
+    public static final int DEFAULT_PAGE_SIZE = 30;
+
+    // Shared decoding thread, stopped when idle
+    private static final ThreadPoolExecutor DECODE_EXECUTOR = new ThreadPoolExecutor(1, 1,
+            30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "EduFace-AttendanceDecode");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        DECODE_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Interface for page callbacks
+     */
+    public interface Listener {
+        /**
+         * @param rows Immutable view models of the page, in query order
+         * @param firstPage True for the first page after start()
+         * @param hasMore False once the end of the history has been reached
+         */
+        void onPageLoaded(List<AttendanceRowViewModel> rows, boolean firstPage, boolean hasMore);
+        void onPageFailed(Exception e);
+    }
+
+    /**
+     * Result of decoding one page
+     */
+    private static class DecodedPage {
+        final List<AttendanceRowViewModel> rows;
+        final DocumentSnapshot last;
+
+        DecodedPage(List<AttendanceRowViewModel> rows, DocumentSnapshot last) {
+            this.rows = rows;
+            this.last = last;
+        }
+    }
+
+    private final Query query;
+    private final int pageSize;
+    private final Listener listener;
+    private final AttendanceDecodeStats decodeStats;
+
+    private DocumentSnapshot cursor; // Last document of the last page, null before the first
+    private boolean loading;
+    private boolean endReached;
+    private int generation; // Bumped by start() and cancel() so a page from an earlier run is ignored
+    private boolean cancelled;
+
+    /**
+     * @param query Ordered query without a limit (e.g. orderBy("joinedAt", DESCENDING))
+     * @param decodeStats Receives the decode time of every page
+     */
+    public AttendancePager(Query query, int pageSize, Listener listener, AttendanceDecodeStats decodeStats) {
+        this.query = query;
+        this.pageSize = pageSize;
+        this.listener = listener;
+        this.decodeStats = decodeStats;
+    }
+
+    /**
+     * Discard the cursor and load the first page
+     */
+    public void start() {
+        if (cancelled) {
+            return;
+        }
+        generation++;
+        cursor = null;
+        loading = false;
+        endReached = false;
+        loadNextPage();
+    }
+
+    /**
+     * Load the page after the cursor, unless one is already loading or there are no more
+     *
+     * @return True if a request was started
+     */
+    public boolean loadNextPage() {
+        if (cancelled || loading || endReached) {
+            return false;
+        }
+        loading = true;
+
+        final int requestGeneration = generation;
+        final boolean firstPage = cursor == null;
+        Query page = firstPage ? query.limit(pageSize) : query.startAfter(cursor).limit(pageSize);
+        page.get()
+                .continueWith(DECODE_EXECUTOR, this::decode)
+                .addOnSuccessListener(decoded -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    loading = false;
+                    if (decoded.last != null) {
+                        cursor = decoded.last;
+                    }
+                    // A short page means the history is exhausted
+                    endReached = decoded.rows.size() < pageSize;
+                    listener.onPageLoaded(decoded.rows, firstPage, !endReached);
+                })
+                .addOnFailureListener(e -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    // Cursor is unchanged, so the next loadNextPage() retries this page
+                    loading = false;
+                    listener.onPageFailed(e);
+                });
+        return true;
+    }
+
+    /**
+     * Decode a page of snapshots into view models (runs on the decoding thread)
+     */
+    private DecodedPage decode(Task<QuerySnapshot> task) throws Exception {
+        if (!task.isSuccessful()) {
+            throw task.getException();
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        List<DocumentSnapshot> documents = task.getResult().getDocuments();
+        List<AttendanceRowViewModel> rows = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            rows.add(AttendanceRowViewModel.from(AttendanceRow.fromSnapshot(document)));
+        }
+        decodeStats.record(rows.size(), SystemClock.elapsedRealtimeNanos() - start);
+
+        DocumentSnapshot last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+        return new DecodedPage(Collections.unmodifiableList(rows), last);
+    }
+
+    /**
+     * Stop loading for good (e.g. when the screen is destroyed): a page in flight is
+     * dropped without reaching the listener, and no further pages are requested
+     */
+    public void cancel() {
+        cancelled = true;
+        generation++;
+        loading = false;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public boolean hasMore() {
+        return !cancelled && !endReached;
+    }
+}
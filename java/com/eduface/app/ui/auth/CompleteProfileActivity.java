@@ -17,6 +17,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.eduface.app.R;
+import com.eduface.app.recognition.FaceEmbedder;
 import com.eduface.app.ui.dashboard.StudentDashboardActivity;
 import com.eduface.app.ui.dashboard.TeacherDashboardActivity;
 import com.eduface.app.utils.PreferenceManager;
@@ -207,8 +208,11 @@ public class CompleteProfileActivity extends AppCompatActivity {
             // Navigate to teacher dashboard
             startActivity(new Intent(CompleteProfileActivity.this, TeacherDashboardActivity.class)
                     .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK));
+        } else if (FaceEmbedder.isEnabled()) {
+            // Capture the student's reference face, then continue to the student dashboard
+            startActivity(new Intent(CompleteProfileActivity.this, FaceEnrollmentActivity.class));
         } else {
-            // Navigate to student dashboard
+            // Detection-only build: no face to enroll
             startActivity(new Intent(CompleteProfileActivity.this, StudentDashboardActivity.class)
                     .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK));
         }
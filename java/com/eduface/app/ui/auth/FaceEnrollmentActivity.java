@@ -0,0 +1,313 @@
+package com.eduface.app.ui.auth;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.Preview;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+
+import android.Manifest;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Size;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.eduface.app.R;
+import com.eduface.app.recognition.EmbedderDelegateSelector;
+import com.eduface.app.recognition.EmbeddingIndex;
+import com.eduface.app.recognition.EnrolledFaceRepository;
+import com.eduface.app.recognition.FaceEmbedder;
+import com.eduface.app.recognition.FaceEnrollment;
+import com.eduface.app.recognition.FaceRecognizer;
+import com.eduface.app.ui.dashboard.StudentDashboardActivity;
+import com.eduface.app.utils.AnalysisExecutor;
+import com.eduface.app.utils.FaceDetectionHelper;
+import com.eduface.app.utils.FaceQualityGate;
+import com.eduface.app.utils.FramePipelineConfig;
+import com.eduface.app.utils.PreferenceManager;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.face.Face;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Captures a student's reference face after registration. Frames go through the same
+ * FaceDetectionHelper pipeline as attendance; faces that pass the quality gate are embedded
+ * on the analysis thread and FaceEnrollment averages several shots into one template,
+ * which is stored with the user (see EnrolledFaceRepository).
+ */
+public class FaceEnrollmentActivity extends AppCompatActivity implements FaceDetectionHelper.FaceDetectionListener,
+        FaceDetectionHelper.EnrollmentListener {
+
+    private static final String TAG = "FaceEnrollmentActivity";
+    private static final int CAMERA_PERMISSION_REQUEST_CODE = 101;
+
+    private PreviewView previewView;
+    private TextView faceStatusTextView;
+    private ProgressBar shotProgressBar;
+    private Button skipButton;
+
+    private PreferenceManager preferenceManager;
+    private FaceDetectionHelper faceDetectionHelper;
+    private FaceRecognizer faceRecognizer; // Used for its embedder only, the index stays empty
+    private final FaceEnrollment enrollment = new FaceEnrollment();
+    private ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
+    private AnalysisExecutor cameraExecutor;
+
+    // Last status hint shown, so per-frame callbacks only touch the UI when it changes
+    private volatile int shownHint;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_face_enrollment);
+
+        preferenceManager = new PreferenceManager(this);
+        cameraExecutor = AnalysisExecutor.getInstance();
+
+        previewView = findViewById(R.id.preview_view);
+        faceStatusTextView = findViewById(R.id.face_status_text_view);
+        shotProgressBar = findViewById(R.id.shot_progress_bar);
+        skipButton = findViewById(R.id.skip_button);
+
+        shotProgressBar.setMax(enrollment.getRequiredShots());
+        skipButton.setOnClickListener(v -> navigateToDashboard());
+
+        if (!FaceEmbedder.isEnabled()) {
+            // Detection-only build: there is nothing to enroll
+            navigateToDashboard();
+            return;
+        }
+        try {
+            FaceEmbedder embedder = new FaceEmbedder(this, EmbedderDelegateSelector.getPreferredDelegate(this));
+            faceRecognizer = new FaceRecognizer(embedder, new EmbeddingIndex(embedder.getEmbeddingSize()));
+        } catch (IOException e) {
+            // Builds without the model verify attendance by detection only
+            Log.w(TAG, "Face embedding model not available, skipping enrollment", e);
+            navigateToDashboard();
+            return;
+        }
+
+        checkCameraPermission();
+    }
+
+    private void checkCameraPermission() {
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.CAMERA},
+                    CAMERA_PERMISSION_REQUEST_CODE);
+        } else {
+            startCamera();
+        }
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+
+        if (requestCode == CAMERA_PERMISSION_REQUEST_CODE) {
+            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                startCamera();
+            } else {
+                // The student can enroll later; attendance falls back to detection only
+                Toast.makeText(this, getString(R.string.permission_denied), Toast.LENGTH_SHORT).show();
+                faceStatusTextView.setText(getString(R.string.camera_permission_needed));
+            }
+        }
+    }
+
+    private void startCamera() {
+        cameraProviderFuture = ProcessCameraProvider.getInstance(this);
+        cameraProviderFuture.addListener(() -> {
+            try {
+                bindCameraUseCases(cameraProviderFuture.get());
+            } catch (ExecutionException | InterruptedException e) {
+                Log.e(TAG, "Error getting camera provider", e);
+                faceStatusTextView.setText(getString(R.string.error_occurred));
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    private void bindCameraUseCases(@NonNull ProcessCameraProvider cameraProvider) {
+        cameraProvider.unbindAll();
+
+        CameraSelector cameraSelector = new CameraSelector.Builder()
+                .requireLensFacing(CameraSelector.LENS_FACING_FRONT)
+                .build();
+
+        Preview preview = new Preview.Builder().build();
+        preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+        // Same pipeline settings as attendance, so the template matches what verification sees
+        FramePipelineConfig.Builder configBuilder =
+                FramePipelineConfig.builderForProfile(preferenceManager.getFramePipelineProfile());
+        Size analysisResolution = preferenceManager.getAnalysisResolution();
+        if (analysisResolution != null) {
+            configBuilder.setTargetResolution(analysisResolution);
+        }
+        FramePipelineConfig pipelineConfig = configBuilder.build();
+        ImageAnalysis imageAnalysis = pipelineConfig.buildImageAnalysis();
+
+        if (faceDetectionHelper != null) {
+            faceDetectionHelper.shutdown();
+        }
+        faceDetectionHelper = new FaceDetectionHelper(this, this, pipelineConfig);
+        // Embeddings are computed on the analysis thread, never on the UI thread
+        faceDetectionHelper.setCallbackExecutor(cameraExecutor);
+        faceDetectionHelper.setQualityGate(new FaceQualityGate(FaceQualityGate.Policy.DEFAULT));
+        faceDetectionHelper.setEnrollmentStage(faceRecognizer, this);
+        imageAnalysis.setAnalyzer(cameraExecutor, faceDetectionHelper);
+
+        try {
+            cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
+        } catch (Exception e) {
+            Log.e(TAG, "Error binding camera use cases", e);
+            faceStatusTextView.setText(getString(R.string.error_occurred));
+        }
+    }
+
+    private void stopCamera() {
+        if (cameraProviderFuture == null) {
+            return;
+        }
+        try {
+            cameraProviderFuture.get().unbindAll();
+        } catch (ExecutionException | InterruptedException e) {
+            Log.e(TAG, "Error unbinding camera use cases", e);
+        }
+    }
+
+    // --- FaceDetectionHelper Callbacks (analysis thread) ---
+    @Override
+    public void onFaceEmbedded(Face face, float[] embedding) {
+        if (!enrollment.addShot(embedding, SystemClock.elapsedRealtime())) {
+            return;
+        }
+        int shots = enrollment.getShotCount();
+        boolean complete = enrollment.isComplete();
+        runOnUiThread(() -> {
+            shotProgressBar.setProgress(shots);
+            faceStatusTextView.setText(getString(R.string.face_enrollment_progress, shots,
+                    enrollment.getRequiredShots()));
+            if (complete) {
+                saveTemplate();
+            }
+        });
+    }
+
+    @Override
+    public void onFaceDetected(Face face, Rect boundingBox, float confidence) {
+        showHint(R.string.face_detected);
+    }
+
+    @Override
+    public void onLowQualityFace(Face face, int reason, float score) {
+        switch (reason) {
+            case FaceQualityGate.REASON_POSE:
+                showHint(R.string.face_quality_pose);
+                break;
+            case FaceQualityGate.REASON_SIZE:
+                showHint(R.string.face_quality_size);
+                break;
+            case FaceQualityGate.REASON_LIGHTING:
+                showHint(R.string.face_quality_lighting);
+                break;
+            default:
+                showHint(R.string.face_quality_blur);
+                break;
+        }
+    }
+
+    @Override
+    public void onFaceDetectionFailed(Exception e) {
+        Log.e(TAG, "Face detection failed", e);
+        showHint(R.string.face_detection_failed);
+    }
+
+    @Override
+    public void onNoFaceDetected() {
+        showHint(R.string.face_not_detected);
+    }
+
+    /**
+     * Show a status hint until the next shot is captured, posting to the UI only when it changes
+     */
+    private void showHint(int hint) {
+        if (shownHint == hint || enrollment.isComplete()) {
+            return;
+        }
+        shownHint = hint;
+        runOnUiThread(() -> faceStatusTextView.setText(getString(hint)));
+    }
+
+    // --- Saving ---
+    private void saveTemplate() {
+        stopCamera();
+        faceDetectionHelper.setEnrollmentStage(null, null);
+        skipButton.setEnabled(false);
+        faceStatusTextView.setText(getString(R.string.face_enrollment_saving));
+
+        String userId = preferenceManager.getUserId();
+        if (userId == null) {
+            Log.e(TAG, "No user session, cannot save face template.");
+            navigateToDashboard();
+            return;
+        }
+
+        new EnrolledFaceRepository().saveTemplate(userId, enrollment.getTemplate(),
+                new EnrolledFaceRepository.SaveCallback() {
+                    @Override
+                    public void onSaved() {
+                        Log.d(TAG, "Face template saved for: " + userId);
+                        Toast.makeText(FaceEnrollmentActivity.this, getString(R.string.face_enrollment_saved),
+                                Toast.LENGTH_SHORT).show();
+                        navigateToDashboard();
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        Log.e(TAG, error);
+                        Toast.makeText(FaceEnrollmentActivity.this, getString(R.string.face_enrollment_failed),
+                                Toast.LENGTH_SHORT).show();
+                        // Capture again from scratch
+                        enrollment.reset();
+                        shownHint = 0;
+                        shotProgressBar.setProgress(0);
+                        skipButton.setEnabled(true);
+                        if (!isFinishing()) {
+                            checkCameraPermission();
+                        }
+                    }
+                });
+    }
+
+    private void navigateToDashboard() {
+        startActivity(new Intent(this, StudentDashboardActivity.class)
+                .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK));
+        finish();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (faceDetectionHelper != null) {
+            faceDetectionHelper.shutdown();
+        }
+        if (faceRecognizer != null) {
+            faceRecognizer.close();
+        }
+    }
+}
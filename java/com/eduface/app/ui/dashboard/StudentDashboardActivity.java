@@ -2,6 +2,7 @@ package com.eduface.app.ui.dashboard;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
+import androidx.lifecycle.Lifecycle;
 import androidx.recyclerview.widget.LinearLayoutManager; // Import LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView; // Import RecyclerView
 
@@ -16,10 +17,15 @@ import android.widget.Toast;
 
 import com.eduface.app.R;
 import com.eduface.app.models.Meeting; // Import Meeting model
+import com.eduface.app.recognition.EmbedderDelegateSelector;
+import com.eduface.app.recognition.FaceEmbedder;
 import com.eduface.app.ui.attendance.AttendanceActivity;
 import com.eduface.app.ui.auth.LoginActivity;
 import com.eduface.app.ui.meeting.JoinMeetingActivity;
 import com.eduface.app.ui.meeting.MeetingActivity;
+import com.eduface.app.utils.FaceDetectorCascade;
+import com.eduface.app.utils.FramePipelineConfig;
+import com.eduface.app.utils.FrameStats;
 import com.eduface.app.utils.PreferenceManager;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentSnapshot; // Import DocumentSnapshot
@@ -51,6 +57,7 @@ public class StudentDashboardActivity extends AppCompatActivity implements Meeti
     private FirebaseFirestore db; // Initialize Firestore
 
     private MeetingAdapter upcomingMeetingsAdapter; // Adapter for upcoming meetings
+    private FaceDetectorCascade warmDetectors; // Held while an active meeting is listed
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -141,6 +148,41 @@ public class StudentDashboardActivity extends AppCompatActivity implements Meeti
         loadUpcomingMeetingsForStudent();
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The shared detectors stay loaded for a while after release, long enough
+        // for MeetingActivity to pick them up
+        releaseWarmDetectors();
+    }
+
+    /**
+     * Load the face detection models in the background so the first detection
+     * in MeetingActivity runs at steady-state speed
+     */
+    private void prewarmFaceDetection() {
+        if (warmDetectors != null) {
+            return;
+        }
+        FramePipelineConfig config =
+                FramePipelineConfig.forProfile(preferenceManager.getFramePipelineProfile());
+        warmDetectors = new FaceDetectorCascade(config, new FrameStats());
+        warmDetectors.prewarm();
+
+        // Pick the embedding model's backend once per device, while the camera is idle
+        // (on its own thread, so the shared analysis thread stays free for camera frames)
+        if (FaceEmbedder.isEnabled()) {
+            EmbedderDelegateSelector.selectInBackground(this);
+        }
+    }
+
+    private void releaseWarmDetectors() {
+        if (warmDetectors != null) {
+            warmDetectors.close();
+            warmDetectors = null;
+        }
+    }
+
     /**
      * Loads active meetings that are scheduled for a future time, relevant to students.
      * For simplicity, this loads ALL active upcoming meetings.
@@ -183,6 +225,11 @@ public class StudentDashboardActivity extends AppCompatActivity implements Meeti
                         upcomingMeetingsRecyclerView.setVisibility(View.VISIBLE);
                         noUpcomingMeetingsTextView.setVisibility(View.GONE);
 
+                        // A meeting is active, so attendance capture is likely next
+                        if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+                            prewarmFaceDetection();
+                        }
+
                         // Update the adapter with the new list of meetings
                         if (upcomingMeetingsAdapter != null) {
                             upcomingMeetingsAdapter.updateMeetings(meetingList);
@@ -0,0 +1,211 @@
+package com.eduface.app.ui.meeting;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.StringRes;
+
+import com.eduface.app.R;
+
+/**
+ * State machine for capturing a student's attendance from camera frames.
+ *
+ *   IDLE -> SEARCHING -> STABILIZING -> (VERIFYING) -> WRITING -> DONE
+ *
+ * Frame events can arrive at camera rate on any thread; repeated events that do not change
+ * the state (or its hint) are coalesced, and the listener is called on the main thread only
+ * when the state changes, at most once per main-thread message however many changes happened
+ * in between. The listener starts the attendance write when it sees WRITING; only
+ * onWriteSucceeded() or onWriteFailed() leave that state, so one write is in flight at a time.
+ */
+public class AttendanceCapture {
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_SEARCHING = 1;   // camera running, no usable face
+    public static final int STATE_STABILIZING = 2; // face in view, waiting for it to stay
+    public static final int STATE_VERIFYING = 3;   // identity or liveness check in progress
+    public static final int STATE_WRITING = 4;     // attendance write in flight
+    public static final int STATE_DONE = 5;
+
+    // Consecutive face frames before a face counts as stable
+    public static final int DEFAULT_STABLE_FRAMES = 3;
+
+    /**
+     * Receives state changes on the main thread
+     */
+    public interface Listener {
+        /**
+         * @param hint Status text for the new state
+         */
+        void onCaptureStateChanged(int state, @StringRes int hint);
+    }
+
+    private final Listener listener;
+    private final int stableFrames;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable deliver = this::deliver;
+
+    private int state = STATE_IDLE;
+    private int hint;
+    private int faceFrames;
+    private boolean deliveryPending;
+    private int deliveredState = -1;
+    private int deliveredHint;
+    // Counts entries into WRITING, so a retry is delivered even if coalescing hid the failure
+    private int writes;
+    private int deliveredWrites;
+
+    private long events;
+    private long transitions;
+
+    public AttendanceCapture(Listener listener) {
+        this(listener, DEFAULT_STABLE_FRAMES);
+    }
+
+    public AttendanceCapture(Listener listener, int stableFrames) {
+        this.listener = listener;
+        this.stableFrames = Math.max(1, stableFrames);
+    }
+
+    /**
+     * The camera has started looking for a face
+     */
+    public synchronized void start() {
+        if (state == STATE_IDLE) {
+            moveTo(STATE_SEARCHING, R.string.verifying_face);
+        }
+    }
+
+    /**
+     * The camera has stopped; a write in flight still completes
+     */
+    public synchronized void stop() {
+        if (state != STATE_WRITING && state != STATE_DONE) {
+            moveTo(STATE_IDLE, 0);
+        }
+    }
+
+    /**
+     * A usable face was found in a frame
+     *
+     * @param needsVerification Whether identity or liveness must be checked before writing
+     */
+    public synchronized void onFace(boolean needsVerification) {
+        events++;
+        if (state == STATE_SEARCHING) {
+            faceFrames = 0;
+            moveTo(STATE_STABILIZING, R.string.face_detected);
+        }
+        if (state != STATE_STABILIZING || ++faceFrames < stableFrames) {
+            return;
+        }
+        if (needsVerification) {
+            moveTo(STATE_VERIFYING, R.string.verifying_identity);
+        } else {
+            moveTo(STATE_WRITING, R.string.marking_attendance);
+        }
+    }
+
+    /**
+     * No usable face in a frame (or the face was rejected); stabilization starts over
+     *
+     * @param hint Status text explaining why
+     */
+    public synchronized void onNoFace(@StringRes int hint) {
+        events++;
+        if (isCapturing()) {
+            moveTo(STATE_SEARCHING, hint);
+        }
+    }
+
+    /**
+     * Update the hint of the verification in progress (e.g. a liveness challenge started)
+     */
+    public synchronized void onVerificationHint(@StringRes int hint) {
+        events++;
+        if (state == STATE_VERIFYING) {
+            moveTo(STATE_VERIFYING, hint);
+        }
+    }
+
+    /**
+     * Identity (and liveness, if required) confirmed; starts the write unless one is already in flight
+     */
+    public synchronized void onVerified() {
+        events++;
+        if (state == STATE_VERIFYING) {
+            moveTo(STATE_WRITING, R.string.marking_attendance);
+        }
+    }
+
+    /**
+     * The attendance write completed
+     */
+    public synchronized void onWriteSucceeded() {
+        if (state == STATE_WRITING) {
+            moveTo(STATE_DONE, R.string.attendance_marked);
+        }
+    }
+
+    /**
+     * The attendance write failed; the next face starts over
+     */
+    public synchronized void onWriteFailed() {
+        if (state == STATE_WRITING) {
+            moveTo(STATE_SEARCHING, R.string.attendance_failed);
+        }
+    }
+
+    public synchronized int getState() {
+        return state;
+    }
+
+    public synchronized boolean isDone() {
+        return state == STATE_DONE;
+    }
+
+    /**
+     * Number of frame events received and state changes they caused, for logging
+     */
+    public synchronized String summary() {
+        return "events=" + events + ", transitions=" + transitions;
+    }
+
+    private boolean isCapturing() {
+        return state == STATE_SEARCHING || state == STATE_STABILIZING || state == STATE_VERIFYING;
+    }
+
+    private void moveTo(int newState, @StringRes int newHint) {
+        if (newState == state && newHint == hint) {
+            return;
+        }
+        state = newState;
+        hint = newHint;
+        transitions++;
+        if (newState == STATE_WRITING) {
+            writes++;
+        }
+        // One message delivers the latest state, however many transitions happen before it runs
+        if (!deliveryPending) {
+            deliveryPending = true;
+            mainHandler.post(deliver);
+        }
+    }
+
+    private void deliver() {
+        int currentState;
+        int currentHint;
+        synchronized (this) {
+            deliveryPending = false;
+            if (state == deliveredState && hint == deliveredHint && writes == deliveredWrites) {
+                return;
+            }
+            currentState = state;
+            currentHint = hint;
+            deliveredState = state;
+            deliveredHint = hint;
+            deliveredWrites = writes;
+        }
+        listener.onCaptureStateChanged(currentState, currentHint);
+    }
+}
@@ -18,6 +18,9 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.util.Log;
+import android.util.Size;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ProgressBar;
@@ -25,9 +28,23 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.eduface.app.R;
+import com.eduface.app.recognition.EmbedderDelegateSelector;
+import com.eduface.app.recognition.EmbeddingIndex;
+import com.eduface.app.recognition.EnrolledFaceRepository;
+import com.eduface.app.recognition.FaceEmbedder;
+import com.eduface.app.recognition.FaceRecognizer;
+import com.eduface.app.recognition.FaceTemplateFile;
+import com.eduface.app.recognition.TemplateRefresher;
 import com.eduface.app.ui.dashboard.StudentDashboardActivity;
 import com.eduface.app.ui.dashboard.TeacherDashboardActivity;
+import com.eduface.app.utils.AnalysisExecutor;
 import com.eduface.app.utils.FaceDetectionHelper;
+import com.eduface.app.utils.FaceQualityGate;
+import com.eduface.app.utils.FramePipelineConfig;
+import com.eduface.app.utils.FrameTraceRecorder;
+import com.eduface.app.utils.IoExecutor;
+import com.eduface.app.utils.LivenessChallenge;
+import com.eduface.app.utils.ResolutionProfiler;
 import com.eduface.app.utils.PreferenceManager; // Make sure this import is correct
 import com.google.common.util.concurrent.ListenableFuture; // Import ListenableFuture
 import com.google.firebase.firestore.DocumentReference;
@@ -38,20 +55,31 @@ import org.jitsi.meet.sdk.JitsiMeetActivity;
 import org.jitsi.meet.sdk.JitsiMeetConferenceOptions;
 import org.jitsi.meet.sdk.JitsiMeetUserInfo;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException; // Import ExecutionException
-import java.util.concurrent.ExecutorService; // Import ExecutorService
-import java.util.concurrent.Executors; // Import Executors
 
 
-public class MeetingActivity extends AppCompatActivity implements FaceDetectionHelper.FaceDetectionListener {
+public class MeetingActivity extends AppCompatActivity implements FaceDetectionHelper.FaceDetectionListener,
+        FaceDetectionHelper.RecognitionListener, FaceDetectionHelper.LivenessListener,
+        FaceDetectionHelper.MultiFaceListener, AttendanceCapture.Listener {
 
     private static final String TAG = "MeetingActivity";
     private static final int CAMERA_PERMISSION_REQUEST_CODE = 100;
+    // Re-sync cached face templates with Firestore after this long
+    private static final long TEMPLATE_MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+    // Smallest face (fraction of the frame width) detected in classroom mode
+    private static final float CLASSROOM_MIN_FACE_SIZE = 0.05f;
 
     private TextView meetingTitleTextView, meetingCodeTextView, faceStatusTextView;
     private Button markAttendanceButton, leaveMeetingButton;
@@ -60,14 +88,26 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
 
     private String meetingId, meetingCode, meetingTitle;
     private boolean isTeacher;
-    private boolean attendanceMarked = false;
+    private volatile boolean livenessRequired; // Liveness check enabled in preferences
+    private volatile boolean livenessPassed = false; // Set once the liveness challenge succeeds
+    private AttendanceCapture attendanceCapture; // Turns per-frame callbacks into attendance states
+    private volatile boolean classroomMode; // Teacher marks every recognized student present
+    private final Set<String> classroomMarked = ConcurrentHashMap.newKeySet(); // Students marked in classroom mode
+    private volatile int classroomFaceCount = -1; // Faces in the last classroom frame
+    private boolean recognitionStarted; // initFaceRecognition() has run
 
     private PreferenceManager preferenceManager;
     private FirebaseFirestore db;
     private FaceDetectionHelper faceDetectionHelper;
+    // Last frames seen by face detection, kept across camera sessions for export
+    private final FrameTraceRecorder frameTrace = new FrameTraceRecorder();
+    private FaceRecognizer faceRecognizer; // Set when the student has an enrolled face
+    private FaceTemplateFile templateFile; // Local cache of enrolled templates
+    private volatile EmbeddingIndex.Match confidentMatch; // Last confident match of this student
+    private volatile ResolutionProfiler resolutionProfiler; // Set while profiling after attendance
 
     private ListenableFuture<ProcessCameraProvider> cameraProviderFuture; // CameraX provider
-    private ExecutorService cameraExecutor; // Executor for camera tasks
+    private AnalysisExecutor cameraExecutor; // Shared executor for camera frame analysis
 
 
     @Override
@@ -89,6 +129,8 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
 
         // Check if user is teacher
         isTeacher = "teacher".equals(preferenceManager.getUserRole());
+        livenessRequired = preferenceManager.isLivenessCheckEnabled();
+        attendanceCapture = new AttendanceCapture(this);
 
         // Initialize views
         meetingTitleTextView = findViewById(R.id.meeting_title_text_view);
@@ -129,7 +171,15 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
         });
 
         // Initialize CameraX Executor
-        cameraExecutor = Executors.newSingleThreadExecutor();
+        cameraExecutor = AnalysisExecutor.getInstance();
+
+        // Load enrolled faces so attendance can verify who is in front of the camera
+        if (!isTeacher && FaceEmbedder.isEnabled()) {
+            recognitionStarted = true;
+            initFaceRecognition();
+        } else if (!isTeacher) {
+            Log.i(TAG, "Face recognition disabled in this build, attendance uses detection only.");
+        }
 
         // Start Jitsi meeting (This will open a separate window)
         startJitsiMeeting();
@@ -141,6 +191,278 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
         // you would need to integrate Jitsi differently (e.g., using JitsiMeetView).
     }
 
+    /**
+     * Load the embedding model and the enrolled students' index.
+     * The index comes straight from the memory-mapped template file when it is fresh;
+     * Firestore is only queried when the cache is stale or lacks this student.
+     * Students without an enrolled face (or builds without the model) fall back to detection only;
+     * teachers load it for classroom mode, which needs at least one enrolled student.
+     */
+    private void initFaceRecognition() {
+        final FaceEmbedder embedder;
+        try {
+            // Backend benchmarked for this device on the dashboard (XNNPACK until then)
+            embedder = new FaceEmbedder(this, EmbedderDelegateSelector.getPreferredDelegate(this));
+        } catch (IOException e) {
+            Log.w(TAG, "Face embedding model not available, using detection only", e);
+            return;
+        }
+
+        EmbeddingIndex cachedIndex = new EmbeddingIndex(embedder.getEmbeddingSize());
+        try {
+            templateFile = FaceTemplateFile.open(new File(getFilesDir(), FaceTemplateFile.DEFAULT_FILE_NAME),
+                    embedder.getEmbeddingSize());
+            cachedIndex = templateFile.loadIndex();
+        } catch (IOException e) {
+            Log.w(TAG, "Face template file unavailable, loading from Firestore", e);
+        }
+
+        boolean enrolled = isUsableIndex(cachedIndex);
+        if (enrolled) {
+            faceRecognizer = new FaceRecognizer(embedder, cachedIndex);
+            Log.d(TAG, "Face verification enabled from cache, " + cachedIndex.size() + " enrolled students.");
+        }
+
+        boolean stale = templateFile == null
+                || System.currentTimeMillis() - templateFile.getLastSyncMillis() > TEMPLATE_MAX_AGE_MS;
+        if (enrolled && !stale) {
+            return;
+        }
+
+        // Don't allow attendance until we know whether verification is needed
+        if (!enrolled) {
+            markAttendanceButton.setEnabled(false);
+        }
+        EnrolledFaceRepository.IndexCallback callback = new EnrolledFaceRepository.IndexCallback() {
+            @Override
+            public void onIndexLoaded(EmbeddingIndex index) {
+                applyEnrolledIndex(embedder, index);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, error);
+                if (faceRecognizer == null) {
+                    embedder.close();
+                    if (isTeacher) {
+                        recognitionStarted = false; // Retried when classroom mode is turned on again
+                        Toast.makeText(MeetingActivity.this, getString(R.string.classroom_no_enrolled_faces),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+                markAttendanceButton.setEnabled(!attendanceCapture.isDone());
+            }
+        };
+
+        EnrolledFaceRepository repository = new EnrolledFaceRepository();
+        if (templateFile != null) {
+            repository.syncTemplateFile(templateFile, callback);
+        } else {
+            repository.loadStudentIndex(embedder.getEmbeddingSize(), callback);
+        }
+    }
+
+    /**
+     * Use a freshly loaded index, enabling verification if this student is enrolled
+     */
+    private void applyEnrolledIndex(FaceEmbedder embedder, EmbeddingIndex index) {
+        if (isDestroyed()) {
+            if (faceRecognizer == null) {
+                embedder.close();
+            }
+            return;
+        }
+
+        if (faceRecognizer != null) {
+            faceRecognizer.setIndex(index);
+        } else if (isUsableIndex(index)) {
+            faceRecognizer = new FaceRecognizer(embedder, index);
+            Log.d(TAG, "Face verification enabled, " + index.size() + " enrolled students.");
+            if (classroomMode && faceDetectionHelper != null) {
+                // The classroom camera started before the index arrived
+                faceDetectionHelper.setRecognitionStage(faceRecognizer, this);
+            }
+        } else if (isTeacher) {
+            embedder.close();
+            recognitionStarted = false;
+            Toast.makeText(this, getString(R.string.classroom_no_enrolled_faces), Toast.LENGTH_SHORT).show();
+        } else {
+            embedder.close();
+            Log.d(TAG, "No enrolled face for this user, using detection only.");
+        }
+        markAttendanceButton.setEnabled(!attendanceCapture.isDone());
+    }
+
+    /**
+     * Whether an index can be recognized against: it must hold this student's face, or for a
+     * teacher's classroom mode any student's face
+     */
+    private boolean isUsableIndex(EmbeddingIndex index) {
+        return isTeacher ? index.size() > 0 : index.contains(preferenceManager.getUserId());
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        // Detection settings and trace export only concern students' attendance capture;
+        // teachers get classroom attendance instead
+        getMenuInflater().inflate(isTeacher ? R.menu.meeting_teacher_menu : R.menu.meeting_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        MenuItem livenessItem = menu.findItem(R.id.action_liveness_check);
+        if (livenessItem != null) {
+            livenessItem.setChecked(livenessRequired);
+        }
+        MenuItem classroomItem = menu.findItem(R.id.action_classroom_attendance);
+        if (classroomItem != null) {
+            // Students can only be told apart with face recognition
+            classroomItem.setVisible(FaceEmbedder.isEnabled());
+            classroomItem.setChecked(classroomMode);
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+
+        if (id == R.id.action_detection_profile) {
+            showFramePipelineProfileDialog();
+            return true;
+        } else if (id == R.id.action_analysis_region) {
+            showAnalysisRegionDialog();
+            return true;
+        } else if (id == R.id.action_liveness_check) {
+            // Takes effect from the next stable face
+            livenessRequired = !item.isChecked();
+            item.setChecked(livenessRequired);
+            preferenceManager.setLivenessCheckEnabled(livenessRequired);
+            return true;
+        } else if (id == R.id.action_classroom_attendance) {
+            setClassroomMode(!item.isChecked());
+            item.setChecked(classroomMode);
+            return true;
+        } else if (id == R.id.action_export_trace_csv) {
+            exportFrameTrace(false);
+            return true;
+        } else if (id == R.id.action_export_trace_binary) {
+            exportFrameTrace(true);
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Let the student pick the frame pipeline profile for this device. Older phones that
+     * overheat or lag in the meeting can drop to the low end profile, fast ones can go higher.
+     */
+    private void showFramePipelineProfileDialog() {
+        final String[] profiles = {
+                FramePipelineConfig.PROFILE_LOW_END,
+                FramePipelineConfig.PROFILE_MID_RANGE,
+                FramePipelineConfig.PROFILE_HIGH_END
+        };
+        String[] labels = {
+                getString(R.string.detection_profile_low_end),
+                getString(R.string.detection_profile_mid_range),
+                getString(R.string.detection_profile_high_end)
+        };
+        int checked = Arrays.asList(profiles).indexOf(preferenceManager.getFramePipelineProfile());
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.detection_profile)
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    preferenceManager.setFramePipelineProfile(profiles[which]);
+                    // A running camera session keeps its pipeline until it is rebound
+                    Toast.makeText(this, getString(R.string.detection_profile_applied), Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Let the student restrict face detection to the centre of the camera view. Detecting in
+     * a smaller region is cheaper and ignores people in the background.
+     */
+    private void showAnalysisRegionDialog() {
+        final float[] fractions = {1f, 0.8f, 0.6f};
+        String[] labels = {
+                getString(R.string.analysis_region_full),
+                getString(R.string.analysis_region_80),
+                getString(R.string.analysis_region_60)
+        };
+        int checked = -1;
+        float current = preferenceManager.getAnalysisRoiFraction();
+        for (int i = 0; i < fractions.length; i++) {
+            if (Math.abs(fractions[i] - current) < 0.01f) {
+                checked = i;
+            }
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.analysis_region)
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    preferenceManager.setAnalysisRoiFraction(fractions[which]);
+                    Toast.makeText(this, getString(R.string.detection_profile_applied), Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Save the detection trace to the app's external files directory (traces/),
+     * where it can be pulled over USB or attached to a support request
+     */
+    private void exportFrameTrace(boolean binary) {
+        File base = getExternalFilesDir(null);
+        File directory = new File(base != null ? base : getFilesDir(), "traces");
+        File file = new File(directory, "frame_trace_" + System.currentTimeMillis() + (binary ? ".bin" : ".csv"));
+        // Write on the I/O thread, not the analysis thread; the recorder copies its buffer
+        // under its lock first, so detection is not held up by the disk
+        IoExecutor.get().execute(() -> {
+            try {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Cannot create " + directory);
+                }
+                if (binary) {
+                    frameTrace.exportBinary(file);
+                } else {
+                    frameTrace.exportCsv(file);
+                }
+                Log.d(TAG, "Exported " + frameTrace.size() + " traced frames to " + file);
+                runOnUiThread(() -> Toast.makeText(this, getString(R.string.trace_exported, file.getPath()),
+                        Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                Log.e(TAG, "Error exporting frame trace", e);
+                runOnUiThread(() -> Toast.makeText(this, getString(R.string.trace_export_failed),
+                        Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    /**
+     * Teacher classroom mode: the rear camera looks at the class and every enrolled student
+     * whose face is recognized is marked present, one attendance record per student.
+     * Turning it off (or leaving the meeting) stops the camera.
+     */
+    private void setClassroomMode(boolean enabled) {
+        if (!enabled) {
+            stopCameraAndFaceDetection();
+            return;
+        }
+        classroomMode = true;
+        if (!recognitionStarted) {
+            recognitionStarted = true;
+            initFaceRecognition();
+        }
+        checkCameraPermission();
+    }
+
     private void startJitsiMeeting() {
         try {
             // Configure Jitsi meeting options
@@ -213,7 +535,11 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
         previewView.setVisibility(View.VISIBLE);
         progressBar.setVisibility(View.VISIBLE);
         faceStatusTextView.setVisibility(View.VISIBLE);
-        faceStatusTextView.setText(getString(R.string.verifying_face));
+        if (classroomMode) {
+            classroomFaceCount = -1;
+        } else {
+            attendanceCapture.start();
+        }
 
         cameraProviderFuture = ProcessCameraProvider.getInstance(this);
 
@@ -233,22 +559,58 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
         // Unbind any previously bound use cases
         cameraProvider.unbindAll();
 
-        // Select a camera (front camera is usually preferred for face detection)
+        // Select a camera (front camera is usually preferred for face detection,
+        // the rear one faces the class in classroom mode)
         CameraSelector cameraSelector = new CameraSelector.Builder()
-                .requireLensFacing(CameraSelector.LENS_FACING_FRONT)
+                .requireLensFacing(classroomMode ? CameraSelector.LENS_FACING_BACK : CameraSelector.LENS_FACING_FRONT)
                 .build();
 
         // Setup Preview use case
         Preview preview = new Preview.Builder().build();
         preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
-        // Setup ImageAnalysis use case for face detection
-        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                 .build();
+        // Setup ImageAnalysis use case for face detection, tuned for this device class.
+        // While profiling, bind at the profiler's candidate; otherwise at the profiled resolution,
+        // or the profile's own until the device has been profiled.
+        ResolutionProfiler profiler = resolutionProfiler;
+        Size analysisResolution = profiler != null
+                ? profiler.getCurrentResolution() : preferenceManager.getAnalysisResolution();
+        FramePipelineConfig.Builder pipelineBuilder =
+                FramePipelineConfig.builderForProfile(preferenceManager.getFramePipelineProfile())
+                        .setRoiFraction(preferenceManager.getAnalysisRoiFraction());
+        if (analysisResolution != null) {
+            pipelineBuilder.setTargetResolution(analysisResolution);
+        }
+        if (classroomMode) {
+            // Students sit all over the frame, far from the camera
+            pipelineBuilder.setRoiFraction(1f).setMinFaceSize(CLASSROOM_MIN_FACE_SIZE);
+        }
+        FramePipelineConfig pipelineConfig = pipelineBuilder.build();
+        ImageAnalysis imageAnalysis = pipelineConfig.buildImageAnalysis();
 
+        // Release the previous session's detectors (shared detectors are refcounted)
+        if (faceDetectionHelper != null) {
+            faceDetectionHelper.shutdown();
+        }
         // Initialize FaceDetectionHelper and set it as the analyzer
         // Pass the lifecycle owner and the listener
-        faceDetectionHelper = new FaceDetectionHelper(this, this);
+        faceDetectionHelper = new FaceDetectionHelper(this, this, pipelineConfig);
+        // Deliver results on the analysis thread; UI updates go through AttendanceCapture
+        faceDetectionHelper.setCallbackExecutor(cameraExecutor);
+        // Only usable faces reach the recognizer and the attendance write
+        faceDetectionHelper.setQualityGate(new FaceQualityGate(
+                classroomMode ? FaceQualityGate.Policy.CLASSROOM : FaceQualityGate.Policy.DEFAULT));
+        faceDetectionHelper.setTraceRecorder(frameTrace);
+        if (profiler != null) {
+            // Measure this stream with the helper's own timings; attendance is already marked
+            profiler.attach(faceDetectionHelper);
+        } else if (faceRecognizer != null) {
+            faceDetectionHelper.setRecognitionStage(faceRecognizer, this);
+        }
+        if (classroomMode) {
+            // Each tracked face is recognized once it is stable, see onFaceRecognized()
+            faceDetectionHelper.setMultiFaceListener(this);
+        }
         imageAnalysis.setAnalyzer(cameraExecutor, faceDetectionHelper); // Set the analyzer
 
         try {
@@ -279,13 +641,11 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
     }
 
 
+    /**
+     * Write the attendance record. Only called when the capture state machine enters WRITING,
+     * so there is never more than one write in flight.
+     */
     private void markAttendance() {
-        // Prevent marking attendance if already marked
-        if (attendanceMarked) {
-            Toast.makeText(this, getString(R.string.attendance_already_marked), Toast.LENGTH_SHORT).show();
-            return;
-        }
-
         // Ensure required data is available
         String userId = preferenceManager.getUserId();
         String userEmail = preferenceManager.getUserEmail();
@@ -293,14 +653,10 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
         if (userId == null || userEmail == null || meetingId == null || meetingTitle == null) {
             Toast.makeText(this, getString(R.string.error_occurred), Toast.LENGTH_SHORT).show();
             Log.e(TAG, "Required data for attendance marking is null.");
+            attendanceCapture.onWriteFailed();
             return;
         }
 
-        // Show progress
-        progressBar.setVisibility(View.VISIBLE);
-        faceStatusTextView.setText(getString(R.string.marking_attendance)); // Add this string resource
-
-
         // Create attendance data
         Map<String, Object> attendanceData = new HashMap<>();
         attendanceData.put("meetingId", meetingId);
@@ -316,42 +672,135 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
         db.collection("attendance")
                 .add(attendanceData)
                 .addOnSuccessListener(documentReference -> {
-                    // Hide progress
-                    progressBar.setVisibility(View.GONE);
-                    faceStatusTextView.setVisibility(View.GONE); // Hide status text after marking
-
-                    // Mark as recorded
-                    attendanceMarked = true;
-
-                    // Update UI
-                    markAttendanceButton.setEnabled(false);
-                    markAttendanceButton.setText(getString(R.string.attendance_marked));
+                    // Mark as recorded (updates the UI)
+                    attendanceCapture.onWriteSucceeded();
 
                     // Show success message
                     Toast.makeText(MeetingActivity.this, getString(R.string.attendance_marked),
                             Toast.LENGTH_SHORT).show();
                     Log.i(TAG, "Attendance marked successfully for user: " + userId + " in meeting: " + meetingId);
+                    refreshFaceTemplate(userId);
 
-                    // Optional: Stop camera preview and face detection after marking attendance
-                    stopCameraAndFaceDetection();
+                    // Stop camera preview and face detection after marking attendance,
+                    // unless the camera is first kept to profile this device
+                    if (!startResolutionProfiling()) {
+                        stopCameraAndFaceDetection();
+                    }
 
                 })
                 .addOnFailureListener(e -> {
-                    // Hide progress
-                    progressBar.setVisibility(View.GONE);
-                    faceStatusTextView.setText("Attendance marking failed: " + e.getMessage());
-                    faceStatusTextView.setTextColor(ContextCompat.getColor(this, R.color.error));
-
+                    // Back to searching; the next stable face retries
+                    attendanceCapture.onWriteFailed();
 
                     // Show error message
                     Toast.makeText(MeetingActivity.this, "Error marking attendance: " + e.getMessage(),
                             Toast.LENGTH_SHORT).show();
                     Log.e(TAG, "Error marking attendance", e);
-                    // Re-enable button to try again if needed
-                    markAttendanceButton.setEnabled(true);
                 });
     }
 
+    /**
+     * Fold the confident match behind this attendance into the student's face template.
+     * The moving average is kept in preferences and only written back to Firestore (and the
+     * local index and template file) once it has drifted past the refresher's threshold.
+     */
+    private void refreshFaceTemplate(final String userId) {
+        final EmbeddingIndex.Match match = confidentMatch;
+        final FaceRecognizer recognizer = faceRecognizer;
+        if (match == null || match.getEmbedding() == null || recognizer == null) {
+            return;
+        }
+        float[] stored = recognizer.getIndex().getEmbedding(userId);
+        if (stored == null) {
+            return;
+        }
+
+        byte[] pending = preferenceManager.getPendingFaceTemplate(userId);
+        TemplateRefresher refresher = new TemplateRefresher(stored,
+                pending != null ? EnrolledFaceRepository.decode(pending) : null);
+        if (!refresher.offer(match.getEmbedding(), match.getScore())) {
+            return;
+        }
+
+        // Keep the average until a write-back succeeds
+        final float[] template = refresher.getTemplate();
+        preferenceManager.setPendingFaceTemplate(userId, EnrolledFaceRepository.encode(template));
+        if (!refresher.needsWriteBack()) {
+            Log.d(TAG, "Face template updated locally, " + refresher.summary());
+            return;
+        }
+
+        Log.d(TAG, "Writing back face template, " + refresher.summary());
+        new EnrolledFaceRepository().saveTemplate(userId, template, new EnrolledFaceRepository.SaveCallback() {
+            @Override
+            public void onSaved() {
+                preferenceManager.setPendingFaceTemplate(userId, null);
+                // An index loaded from the template file also appends it there, so add off the main thread
+                IoExecutor.get().execute(() -> {
+                    try {
+                        recognizer.getIndex().add(userId, template);
+                    } catch (UncheckedIOException e) {
+                        Log.w(TAG, "Failed to cache refreshed face template", e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(String error) {
+                // Retried after the next confident capture
+                Log.w(TAG, error);
+            }
+        });
+    }
+
+    /**
+     * Write a classroom attendance record for a recognized student, once per student.
+     * The name and email are copied from the student's profile like a self-marked record.
+     */
+    private void markClassroomAttendance(final String studentId) {
+        if (meetingId == null || meetingTitle == null || !classroomMarked.add(studentId)) {
+            return;
+        }
+        db.collection("users").document(studentId)
+                .get()
+                .addOnSuccessListener(student -> {
+                    Map<String, Object> attendanceData = new HashMap<>();
+                    attendanceData.put("meetingId", meetingId);
+                    attendanceData.put("userId", studentId);
+                    attendanceData.put("studentEmail", student.getString("email"));
+                    attendanceData.put("joinedAt", new Date());
+                    attendanceData.put("present", true);
+                    attendanceData.put("meetingTitle", meetingTitle);
+                    attendanceData.put("studentName", student.getString("name"));
+
+                    db.collection("attendance")
+                            .add(attendanceData)
+                            .addOnSuccessListener(documentReference -> {
+                                Log.i(TAG, "Classroom attendance marked for user: " + studentId
+                                        + " in meeting: " + meetingId);
+                                showClassroomStatus();
+                            })
+                            .addOnFailureListener(e -> {
+                                // The student is marked again when next recognized
+                                classroomMarked.remove(studentId);
+                                Log.e(TAG, "Error marking classroom attendance", e);
+                            });
+                })
+                .addOnFailureListener(e -> {
+                    classroomMarked.remove(studentId);
+                    Log.e(TAG, "Error loading student profile for classroom attendance", e);
+                });
+    }
+
+    private void showClassroomStatus() {
+        if (!classroomMode || classroomFaceCount < 0) {
+            return;
+        }
+        progressBar.setVisibility(View.GONE);
+        faceStatusTextView.setText(getString(R.string.classroom_status, classroomFaceCount, classroomMarked.size()));
+        faceStatusTextView.setTextColor(ContextCompat.getColor(this, R.color.success));
+    }
+
     private void leaveMeeting() {
         // If teacher, ask if they want to end the meeting
         if (isTeacher) {
@@ -415,7 +864,7 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
         stopCameraAndFaceDetection();
 
         // Check if student did not mark attendance
-        if (!isTeacher && !attendanceMarked) {
+        if (!isTeacher && !attendanceCapture.isDone()) {
             new AlertDialog.Builder(this)
                     .setTitle("Attendance Not Marked")
                     .setMessage("You haven't marked your attendance yet. Do you want to mark it now?")
@@ -450,45 +899,248 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
         finish(); // Finish the MeetingActivity
     }
 
+    // --- Attendance capture states ---
+    @Override
+    public void onCaptureStateChanged(int state, int hint) {
+        switch (state) {
+            case AttendanceCapture.STATE_SEARCHING:
+                showStatus(hint, R.color.warning);
+                progressBar.setVisibility(View.GONE);
+                // Keep the mark attendance button enabled so the user can try again
+                markAttendanceButton.setEnabled(true);
+                break;
+            case AttendanceCapture.STATE_STABILIZING:
+                showStatus(hint, R.color.success);
+                break;
+            case AttendanceCapture.STATE_VERIFYING:
+                showStatus(hint, R.color.warning);
+                if (faceRecognizer == null) {
+                    // Detection only: the face is confirmed, only liveness is left to check
+                    onIdentityConfirmed();
+                }
+                break;
+            case AttendanceCapture.STATE_WRITING:
+                showStatus(hint, R.color.success);
+                progressBar.setVisibility(View.VISIBLE);
+                markAttendanceButton.setEnabled(false);
+                markAttendance();
+                break;
+            case AttendanceCapture.STATE_DONE:
+                progressBar.setVisibility(View.GONE);
+                faceStatusTextView.setVisibility(View.GONE); // Hide status text after marking
+                markAttendanceButton.setEnabled(false);
+                markAttendanceButton.setText(getString(R.string.attendance_marked));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void showStatus(int text, int color) {
+        faceStatusTextView.setText(getString(text));
+        faceStatusTextView.setTextColor(ContextCompat.getColor(this, color));
+    }
+
+    /**
+     * On a device whose analysis resolution has not been profiled yet, keep the camera running
+     * after attendance is marked and profile it, rebinding at each candidate resolution in
+     * turn. Profiling is a separate step so the capture is never rebound mid-way.
+     *
+     * @return Whether profiling started (it stops the camera when it finishes)
+     */
+    private boolean startResolutionProfiling() {
+        if (preferenceManager.getAnalysisResolution() != null || cameraProviderFuture == null
+                || isFinishing()) {
+            return false;
+        }
+        float maxFps = FramePipelineConfig.forProfile(preferenceManager.getFramePipelineProfile())
+                .getSchedulerPolicy().getMaxFps();
+        resolutionProfiler = createResolutionProfiler(maxFps);
+        try {
+            bindCameraUseCases(cameraProviderFuture.get());
+        } catch (ExecutionException | InterruptedException e) {
+            Log.e(TAG, "Error rebinding camera for profiling", e);
+            resolutionProfiler.cancel();
+            resolutionProfiler = null;
+            return false;
+        }
+        Log.d(TAG, "Profiling analysis resolution.");
+        return true;
+    }
+
+    /**
+     * Profiler that rebinds the camera at each candidate resolution, persists the result and
+     * stops the camera once every candidate has been measured
+     */
+    private ResolutionProfiler createResolutionProfiler(float maxFps) {
+        return new ResolutionProfiler(maxFps, new ResolutionProfiler.Listener() {
+            @Override
+            public void onRebind(Size resolution) {
+                ResolutionProfiler profiler = resolutionProfiler;
+                runOnUiThread(() -> {
+                    // Ignore if the session stopped in the meantime
+                    if (profiler != resolutionProfiler || profiler.isDone() || cameraProviderFuture == null) {
+                        return;
+                    }
+                    try {
+                        bindCameraUseCases(cameraProviderFuture.get());
+                    } catch (ExecutionException | InterruptedException e) {
+                        Log.e(TAG, "Error rebinding camera for profiling", e);
+                        stopCameraAndFaceDetection();
+                    }
+                });
+            }
+
+            @Override
+            public void onFinished(Size resolution) {
+                if (resolution != null) {
+                    // Used from the next camera session on
+                    preferenceManager.setAnalysisResolution(resolution);
+                    Log.d(TAG, "Analysis resolution profiled: " + resolution);
+                }
+                ResolutionProfiler profiler = resolutionProfiler;
+                runOnUiThread(() -> {
+                    if (profiler == resolutionProfiler && !isDestroyed()) {
+                        stopCameraAndFaceDetection();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Feed one analyzed frame to the resolution profiler, if profiling
+     */
+    private void profileFrame(boolean faceFound) {
+        ResolutionProfiler profiler = resolutionProfiler;
+        if (profiler != null) {
+            profiler.onFrameAnalyzed(faceFound);
+        }
+    }
+
     // --- FaceDetectionHelper Callbacks ---
+    // These run on the analysis thread for every frame; AttendanceCapture coalesces them
+    // and only changes of state reach the UI.
     @Override
     public void onFaceDetected(Face face, android.graphics.Rect boundingBox, float confidence) {
-        // This callback is now triggered by the actual FaceDetectionHelper
-        Log.d(TAG, "Face detected! Confidence: " + confidence);
-        runOnUiThread(() -> {
-            faceStatusTextView.setText(getString(R.string.face_detected));
-            faceStatusTextView.setTextColor(ContextCompat.getColor(this, R.color.success));
-            progressBar.setVisibility(View.GONE);
+        profileFrame(true);
+        // With recognition, the recognition stage confirms who this is
+        attendanceCapture.onFace(faceRecognizer != null || needsLiveness());
+    }
 
-            // After face detection success, mark attendance
-            markAttendance();
-        });
+    @Override
+    public void onFacesDetected(List<Face> faces) {
+        // Only touch the UI when the number of faces in view changes
+        if (faces.size() != classroomFaceCount) {
+            classroomFaceCount = faces.size();
+            runOnUiThread(this::showClassroomStatus);
+        }
+    }
+
+    @Override
+    public void onAttendanceCandidate(int trackingId, Face face) {
+        // The recognition stage follows for the same face and reports who it is
+        Log.d(TAG, "Classroom face " + trackingId + " is stable.");
+    }
+
+    @Override
+    public void onFaceRecognized(Face face, EmbeddingIndex.Match match) {
+        if (classroomMode) {
+            markClassroomAttendance(match.getId());
+            return;
+        }
+        if (!match.getId().equals(preferenceManager.getUserId())) {
+            attendanceCapture.onNoFace(R.string.face_not_recognized);
+            return;
+        }
+        if (match.getScore() >= TemplateRefresher.DEFAULT_MIN_SCORE) {
+            confidentMatch = match;
+        }
+        // Stabilization is counted by onFaceDetected(); act once the face is stable
+        if (attendanceCapture.getState() == AttendanceCapture.STATE_VERIFYING) {
+            // Identity confirmed
+            onIdentityConfirmed();
+        }
+    }
+
+    /**
+     * The face in front of the camera belongs to this student: mark attendance, after a
+     * liveness challenge if required. Safe to call from any thread.
+     */
+    private void onIdentityConfirmed() {
+        if (!needsLiveness()) {
+            attendanceCapture.onVerified();
+            return;
+        }
+        FaceDetectionHelper helper = faceDetectionHelper;
+        if (helper != null && helper.startLivenessChallenge(new LivenessChallenge(), this)) {
+            attendanceCapture.onVerificationHint(R.string.liveness_challenge);
+        }
+    }
+
+    /**
+     * Whether the student still has to blink and turn their head before attendance is marked
+     */
+    private boolean needsLiveness() {
+        return livenessRequired && !livenessPassed;
+    }
+
+    @Override
+    public void onLivenessPassed(Face face) {
+        Log.d(TAG, "Liveness challenge passed.");
+        livenessPassed = true;
+        // The face was already identified (or detected) before the challenge started
+        attendanceCapture.onVerified();
+    }
+
+    @Override
+    public void onLivenessFailed() {
+        Log.d(TAG, "Liveness challenge failed.");
+        // The next stable face starts a new challenge
+        attendanceCapture.onNoFace(R.string.liveness_failed);
+    }
+
+    @Override
+    public void onFaceNotRecognized(Face face) {
+        if (classroomMode) {
+            // Not an enrolled student (or not recognizable from here)
+            return;
+        }
+        attendanceCapture.onNoFace(R.string.face_not_recognized);
+    }
+
+    @Override
+    public void onLowQualityFace(Face face, int reason, float score) {
+        profileFrame(true);
+        final int hint;
+        switch (reason) {
+            case FaceQualityGate.REASON_POSE:
+                hint = R.string.face_quality_pose;
+                break;
+            case FaceQualityGate.REASON_SIZE:
+                hint = R.string.face_quality_size;
+                break;
+            case FaceQualityGate.REASON_LIGHTING:
+                hint = R.string.face_quality_lighting;
+                break;
+            default:
+                hint = R.string.face_quality_blur;
+                break;
+        }
+        attendanceCapture.onNoFace(hint);
     }
 
     @Override
     public void onFaceDetectionFailed(Exception e) {
-        // This callback is now triggered by the actual FaceDetectionHelper
         Log.e(TAG, "Face detection failed", e);
-        runOnUiThread(() -> {
-            faceStatusTextView.setText("Face detection failed: " + e.getMessage());
-            faceStatusTextView.setTextColor(ContextCompat.getColor(this, R.color.error));
-            progressBar.setVisibility(View.GONE);
-            // Re-enable the mark attendance button if needed
-            markAttendanceButton.setEnabled(true);
-        });
+        profileFrame(false);
+        attendanceCapture.onNoFace(R.string.face_detection_failed);
     }
 
     @Override
     public void onNoFaceDetected() {
-        // This callback is now triggered by the actual FaceDetectionHelper
-        Log.d(TAG, "No face detected.");
-        runOnUiThread(() -> {
-            faceStatusTextView.setText(getString(R.string.face_not_detected));
-            faceStatusTextView.setTextColor(ContextCompat.getColor(this, R.color.warning));
-            progressBar.setVisibility(View.GONE); // Hide progress when no face is detected
-            // Keep the mark attendance button enabled so the user can try again
-            markAttendanceButton.setEnabled(true);
-        });
+        profileFrame(false);
+        attendanceCapture.onNoFace(R.string.face_not_detected);
     }
 
     // --- Lifecycle Methods ---
@@ -510,14 +1162,24 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Shutdown the camera executor
-        if (cameraExecutor != null) {
-            cameraExecutor.shutdown();
-        }
+        // The analysis executor is shared across activities and is not shut down here
         // Release face detection resources
+        if (resolutionProfiler != null) {
+            resolutionProfiler.cancel();
+        }
         if (faceDetectionHelper != null) {
             faceDetectionHelper.shutdown();
         }
+        if (faceRecognizer != null) {
+            faceRecognizer.close();
+        }
+        if (templateFile != null) {
+            try {
+                templateFile.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing face template file", e);
+            }
+        }
         Log.d(TAG, "MeetingActivity destroyed.");
     }
 
@@ -529,7 +1191,8 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
             cameraProvider = cameraProviderFuture.get();
             // Unbind all use cases from the lifecycle
             cameraProvider.unbindAll();
-            Log.d(TAG, "Camera use cases unbound.");
+            Log.d(TAG, "Camera use cases unbound. Analysis executor: " + cameraExecutor.summary()
+                    + ", capture: " + attendanceCapture.summary());
         } catch (ExecutionException | InterruptedException e) {
             Log.e(TAG, "Error unbinding camera use cases", e);
         } catch (NullPointerException e) {
@@ -537,6 +1200,15 @@ public class MeetingActivity extends AppCompatActivity implements FaceDetectionH
             Log.w(TAG, "cameraProviderFuture is null, cannot unbind.", e);
         }
 
+        // Stop capturing (a write in flight still completes)
+        attendanceCapture.stop();
+        classroomMode = false;
+        // An unfinished profiling run starts over after the next attendance
+        if (resolutionProfiler != null) {
+            resolutionProfiler.cancel();
+            resolutionProfiler = null;
+        }
+
         // Reset UI state related to camera preview and status
         previewView.setVisibility(View.GONE);
         progressBar.setVisibility(View.GONE);
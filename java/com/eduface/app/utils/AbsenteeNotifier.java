@@ -15,11 +15,9 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * Utility class for handling notifications to absent students
@@ -158,8 +156,8 @@ public class AbsenteeNotifier {
         int notifiedCount = 0;
         
         // Format date
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MMMM dd, yyyy 'at' hh:mm a", Locale.US);
-        String meetingDate = dateFormat.format(meeting.getCreatedAt());
+        String meetingDate = DateFormatCache.forPattern(DateFormatCache.PATTERN_NOTIFICATION_TIME)
+                .format(meeting.getCreatedAt());
         
         for (User student : absentStudents) {
             // Create message for student
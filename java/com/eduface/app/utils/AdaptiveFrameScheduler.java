@@ -0,0 +1,158 @@
+package com.eduface.app.utils;
+
+import android.graphics.Rect;
+
+/**
+ * Decides which camera frames are sent to the face detector.
+ * While the same tracked face stays still the analysis rate is lowered step by step
+ * towards the policy's minimum FPS; any scene change (new tracking ID, movement,
+ * face lost) jumps straight back to the maximum FPS.
+ */
+public class AdaptiveFrameScheduler {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // Interval growth per stable frame once the face has settled
+    private static final float SLOWDOWN_FACTOR = 1.5f;
+
+    /**
+     * Scheduling policy: FPS bounds and what counts as "the same face, not moving"
+     */
+    public static class Policy {
+        public static final Policy DEFAULT = new Policy(2f, 15f, 0.1f, 1000);
+
+        private final float minFps;
+        private final float maxFps;
+        private final float motionThreshold;
+        private final long stableMillisBeforeSlowdown;
+
+        /**
+         * @param minFps Lowest analysis rate while a face is stable
+         * @param maxFps Analysis rate while searching or after a scene change
+         * @param motionThreshold Allowed movement of the box centre or size, as a fraction of the box width
+         * @param stableMillisBeforeSlowdown How long a face must stay stable before the rate drops
+         */
+        public Policy(float minFps, float maxFps, float motionThreshold, long stableMillisBeforeSlowdown) {
+            this.minFps = Math.max(0.1f, Math.min(minFps, maxFps));
+            this.maxFps = Math.max(this.minFps, maxFps);
+            this.motionThreshold = motionThreshold;
+            this.stableMillisBeforeSlowdown = stableMillisBeforeSlowdown;
+        }
+
+        public float getMinFps() {
+            return minFps;
+        }
+
+        public float getMaxFps() {
+            return maxFps;
+        }
+
+        public float getMotionThreshold() {
+            return motionThreshold;
+        }
+
+        public long getStableMillisBeforeSlowdown() {
+            return stableMillisBeforeSlowdown;
+        }
+    }
+
+    private final Policy policy;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+
+    private long intervalNanos;
+    private long lastAnalyzedNanos = Long.MIN_VALUE;
+
+    // Last observed face
+    private boolean hasFace;
+    private int lastTrackingId;
+    private int lastCenterX, lastCenterY, lastWidth;
+    private long stableSinceNanos;
+    private long lastObservationNanos;
+
+    public AdaptiveFrameScheduler(Policy policy) {
+        this.policy = policy;
+        this.minIntervalNanos = (long) (NANOS_PER_SECOND / policy.getMaxFps());
+        this.maxIntervalNanos = (long) (NANOS_PER_SECOND / policy.getMinFps());
+        this.intervalNanos = minIntervalNanos;
+    }
+
+    /**
+     * Check whether the frame with this timestamp should be analyzed.
+     * Call with the camera frame timestamp; a true result counts as the frame being analyzed.
+     */
+    public synchronized boolean shouldAnalyze(long frameTimestampNanos) {
+        if (lastAnalyzedNanos != Long.MIN_VALUE
+                && frameTimestampNanos - lastAnalyzedNanos < intervalNanos) {
+            return false;
+        }
+        lastAnalyzedNanos = frameTimestampNanos;
+        lastObservationNanos = frameTimestampNanos;
+        return true;
+    }
+
+    /**
+     * Report the primary face found in the last analyzed frame
+     */
+    public synchronized void onFaceObserved(Integer trackingId, Rect boundingBox) {
+        int centerX = boundingBox.centerX();
+        int centerY = boundingBox.centerY();
+        int width = Math.max(1, boundingBox.width());
+
+        boolean sameFace = hasFace && trackingId != null && trackingId == lastTrackingId;
+        boolean still = sameFace
+                && Math.abs(centerX - lastCenterX) <= policy.getMotionThreshold() * width
+                && Math.abs(centerY - lastCenterY) <= policy.getMotionThreshold() * width
+                && Math.abs(width - lastWidth) <= policy.getMotionThreshold() * width;
+
+        if (!still) {
+            // Scene changed: go back to the fastest rate
+            intervalNanos = minIntervalNanos;
+            stableSinceNanos = lastObservationNanos;
+        } else if (lastObservationNanos - stableSinceNanos
+                >= policy.getStableMillisBeforeSlowdown() * 1_000_000L) {
+            intervalNanos = Math.min(maxIntervalNanos, (long) (intervalNanos * SLOWDOWN_FACTOR));
+        }
+
+        hasFace = trackingId != null;
+        lastTrackingId = trackingId != null ? trackingId : 0;
+        lastCenterX = centerX;
+        lastCenterY = centerY;
+        lastWidth = width;
+    }
+
+    /**
+     * Report that the last analyzed frame had no face
+     */
+    public synchronized void onNoFace() {
+        onSceneChanged();
+    }
+
+    /**
+     * Report a change the scheduler cannot see itself (e.g. new faces still settling)
+     */
+    public synchronized void onSceneChanged() {
+        hasFace = false;
+        intervalNanos = minIntervalNanos;
+    }
+
+    /**
+     * Force the next frame to be analyzed at the maximum rate
+     */
+    public synchronized void reset() {
+        hasFace = false;
+        intervalNanos = minIntervalNanos;
+        lastAnalyzedNanos = Long.MIN_VALUE;
+    }
+
+    /**
+     * Current target analysis rate
+     */
+    public synchronized float getCurrentFps() {
+        return NANOS_PER_SECOND / (float) intervalNanos;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,220 @@
+package com.eduface.app.utils;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide single thread for camera frame analysis, shared by every screen that
+ * runs the face pipeline instead of a thread per activity.
+ *
+ * Work passed to execute() always runs (CameraX analyzers and detector callbacks must,
+ * or frames are never closed); it is posted to the thread's Looper, whose messages are
+ * pooled, so dispatching a frame callback allocates nothing. That queue needs no bound of
+ * its own: CameraX backpressure and the pipeline's in-flight limit keep it a few tasks deep.
+ * Work passed to offer() is optional: it waits in a small ring where the oldest task is
+ * dropped to make room, and is dropped if it waited longer than STALE_MILLIS.
+ * Queue wait and run times are collected for every task.
+ */
+public final class AnalysisExecutor implements Executor {
+
+    private static final String THREAD_NAME = "EduFace-Analysis";
+
+    // Just below display priority: results drive on-screen feedback, but the UI thread comes first
+    private static final int THREAD_PRIORITY =
+            Process.THREAD_PRIORITY_DISPLAY + Process.THREAD_PRIORITY_LESS_FAVORABLE;
+
+    private static final long STALE_MILLIS = 500;
+    private static final int MAX_PENDING_OPTIONAL = 2;
+
+    private static AnalysisExecutor instance;
+
+    private final Handler handler;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    // Optional work, oldest first (guarded by this)
+    private final Runnable[] optionalTasks = new Runnable[MAX_PENDING_OPTIONAL];
+    private final long[] optionalEnqueuedMillis = new long[MAX_PENDING_OPTIONAL];
+    private int optionalHead;
+    private int optionalCount;
+    private boolean drainPosted;
+    private final Runnable drainTask = this::drainOptional;
+
+    // Metrics (guarded by this)
+    private long tasksRun;
+    private long tasksDropped;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+    private long totalRunNanos;
+    private long maxRunNanos;
+
+    /**
+     * Shared instance (the thread is created on first use and lives as long as the process)
+     */
+    public static synchronized AnalysisExecutor getInstance() {
+        if (instance == null) {
+            instance = new AnalysisExecutor();
+        }
+        return instance;
+    }
+
+    private AnalysisExecutor() {
+        HandlerThread thread = new HandlerThread(THREAD_NAME, THREAD_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+        handler = new TimingHandler(thread);
+    }
+
+    /**
+     * Run a task that must not be dropped
+     */
+    @Override
+    public void execute(@NonNull Runnable command) {
+        queued.incrementAndGet();
+        handler.post(command);
+    }
+
+    /**
+     * Run a task that may be skipped when the thread is behind. If MAX_PENDING_OPTIONAL
+     * optional tasks are already waiting, the oldest of them is dropped for this one.
+     */
+    public void offer(@NonNull Runnable command) {
+        boolean post;
+        synchronized (this) {
+            if (optionalCount == MAX_PENDING_OPTIONAL) {
+                optionalTasks[optionalHead] = null;
+                optionalHead = (optionalHead + 1) % MAX_PENDING_OPTIONAL;
+                optionalCount--;
+                tasksDropped++;
+            }
+            int tail = (optionalHead + optionalCount) % MAX_PENDING_OPTIONAL;
+            optionalTasks[tail] = command;
+            optionalEnqueuedMillis[tail] = SystemClock.uptimeMillis();
+            optionalCount++;
+            post = !drainPosted;
+            drainPosted = true;
+        }
+        if (post) {
+            execute(drainTask);
+        }
+    }
+
+    /**
+     * Number of tasks waiting to run
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public synchronized long getTasksRun() {
+        return tasksRun;
+    }
+
+    public synchronized long getTasksDropped() {
+        return tasksDropped;
+    }
+
+    /**
+     * Average time a task waited in the queue, in milliseconds
+     */
+    public synchronized double getAverageWaitMillis() {
+        return tasksRun == 0 ? 0 : totalWaitMillis / (double) tasksRun;
+    }
+
+    /**
+     * Average time a task took to run, in milliseconds
+     */
+    public synchronized double getAverageRunMillis() {
+        return tasksRun == 0 ? 0 : totalRunNanos / (double) tasksRun / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary suitable for logcat
+     */
+    public synchronized String summary() {
+        return String.format(Locale.US,
+                "tasks=%d, dropped=%d, queued=%d, wait avg=%.1fms max=%dms, run avg=%.1fms max=%.1fms",
+                tasksRun, tasksDropped, getQueueDepth(),
+                getAverageWaitMillis(), maxWaitMillis,
+                getAverageRunMillis(), maxRunNanos / 1_000_000.0);
+    }
+
+    /**
+     * Run the optional tasks waiting in the ring (on the analysis thread)
+     */
+    private void drainOptional() {
+        while (true) {
+            Runnable command;
+            long waitMillis;
+            synchronized (this) {
+                if (optionalCount == 0) {
+                    drainPosted = false;
+                    return;
+                }
+                command = optionalTasks[optionalHead];
+                waitMillis = SystemClock.uptimeMillis() - optionalEnqueuedMillis[optionalHead];
+                optionalTasks[optionalHead] = null;
+                optionalHead = (optionalHead + 1) % MAX_PENDING_OPTIONAL;
+                optionalCount--;
+                if (waitMillis > STALE_MILLIS) {
+                    tasksDropped++;
+                    continue;
+                }
+            }
+            long start = SystemClock.elapsedRealtimeNanos();
+            try {
+                command.run();
+            } finally {
+                recordRun(waitMillis, SystemClock.elapsedRealtimeNanos() - start);
+            }
+        }
+    }
+
+    private synchronized void recordRun(long waitMillis, long runNanos) {
+        tasksRun++;
+        totalWaitMillis += waitMillis;
+        totalRunNanos += runNanos;
+        if (waitMillis > maxWaitMillis) {
+            maxWaitMillis = waitMillis;
+        }
+        if (runNanos > maxRunNanos) {
+            maxRunNanos = runNanos;
+        }
+    }
+
+    /**
+     * Times each posted task from its message, so no wrapper is allocated per task
+     */
+    private final class TimingHandler extends Handler {
+
+        TimingHandler(HandlerThread thread) {
+            super(thread.getLooper());
+        }
+
+        @Override
+        public void dispatchMessage(@NonNull Message msg) {
+            queued.decrementAndGet();
+            if (msg.getCallback() == drainTask) {
+                // Each optional task is timed from its own enqueue time
+                super.dispatchMessage(msg);
+                return;
+            }
+            // Posted messages are stamped with the uptime they were posted at
+            long waitMillis = SystemClock.uptimeMillis() - msg.getWhen();
+            long start = SystemClock.elapsedRealtimeNanos();
+            try {
+                super.dispatchMessage(msg);
+            } finally {
+                recordRun(waitMillis, SystemClock.elapsedRealtimeNanos() - start);
+            }
+        }
+    }
+}
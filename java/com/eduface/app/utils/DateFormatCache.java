@@ -0,0 +1,114 @@
+package com.eduface.app.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, thread-safe date formatting for list binding and messages.
+ * There is one instance per pattern, built on an immutable java.time formatter (no
+ * SimpleDateFormat per call). Formatted strings are kept in a small LRU keyed by the minute
+ * of the timestamp, so binding rows that share a minute (a class joining together, or
+ * scrolling back over the same rows) does no formatting at all.
+ * Patterns must not show seconds, since every time within a minute maps to one string.
+ * Times are shown in the default zone; the cache is dropped if that zone changes.
+ */
+public final class DateFormatCache {
+
+    // Attendance list join time
+    public static final String PATTERN_ATTENDANCE_TIME = "dd MMM yyyy, hh:mm a";
+    // Meeting list scheduled/created time
+    public static final String PATTERN_MEETING_TIME = "MMM dd, yyyy 'at' hh:mm a";
+    // Meeting time in absence notifications
+    public static final String PATTERN_NOTIFICATION_TIME = "MMMM dd, yyyy 'at' hh:mm a";
+
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private static final Map<String, DateFormatCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private final DateTimeFormatter formatter;
+    private final LinkedHashMap<Long, String> cache;
+    private ZoneId zone;
+
+    // Metrics (guarded by this)
+    private long hits;
+    private long misses;
+
+    /**
+     * Shared cache for a pattern (US locale, as used throughout the app)
+     */
+    public static DateFormatCache forPattern(String pattern) {
+        return INSTANCES.computeIfAbsent(pattern, p -> new DateFormatCache(p, DEFAULT_CAPACITY));
+    }
+
+    DateFormatCache(String pattern, final int capacity) {
+        if (showsSeconds(pattern)) {
+            throw new IllegalArgumentException("Pattern shows seconds: " + pattern);
+        }
+        this.formatter = DateTimeFormatter.ofPattern(pattern, Locale.US);
+        // Access-ordered, so the eldest entry is the least recently used
+        this.cache = new LinkedHashMap<Long, String>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Whether a pattern has a second or fraction field outside quoted text
+     */
+    private static boolean showsSeconds(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && (c == 's' || c == 'S' || c == 'n' || c == 'N' || c == 'A')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Format an epoch time in the default zone
+     */
+    public String format(long epochMillis) {
+        long minute = Math.floorDiv(epochMillis, MILLIS_PER_MINUTE);
+        ZoneId currentZone = ZoneId.systemDefault();
+        synchronized (this) {
+            if (!currentZone.equals(zone)) {
+                cache.clear();
+                zone = currentZone;
+            }
+            String formatted = cache.get(minute);
+            if (formatted != null) {
+                hits++;
+                return formatted;
+            }
+            misses++;
+            formatted = formatter.format(Instant.ofEpochMilli(minute * MILLIS_PER_MINUTE).atZone(zone));
+            cache.put(minute, formatted);
+            return formatted;
+        }
+    }
+
+    public String format(Date date) {
+        return format(date.getTime());
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+}
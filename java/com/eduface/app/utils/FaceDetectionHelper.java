@@ -2,24 +2,35 @@ package com.eduface.app.utils;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Point;
 import android.graphics.Rect;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.OptIn;
 import androidx.camera.core.ExperimentalGetImage;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
+import androidx.core.content.ContextCompat;
+
+import com.eduface.app.recognition.EmbeddingIndex;
+import com.eduface.app.recognition.FaceRecognizer;
 
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
 import com.google.mlkit.vision.face.FaceDetector;
 import com.google.mlkit.vision.face.FaceDetectorOptions;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Helper class for face detection using ML Kit
@@ -28,8 +39,31 @@ public class FaceDetectionHelper implements ImageAnalysis.Analyzer {
 
     private static final String TAG = "FaceDetectionHelper";
     
-    private final FaceDetector faceDetector;
+    private final FaceDetectorCascade cascade;
     private final FaceDetectionListener listener;
+    private final FramePipelineConfig config;
+    private final FrameStats frameStats = new FrameStats();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AdaptiveFrameScheduler scheduler;
+    private final MultiFaceTracker multiFaceTracker = new MultiFaceTracker();
+    private volatile MultiFaceListener multiFaceListener;
+    private volatile FaceRecognizer faceRecognizer;
+    private volatile RecognitionListener recognitionListener;
+    private volatile EnrollmentListener enrollmentListener;
+    private volatile FaceQualityGate qualityGate;
+    private volatile FrameTraceRecorder traceRecorder;
+
+    // Liveness stage: a second detector with classification, used only during a challenge
+    private final FaceDetectorOptions livenessOptions;
+    private FaceDetector livenessDetector;
+    private final AtomicReference<LivenessChallenge> livenessChallenge = new AtomicReference<>();
+    private volatile LivenessListener livenessListener;
+    private Executor callbackExecutor;
+    private final FrameAllocationCounter allocationCounter;
+
+    // Per-frame slots, allocated on the first camera frame (analyzer thread only)
+    private FrameSlot[] frameRing;
+    private int nextSlot;
     
     /**
      * Interface for face detection callbacks
@@ -38,25 +72,110 @@ public class FaceDetectionHelper implements ImageAnalysis.Analyzer {
         void onFaceDetected(Face face, Rect boundingBox, float confidence);
         void onFaceDetectionFailed(Exception e);
         void onNoFaceDetected();
+
+        /**
+         * A face was found but failed the quality gate (see setQualityGate)
+         *
+         * @param reason One of the FaceQualityGate.REASON_ constants
+         */
+        default void onLowQualityFace(Face face, int reason, float score) {
+        }
+    }
+
+    /**
+     * Interface for multi-face (classroom) mode callbacks
+     */
+    public interface MultiFaceListener {
+        /**
+         * All faces found in a frame
+         */
+        void onFacesDetected(List<Face> faces);
+
+        /**
+         * A tracked face has been stable long enough to be considered for attendance.
+         * Called once per tracking ID.
+         */
+        void onAttendanceCandidate(int trackingId, Face face);
+    }
+
+    /**
+     * Interface for recognition stage callbacks (camera frames only)
+     */
+    public interface RecognitionListener {
+        /**
+         * The face matched an enrolled student
+         */
+        void onFaceRecognized(Face face, EmbeddingIndex.Match match);
+
+        /**
+         * The face did not match any enrolled student
+         */
+        void onFaceNotRecognized(Face face);
+    }
+    
+    /**
+     * Interface for enrollment stage callbacks (camera frames only)
+     */
+    public interface EnrollmentListener {
+        /**
+         * The embedding of a detected face that passed the quality gate
+         */
+        void onFaceEmbedded(Face face, float[] embedding);
+    }
+
+    /**
+     * Interface for liveness challenge callbacks (see startLivenessChallenge)
+     */
+    public interface LivenessListener {
+        /**
+         * The tracked face blinked and/or turned as required
+         */
+        void onLivenessPassed(Face face);
+
+        /**
+         * The challenge window elapsed without the required signals
+         */
+        void onLivenessFailed();
     }
     
     /**
      * Constructor with FaceDetectionListener
      */
     public FaceDetectionHelper(Context context, FaceDetectionListener listener) {
+        this(context, listener, new FramePipelineConfig.Builder().build());
+    }
+
+    /**
+     * Constructor with FaceDetectionListener and frame pipeline configuration
+     */
+    public FaceDetectionHelper(Context context, FaceDetectionListener listener, FramePipelineConfig config) {
+        // ML Kit face detectors (fast tracker plus accurate confirmer), shared across screens
+        this(context, listener, config, MlKitFaceDetectorEngine.fast(config),
+                config.isCascadeEnabled() ? MlKitFaceDetectorEngine.accurate(config) : null);
+    }
+
+    /**
+     * Constructor with explicit detector engines (e.g. a scripted engine for offline replay)
+     *
+     * @param accurateEngine Confirmation tier, or null to skip confirmation
+     */
+    public FaceDetectionHelper(Context context, FaceDetectionListener listener, FramePipelineConfig config,
+                               FaceDetectorEngine fastEngine, @Nullable FaceDetectorEngine accurateEngine) {
         this.listener = listener;
-        
-        // Configure face detector options
-        FaceDetectorOptions options = new FaceDetectorOptions.Builder()
+        this.config = config;
+        this.scheduler = new AdaptiveFrameScheduler(config.getSchedulerPolicy());
+        this.callbackExecutor = ContextCompat.getMainExecutor(context);
+        this.allocationCounter = new FrameAllocationCounter(context);
+        this.cascade = new FaceDetectorCascade(fastEngine, accurateEngine, frameStats);
+
+        // Same settings plus eye open probabilities, for liveness challenges only
+        livenessOptions = new FaceDetectorOptions.Builder()
                 .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
                 .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
-                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
-                .setMinFaceSize(0.15f) // Minimum face size 15% of the image
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
+                .setMinFaceSize(config.getMinFaceSize())
                 .enableTracking()
                 .build();
-        
-        // Create the face detector
-        faceDetector = FaceDetection.getClient(options);
     }
     
     /**
@@ -64,7 +183,12 @@ public class FaceDetectionHelper implements ImageAnalysis.Analyzer {
      */
     public void processBitmap(Bitmap bitmap) {
         InputImage image = InputImage.fromBitmap(bitmap, 0);
-        detectFaces(image);
+        // Stills are not on the per-frame path, so they get their own (unpooled) slot
+        FrameSlot slot = new FrameSlot();
+        slot.inputImage = image;
+        slot.imageWidth = bitmap.getWidth();
+        slot.detectStart = SystemClock.elapsedRealtimeNanos();
+        detectFaces(image, slot);
     }
     
     /**
@@ -73,99 +197,665 @@ public class FaceDetectionHelper implements ImageAnalysis.Analyzer {
     @OptIn(markerClass = ExperimentalGetImage.class)
     @Override
     public void analyze(@NonNull ImageProxy imageProxy) {
+        int allocationMark = allocationCounter.mark();
+        long analyzeStart = SystemClock.elapsedRealtimeNanos();
+        frameStats.record(FrameStats.STAGE_ACQUIRE, acquireLatency(imageProxy, analyzeStart));
+
+        // Skip frames while a stable face is being tracked
+        long frameTimestamp = imageProxy.getImageInfo().getTimestamp();
+        FrameTraceRecorder trace = traceRecorder;
+        if (!scheduler.shouldAnalyze(frameTimestamp)) {
+            frameStats.recordSkipped();
+            if (trace != null) {
+                trace.record(frameTimestamp, FrameTraceRecorder.OUTCOME_SKIPPED, 0, 0, null, null);
+            }
+            imageProxy.close();
+            return;
+        }
+
+        // Bound the number of frames at the detector; drop the rest instead of queueing them
+        if (inFlight.incrementAndGet() > config.getMaxInFlight()) {
+            inFlight.decrementAndGet();
+            frameStats.recordDropped();
+            if (trace != null) {
+                trace.record(frameTimestamp, FrameTraceRecorder.OUTCOME_DROPPED, 0, 0, null, null);
+            }
+            imageProxy.close();
+            return;
+        }
+
+        boolean steadyState = frameRing != null;
+        FrameSlot slot = acquireSlot();
+        slot.imageProxy = imageProxy;
+        slot.frameTimestamp = frameTimestamp;
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        slot.imageWidth = rotation == 90 || rotation == 270 ? imageProxy.getHeight() : imageProxy.getWidth();
+        slot.steadyState = steadyState;
+        slot.liveness = livenessChallenge.get();
+        slot.allocations = allocationCounter.since(allocationMark);
+
         // Convert the ImageProxy to InputImage for ML Kit
-        InputImage inputImage = InputImage.fromMediaImage(
-                imageProxy.getImage(),
-                imageProxy.getImageInfo().getRotationDegrees());
+        InputImage inputImage;
+        if (config.getRoiFraction() < 1f || imageProxy.getImage() == null) {
+            // Detect on the centre of the frame only, copied into the slot's buffer. Frames
+            // without a media Image (replayed recordings) are copied whole the same way.
+            float fraction = Math.min(config.getRoiFraction(), 1f);
+            int roiBytes = RoiFrameCropper.bufferSize(imageProxy.getWidth(), imageProxy.getHeight(), fraction);
+            if (slot.roiBuffer == null || slot.roiBuffer.length != roiBytes) {
+                slot.roiBuffer = new byte[roiBytes];
+            }
+            inputImage = RoiFrameCropper.crop(imageProxy, fraction, slot.roiBuffer, slot.roiOffset);
+        } else {
+            slot.roiOffset.set(0, 0);
+            inputImage = InputImage.fromMediaImage(
+                    imageProxy.getImage(),
+                    imageProxy.getImageInfo().getRotationDegrees());
+        }
+        long convertEnd = SystemClock.elapsedRealtimeNanos();
+        frameStats.record(FrameStats.STAGE_CONVERT, convertEnd - analyzeStart);
         
         // Process the image for face detection
-        detectFaces(inputImage, imageProxy);
+        slot.inputImage = inputImage;
+        slot.detectStart = convertEnd;
+        detectFaces(inputImage, slot);
     }
-    
+
     /**
-     * Detect faces in the input image
-     */
-    private void detectFaces(InputImage image) {
-        faceDetector.process(image)
-                .addOnSuccessListener(new OnSuccessListener<List<Face>>() {
-                    @Override
-                    public void onSuccess(List<Face> faces) {
-                        if (faces.isEmpty()) {
-                            // No faces detected
-                            listener.onNoFaceDetected();
-                            return;
-                        }
-                        
-                        // Get the first face (assuming one person)
-                        Face face = faces.get(0);
-
-                        // Calculate confidence based on tracking ID existence
-                        // ML Kit 16.1.5 doesn't have getTrackingConfidence(), so we use a fixed confidence
-                        float confidence = face.getTrackingId() != null ? 0.9f : 0.8f;
-                        
-                        // Get bounding box
-                        Rect boundingBox = face.getBoundingBox();
-                        
-                        // Notify listener
-                        listener.onFaceDetected(face, boundingBox, confidence);
-                    }
-                })
-                .addOnFailureListener(new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
-                        Log.e(TAG, "Face detection failed: " + e.getMessage());
-                        listener.onFaceDetectionFailed(e);
-                    }
-                });
+     * Per-frame state and detector callbacks. Camera frames use slots from a ring allocated
+     * on the first frame (one per in-flight frame), so steady-state frames create no
+     * listener or result holder objects.
+     */
+    private final class FrameSlot implements OnSuccessListener<List<Face>>, OnFailureListener {
+        @Nullable ImageProxy imageProxy;
+        @Nullable InputImage inputImage;
+        long frameTimestamp;
+        long detectStart;
+        long detectNanos;
+        long confirmStart;
+        int imageWidth;
+        boolean steadyState;
+        @Nullable LivenessChallenge liveness;
+        boolean qualityPassed;
+        int qualityReason;
+        float qualityScore;
+        int allocations;
+        volatile boolean inUse;
+
+        // Detection results carried across the accurate confirmation pass
+        @Nullable List<Face> faces;
+        @Nullable Face primary;
+        @Nullable MultiFaceListener multiListener;
+        boolean needsConfirmation;
+
+        // Working buffer for the region of interest (sized on the first frame) and its
+        // position in the frame; face boxes are translated into frameBox
+        @Nullable byte[] roiBuffer;
+        final Point roiOffset = new Point();
+        final Rect frameBox = new Rect();
+
+        // Reused result holders for multi-face candidates and their confirmed faces
+        final List<Face> candidates = new ArrayList<>();
+        final List<Face> confirmed = new ArrayList<>();
+        final ConfirmListener confirmListener = new ConfirmListener(this);
+
+        @Override
+        public void onSuccess(List<Face> faces) {
+            onDetectionSuccess(this, faces);
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            Log.e(TAG, "Face detection failed: " + e.getMessage());
+            detectNanos = SystemClock.elapsedRealtimeNanos() - detectStart;
+            trace(this, FrameTraceRecorder.OUTCOME_FAILED, 0, null);
+            listener.onFaceDetectionFailed(e);
+            releaseFrame(this);
+        }
+    }
+
+    /**
+     * Callbacks for the accurate tier of the cascade, one per slot
+     */
+    private final class ConfirmListener implements OnSuccessListener<List<Face>>, OnFailureListener {
+        private final FrameSlot slot;
+
+        ConfirmListener(FrameSlot slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public void onSuccess(List<Face> accurateFaces) {
+            long callbackStart = SystemClock.elapsedRealtimeNanos();
+            cascade.recordAccurate(callbackStart - slot.confirmStart);
+            applyConfirmation(slot, accurateFaces);
+            dispatch(slot, callbackStart);
+        }
+
+        @Override
+        public void onFailure(@NonNull Exception e) {
+            // Fall back to the fast tier's result for this frame
+            Log.w(TAG, "Face confirmation failed: " + e.getMessage());
+            dispatch(slot, SystemClock.elapsedRealtimeNanos());
+        }
+    }
+
+    /**
+     * Take a free slot from the ring, allocating the ring on the first frame.
+     * Called on the analyzer thread only; the in-flight bound guarantees a free slot.
+     */
+    private FrameSlot acquireSlot() {
+        if (frameRing == null) {
+            frameRing = new FrameSlot[config.getMaxInFlight()];
+            for (int i = 0; i < frameRing.length; i++) {
+                frameRing[i] = new FrameSlot();
+            }
+        }
+        for (int i = 0; i < frameRing.length; i++) {
+            FrameSlot slot = frameRing[nextSlot];
+            nextSlot = (nextSlot + 1) % frameRing.length;
+            if (!slot.inUse) {
+                slot.inUse = true;
+                return slot;
+            }
+        }
+        // Not expected while inFlight is bounded by the ring size
+        FrameSlot slot = new FrameSlot();
+        slot.inUse = true;
+        return slot;
     }
     
     /**
-     * Detect faces in the input image (with ImageProxy closing)
-     */
-    private void detectFaces(InputImage image, final ImageProxy imageProxy) {
-        faceDetector.process(image)
-                .addOnSuccessListener(new OnSuccessListener<List<Face>>() {
-                    @Override
-                    public void onSuccess(List<Face> faces) {
-                        if (faces.isEmpty()) {
-                            // No faces detected
-                            listener.onNoFaceDetected();
-                        } else {
-                            // Get the first face (assuming one person)
-                            Face face = faces.get(0);
-                            
-                            // Calculate confidence (using tracking confidence if available)
-                            // Calculate confidence based on tracking ID existence
-                            // ML Kit 16.1.5 doesn't have getTrackingConfidence(), so we use a fixed confidence
-                            float confidence = face.getTrackingId() != null ? 0.9f : 0.8f;
-                            
-                            // Get bounding box
-                            Rect boundingBox = face.getBoundingBox();
-                            
-                            // Notify listener
-                            listener.onFaceDetected(face, boundingBox, confidence);
-                        }
-                        
-                        // Close the imageProxy to release resources
-                        imageProxy.close();
-                    }
-                })
-                .addOnFailureListener(new OnFailureListener() {
-                    @Override
-                    public void onFailure(@NonNull Exception e) {
-                        Log.e(TAG, "Face detection failed: " + e.getMessage());
-                        listener.onFaceDetectionFailed(e);
-                        
-                        // Close the imageProxy to release resources
-                        imageProxy.close();
-                    }
-                });
+     * Detect faces in the input image. The slot's frame (if any) is closed once detection completes.
+     */
+    private void detectFaces(InputImage image, FrameSlot slot) {
+        // The classification detector only runs while a liveness challenge is active
+        Task<List<Face>> detection = slot.liveness != null ? livenessDetector.process(image) : cascade.detect(image);
+        detection.addOnSuccessListener(callbackExecutor, slot)
+                .addOnFailureListener(callbackExecutor, slot);
+    }
+
+    /**
+     * Handle detector results for one frame: update tracking state, confirm new candidates
+     * with the accurate tier if needed, then notify listeners.
+     * Allocations are counted for the helper's own work only, not for listener code.
+     */
+    private void onDetectionSuccess(FrameSlot slot, List<Face> faces) {
+        int allocationMark = allocationCounter.mark();
+        long callbackStart = SystemClock.elapsedRealtimeNanos();
+        slot.detectNanos = callbackStart - slot.detectStart;
+        cascade.recordFast(slot.detectNanos);
+
+        if (slot.liveness != null) {
+            trace(slot, FrameTraceRecorder.OUTCOME_LIVENESS, faces.size(), faces.isEmpty() ? null : faces.get(0));
+            onLivenessFrame(slot, faces);
+            releaseFrame(slot);
+            return;
+        }
+
+        slot.faces = faces;
+        slot.multiListener = multiFaceListener;
+        if (slot.multiListener != null) {
+            updateMultiFace(faces, slot);
+            slot.needsConfirmation = !slot.candidates.isEmpty();
+        } else {
+            updateSingleFace(faces, slot);
+        }
+        slot.allocations += allocationCounter.since(allocationMark);
+
+        if (slot.needsConfirmation && cascade.isConfirmationEnabled() && slot.inputImage != null) {
+            // The frame stays open until the accurate tier has looked at it
+            slot.confirmStart = SystemClock.elapsedRealtimeNanos();
+            cascade.confirm(slot.inputImage)
+                    .addOnSuccessListener(callbackExecutor, slot.confirmListener)
+                    .addOnFailureListener(callbackExecutor, slot.confirmListener);
+            return;
+        }
+        dispatch(slot, callbackStart);
+    }
+
+    /**
+     * Check quality and the cascade verdict of the primary face and update the scheduler
+     */
+    private void updateSingleFace(List<Face> faces, FrameSlot slot) {
+        // Get the first face (assuming one person)
+        slot.primary = faces.isEmpty() ? null : faces.get(0);
+        slot.qualityPassed = slot.primary == null || checkQuality(slot.primary, slot);
+        slot.needsConfirmation = false;
+
+        if (slot.primary != null && slot.qualityPassed) {
+            int verdict = cascade.getVerdict(slot.primary.getTrackingId());
+            if (verdict == FaceDetectorCascade.VERDICT_REJECTED) {
+                // The accurate tier already ruled this track out as a false positive
+                slot.primary = null;
+            } else {
+                slot.needsConfirmation = verdict == FaceDetectorCascade.VERDICT_UNKNOWN;
+            }
+        }
+
+        if (slot.imageProxy != null) {
+            if (faces.isEmpty()) {
+                scheduler.onNoFace();
+            } else if (slot.qualityPassed) {
+                scheduler.onFaceObserved(faces.get(0).getTrackingId(), faces.get(0).getBoundingBox());
+            } else {
+                // Keep sampling at full rate until a usable frame arrives
+                scheduler.onSceneChanged();
+            }
+        }
+    }
+
+    /**
+     * Replace fast-tier faces awaiting confirmation with their accurate-tier matches,
+     * dropping those the accurate tier did not find
+     */
+    private void applyConfirmation(FrameSlot slot, List<Face> accurateFaces) {
+        if (slot.multiListener != null) {
+            int kept = 0;
+            for (int i = 0; i < slot.candidates.size(); i++) {
+                Face candidate = slot.candidates.get(i);
+                Face match = FaceDetectorCascade.match(candidate, accurateFaces);
+                cascade.setVerdict(candidate.getTrackingId(), match != null);
+                if (match != null) {
+                    slot.candidates.set(kept++, candidate);
+                    slot.confirmed.add(match);
+                }
+            }
+            while (slot.candidates.size() > kept) {
+                slot.candidates.remove(slot.candidates.size() - 1);
+            }
+        } else if (slot.primary != null) {
+            Face match = FaceDetectorCascade.match(slot.primary, accurateFaces);
+            cascade.setVerdict(slot.primary.getTrackingId(), match != null);
+            slot.primary = match;
+        }
+    }
+
+    /**
+     * Notify listeners of the frame's (possibly confirmed) results and release it
+     */
+    private void dispatch(FrameSlot slot, long callbackStart) {
+        ImageProxy imageProxy = slot.imageProxy;
+        traceDispatch(slot);
+        if (slot.multiListener != null) {
+            dispatchMultiFace(slot.faces, slot.multiListener, slot);
+        } else if (!slot.qualityPassed) {
+            // Too blurry, turned away, small or badly lit: not worth recognizing or recording
+            listener.onLowQualityFace(slot.faces.get(0), slot.qualityReason, slot.qualityScore);
+        } else if (slot.primary == null) {
+            // No faces detected (or the only one was rejected by the accurate tier)
+            listener.onNoFaceDetected();
+        } else {
+            Face face = slot.primary;
+            
+            // Calculate confidence based on tracking ID existence
+            // ML Kit 16.1.5 doesn't have getTrackingConfidence(), so we use a fixed confidence
+            float confidence = face.getTrackingId() != null ? 0.9f : 0.8f;
+            
+            // Notify listener
+            listener.onFaceDetected(face, face.getBoundingBox(), confidence);
+
+            // Identify the face while the frame is still open
+            if (imageProxy != null) {
+                recognize(face, slot);
+            }
+        }
+
+        int allocationMark = allocationCounter.mark();
+        frameStats.record(FrameStats.STAGE_CALLBACK,
+                SystemClock.elapsedRealtimeNanos() - callbackStart);
+        if (slot.steadyState && allocationCounter.isEnabled()) {
+            frameStats.recordAllocations(slot.allocations + allocationCounter.since(allocationMark));
+        }
+        releaseFrame(slot);
+    }
+
+    /**
+     * Record the outcome of a detected frame in the trace, if one is attached
+     */
+    private void traceDispatch(FrameSlot slot) {
+        if (traceRecorder == null) {
+            return;
+        }
+        int faceCount = slot.faces.size();
+        if (slot.multiListener != null) {
+            trace(slot, FrameTraceRecorder.OUTCOME_MULTI_FACE, faceCount, faceCount > 0 ? slot.faces.get(0) : null);
+        } else if (!slot.qualityPassed) {
+            trace(slot, FrameTraceRecorder.OUTCOME_LOW_QUALITY, faceCount, slot.faces.get(0));
+        } else if (slot.primary == null) {
+            trace(slot, FrameTraceRecorder.OUTCOME_NO_FACE, faceCount, null);
+        } else {
+            trace(slot, FrameTraceRecorder.OUTCOME_FACE, faceCount, slot.primary);
+        }
+    }
+
+    private void trace(FrameSlot slot, int outcome, int faceCount, @Nullable Face face) {
+        FrameTraceRecorder trace = traceRecorder;
+        if (trace == null) {
+            return;
+        }
+        trace.record(slot.frameTimestamp, outcome, slot.detectNanos, faceCount,
+                face != null ? toFrameBox(face, slot) : null, face != null ? face.getTrackingId() : null);
+    }
+
+    /**
+     * Update face tracks and the scheduler for classroom mode
+     */
+    private void updateMultiFace(List<Face> faces, FrameSlot slot) {
+        multiFaceTracker.update(faces, slot.candidates);
+
+        // Candidates failing the quality gate are retried on a later frame
+        for (int i = slot.candidates.size() - 1; i >= 0; i--) {
+            Face candidate = slot.candidates.get(i);
+            if (!checkQuality(candidate, slot)) {
+                multiFaceTracker.retry(candidate.getTrackingId());
+                slot.candidates.remove(i);
+            }
+        }
+
+        if (slot.imageProxy != null) {
+            // Stay at full rate until every visible face has been reported
+            if (faces.isEmpty() || multiFaceTracker.hasPendingFaces()) {
+                scheduler.onSceneChanged();
+            } else {
+                scheduler.onFaceObserved(faces.get(0).getTrackingId(), faces.get(0).getBoundingBox());
+            }
+        }
+    }
+
+    /**
+     * Feed a frame to the active liveness challenge; regular callbacks are paused meanwhile
+     */
+    private void onLivenessFrame(FrameSlot slot, List<Face> faces) {
+        LivenessChallenge challenge = slot.liveness;
+        // Keep analyzing at full rate for the short challenge window
+        scheduler.onSceneChanged();
+
+        int result = challenge.onFrame(slot.imageProxy.getImageInfo().getTimestamp(),
+                faces.isEmpty() ? null : faces.get(0));
+        if (result == LivenessChallenge.RESULT_PENDING
+                || !livenessChallenge.compareAndSet(challenge, null)) {
+            // Still collecting, or another in-flight frame already finished the challenge
+            return;
+        }
+
+        LivenessListener liveness = livenessListener;
+        if (liveness == null) {
+            return;
+        }
+        if (result == LivenessChallenge.RESULT_PASSED) {
+            liveness.onLivenessPassed(challenge.getLastFace());
+        } else {
+            liveness.onLivenessFailed();
+        }
+    }
+
+    /**
+     * Run the quality gate (if set) on a face, keeping the result in the slot
+     */
+    private boolean checkQuality(Face face, FrameSlot slot) {
+        FaceQualityGate gate = qualityGate;
+        if (gate == null) {
+            return true;
+        }
+        boolean accepted = gate.accept(face, toFrameBox(face, slot), slot.imageWidth, slot.imageProxy);
+        slot.qualityReason = gate.getLastReason();
+        slot.qualityScore = gate.getLastScore();
+        return accepted;
+    }
+
+    /**
+     * Report every face in the frame and any newly stable attendance candidates
+     */
+    private void dispatchMultiFace(List<Face> faces, MultiFaceListener multiListener, FrameSlot slot) {
+        multiListener.onFacesDetected(faces);
+        for (int i = 0; i < slot.candidates.size(); i++) {
+            Face candidate = slot.candidates.get(i);
+            // Report the accurate tier's face when the candidate was confirmed
+            Face face = slot.confirmed.isEmpty() ? candidate : slot.confirmed.get(i);
+            multiListener.onAttendanceCandidate(candidate.getTrackingId(), face);
+            if (slot.imageProxy != null) {
+                recognize(face, slot);
+            }
+        }
+    }
+
+    /**
+     * Face box in upright frame coordinates (detection may have run on a region of interest)
+     */
+    private static Rect toFrameBox(Face face, FrameSlot slot) {
+        slot.frameBox.set(face.getBoundingBox());
+        slot.frameBox.offset(slot.roiOffset.x, slot.roiOffset.y);
+        return slot.frameBox;
+    }
+
+    /**
+     * Run the recognition stage (if enabled) on one face of an open camera frame
+     */
+    private void recognize(Face face, FrameSlot slot) {
+        FaceRecognizer recognizer = faceRecognizer;
+        EnrollmentListener enrollment = enrollmentListener;
+        if (recognizer != null && enrollment != null) {
+            enroll(recognizer, enrollment, face, slot);
+            return;
+        }
+        RecognitionListener recognition = recognitionListener;
+        if (recognizer == null || recognition == null) {
+            return;
+        }
+
+        long recognizeStart = SystemClock.elapsedRealtimeNanos();
+        EmbeddingIndex.Match match;
+        try {
+            match = recognizer.recognize(slot.imageProxy, toFrameBox(face, slot));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Face recognition failed: " + e.getMessage());
+            match = null;
+        }
+        frameStats.record(FrameStats.STAGE_RECOGNIZE, SystemClock.elapsedRealtimeNanos() - recognizeStart);
+
+        if (match != null) {
+            recognition.onFaceRecognized(face, match);
+        } else {
+            recognition.onFaceNotRecognized(face);
+        }
+    }
+
+    /**
+     * Compute the embedding of one face of an open camera frame for the enrollment stage
+     */
+    private void enroll(FaceRecognizer recognizer, EnrollmentListener enrollment, Face face, FrameSlot slot) {
+        long recognizeStart = SystemClock.elapsedRealtimeNanos();
+        float[] embedding;
+        try {
+            embedding = recognizer.embed(slot.imageProxy, toFrameBox(face, slot));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Face embedding failed: " + e.getMessage());
+            embedding = null;
+        }
+        frameStats.record(FrameStats.STAGE_RECOGNIZE, SystemClock.elapsedRealtimeNanos() - recognizeStart);
+
+        if (embedding != null) {
+            enrollment.onFaceEmbedded(face, embedding);
+        }
+    }
+
+    /**
+     * Close the slot's frame to release resources and free an in-flight slot
+     */
+    private void releaseFrame(FrameSlot slot) {
+        ImageProxy imageProxy = slot.imageProxy;
+        slot.imageProxy = null;
+        slot.inputImage = null;
+        slot.faces = null;
+        slot.primary = null;
+        slot.multiListener = null;
+        slot.candidates.clear();
+        slot.confirmed.clear();
+        slot.liveness = null;
+        slot.inUse = false;
+        if (imageProxy == null) {
+            return;
+        }
+        imageProxy.close();
+        inFlight.decrementAndGet();
+
+        int logInterval = config.getStatsLogInterval();
+        long frames = frameStats.getCount(FrameStats.STAGE_DETECT);
+        if (logInterval > 0 && frames > 0 && frames % logInterval == 0) {
+            Log.d(TAG, "Frame pipeline: " + frameStats.summary());
+        }
+    }
+
+    /**
+     * Time between sensor exposure and the frame reaching the analyzer.
+     * The sensor timestamp may use either the boot-time or the monotonic clock,
+     * so take the smaller non-negative difference.
+     */
+    private static long acquireLatency(ImageProxy imageProxy, long nowBootNanos) {
+        long sensorTimestamp = imageProxy.getImageInfo().getTimestamp();
+        long sinceBoot = nowBootNanos - sensorTimestamp;
+        long sinceMonotonic = System.nanoTime() - sensorTimestamp;
+        if (sinceMonotonic >= 0 && (sinceBoot < 0 || sinceMonotonic < sinceBoot)) {
+            return sinceMonotonic;
+        }
+        return sinceBoot;
+    }
+
+    /**
+     * Enable multi-face (classroom) mode. While a listener is set, every face in the frame
+     * is reported to it instead of the single-face FaceDetectionListener callbacks.
+     * Pass null to return to single-face mode.
+     */
+    public void setMultiFaceListener(@Nullable MultiFaceListener multiFaceListener) {
+        this.multiFaceListener = multiFaceListener;
+        multiFaceTracker.reset();
+        scheduler.reset();
+    }
+
+    /**
+     * Enable the recognition stage. Each detected face (or multi-face candidate) is cropped,
+     * embedded and matched against the recognizer's index. Pass null to disable.
+     * Recognition runs on the callback executor, so set one off the main thread.
+     */
+    public void setRecognitionStage(@Nullable FaceRecognizer faceRecognizer,
+                                    @Nullable RecognitionListener recognitionListener) {
+        this.enrollmentListener = null;
+        this.faceRecognizer = faceRecognizer;
+        this.recognitionListener = recognitionListener;
+    }
+
+    /**
+     * Enable the enrollment stage instead of recognition: each detected face that passes the
+     * quality gate is cropped and embedded, and the embedding is passed to the listener
+     * (the recognizer's index is not used). Pass null to disable.
+     */
+    public void setEnrollmentStage(@Nullable FaceRecognizer faceRecognizer,
+                                   @Nullable EnrollmentListener enrollmentListener) {
+        this.recognitionListener = null;
+        this.faceRecognizer = faceRecognizer;
+        this.enrollmentListener = enrollmentListener;
+    }
+
+    /**
+     * Only pass faces that meet the gate's quality score to onFaceDetected, multi-face
+     * candidates and the recognition stage. Rejected faces go to onLowQualityFace.
+     * Pass null to accept every face.
+     */
+    public void setQualityGate(@Nullable FaceQualityGate qualityGate) {
+        this.qualityGate = qualityGate;
+    }
+
+    /**
+     * Record every camera frame (analyzed or not) in a trace ring buffer for field diagnostics.
+     * Pass null to stop recording.
+     */
+    public void setTraceRecorder(@Nullable FrameTraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Start a liveness challenge on the camera feed. Until it passes or its window elapses,
+     * frames go to a detector with classification enabled and the regular face and
+     * recognition callbacks are paused; afterwards the fast detector is used again.
+     *
+     * @return false if a challenge is already running
+     */
+    public boolean startLivenessChallenge(@NonNull LivenessChallenge challenge,
+                                          @NonNull LivenessListener listener) {
+        synchronized (livenessOptions) {
+            if (livenessDetector == null) {
+                livenessDetector = SharedFaceDetectors.acquire(livenessOptions);
+            }
+        }
+        if (livenessChallenge.get() != null) {
+            return false;
+        }
+        livenessListener = listener;
+        if (!livenessChallenge.compareAndSet(null, challenge)) {
+            return false;
+        }
+        scheduler.reset();
+        return true;
+    }
+
+    /**
+     * Abandon a running liveness challenge without calling its listener
+     */
+    public void cancelLivenessChallenge() {
+        livenessChallenge.set(null);
+    }
+
+    public boolean isLivenessChallengeActive() {
+        return livenessChallenge.get() != null;
+    }
+
+    /**
+     * Executor for detection results and listener callbacks (main thread by default).
+     * Set before the analyzer receives frames.
+     */
+    public void setCallbackExecutor(@NonNull Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Pipeline configuration used by this analyzer
+     */
+    public FramePipelineConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Scheduler controlling the analysis rate
+     */
+    public AdaptiveFrameScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Fast/accurate detector cascade used by this analyzer
+     */
+    public FaceDetectorCascade getCascade() {
+        return cascade;
+    }
+
+    /**
+     * Per-stage timing collected since the helper was created
+     */
+    public FrameStats getFrameStats() {
+        return frameStats;
     }
     
     /**
      * Close and release resources
      */
     public void shutdown() {
-        faceDetector.close();
+        cascade.close();
+        synchronized (livenessOptions) {
+            if (livenessDetector != null) {
+                SharedFaceDetectors.release(livenessDetector);
+                livenessDetector = null;
+            }
+        }
+        allocationCounter.stop();
     }
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+package com.eduface.app.utils;
+
+import android.graphics.Rect;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two-tier face detection. A FAST detector runs on every analyzed frame; an ACCURATE
+ * detector runs only on the frame where a tracked face first becomes a candidate for
+ * attendance, confirming it (and giving a tighter box) or rejecting it as a false positive.
+ * The verdict is remembered per tracking ID, so each face costs one accurate pass.
+ * Each tier is a FaceDetectorEngine; the ML Kit engines come from SharedFaceDetectors (the
+ * accurate one on first use), so a cascade created while another is still open, or shortly
+ * after, reuses the loaded models. close() releases both tiers.
+ */
+public class FaceDetectorCascade implements Closeable {
+
+    public static final int VERDICT_UNKNOWN = 0;
+    public static final int VERDICT_CONFIRMED = 1;
+    public static final int VERDICT_REJECTED = 2;
+
+    // Minimum intersection-over-union between the fast and accurate boxes of the same face
+    private static final float MIN_OVERLAP = 0.3f;
+    private static final int MAX_REMEMBERED_TRACKS = 32;
+
+    private final FaceDetectorEngine fastEngine;
+    @Nullable
+    private final FaceDetectorEngine accurateEngine;
+    private final FrameStats stats;
+    private boolean closed;
+
+    private long confirmedFaces;
+    private long rejectedFaces;
+
+    // Verdicts for recent tracking IDs, oldest evicted first
+    private final Map<Integer, Boolean> verdicts =
+            new LinkedHashMap<Integer, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                    return size() > MAX_REMEMBERED_TRACKS;
+                }
+            };
+
+    /**
+     * ML Kit detectors for both tiers (the accurate one only if the config enables it)
+     *
+     * @param stats Receives the latency of each tier (STAGE_DETECT and STAGE_CONFIRM)
+     */
+    public FaceDetectorCascade(FramePipelineConfig config, FrameStats stats) {
+        this(MlKitFaceDetectorEngine.fast(config),
+                config.isCascadeEnabled() ? MlKitFaceDetectorEngine.accurate(config) : null,
+                stats);
+    }
+
+    /**
+     * Cascade over the given engines (e.g. scripted engines for replay)
+     *
+     * @param accurateEngine Null disables confirmation
+     */
+    public FaceDetectorCascade(FaceDetectorEngine fastEngine, @Nullable FaceDetectorEngine accurateEngine,
+                               FrameStats stats) {
+        this.fastEngine = fastEngine;
+        this.accurateEngine = accurateEngine;
+        this.stats = stats;
+    }
+
+    /**
+     * Load the models of both tiers now (off the main thread) so the first
+     * real detection does not pay for it
+     */
+    public synchronized void prewarm() {
+        if (closed) {
+            return;
+        }
+        fastEngine.prewarm();
+        if (accurateEngine != null) {
+            accurateEngine.prewarm();
+        }
+    }
+
+    /**
+     * Detect faces with the fast tier (every analyzed frame)
+     */
+    public Task<List<Face>> detect(InputImage image) {
+        return fastEngine.process(image);
+    }
+
+    /**
+     * Whether candidates are confirmed by the accurate tier (see FramePipelineConfig)
+     */
+    public boolean isConfirmationEnabled() {
+        return accurateEngine != null;
+    }
+
+    /**
+     * Run the accurate tier on a frame
+     */
+    public synchronized Task<List<Face>> confirm(InputImage image) {
+        if (closed || accurateEngine == null) {
+            throw new IllegalStateException("Confirmation is not available");
+        }
+        return accurateEngine.process(image);
+    }
+
+    /**
+     * Find the accurate-tier face matching a fast-tier face
+     *
+     * @return Matching face, or null if the accurate tier did not find it
+     */
+    @Nullable
+    public static Face match(Face fastFace, List<Face> accurateFaces) {
+        Rect box = fastFace.getBoundingBox();
+        Face best = null;
+        float bestOverlap = MIN_OVERLAP;
+        for (int i = 0; i < accurateFaces.size(); i++) {
+            Face candidate = accurateFaces.get(i);
+            float overlap = intersectionOverUnion(box, candidate.getBoundingBox());
+            if (overlap >= bestOverlap) {
+                best = candidate;
+                bestOverlap = overlap;
+            }
+        }
+        return best;
+    }
+
+    private static float intersectionOverUnion(Rect a, Rect b) {
+        int width = Math.min(a.right, b.right) - Math.max(a.left, b.left);
+        int height = Math.min(a.bottom, b.bottom) - Math.max(a.top, b.top);
+        if (width <= 0 || height <= 0) {
+            return 0f;
+        }
+        float intersection = (float) width * height;
+        float union = (float) a.width() * a.height() + (float) b.width() * b.height() - intersection;
+        return intersection / union;
+    }
+
+    /**
+     * Verdict for a tracked face (VERDICT_UNKNOWN for untracked faces)
+     */
+    public synchronized int getVerdict(@Nullable Integer trackingId) {
+        if (trackingId == null) {
+            return VERDICT_UNKNOWN;
+        }
+        Boolean confirmed = verdicts.get(trackingId);
+        if (confirmed == null) {
+            return VERDICT_UNKNOWN;
+        }
+        return confirmed ? VERDICT_CONFIRMED : VERDICT_REJECTED;
+    }
+
+    /**
+     * Remember the accurate tier's verdict for a tracked face
+     */
+    public synchronized void setVerdict(@Nullable Integer trackingId, boolean confirmed) {
+        if (confirmed) {
+            confirmedFaces++;
+        } else {
+            rejectedFaces++;
+        }
+        if (trackingId != null) {
+            verdicts.put(trackingId, confirmed);
+        }
+    }
+
+    /**
+     * Record the latency of one fast-tier pass
+     */
+    public void recordFast(long nanos) {
+        stats.record(FrameStats.STAGE_DETECT, nanos);
+    }
+
+    /**
+     * Record the latency of one accurate-tier pass
+     */
+    public void recordAccurate(long nanos) {
+        stats.record(FrameStats.STAGE_CONFIRM, nanos);
+    }
+
+    public synchronized long getConfirmedFaces() {
+        return confirmedFaces;
+    }
+
+    public synchronized long getRejectedFaces() {
+        return rejectedFaces;
+    }
+
+    /**
+     * Forget all verdicts (e.g. when switching modes)
+     */
+    public synchronized void reset() {
+        verdicts.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        fastEngine.close();
+        if (accurateEngine != null) {
+            accurateEngine.close();
+        }
+    }
+}
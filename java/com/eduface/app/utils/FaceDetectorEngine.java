@@ -0,0 +1,30 @@
+package com.eduface.app.utils;
+
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Face detector used by the frame pipeline. The app uses ML Kit (MlKitFaceDetectorEngine);
+ * the replay harness plugs in a deterministic scripted engine instead.
+ */
+public interface FaceDetectorEngine extends Closeable {
+
+    /**
+     * Detect faces in an image. The image (and the frame behind it) stays valid until the task completes.
+     * After close() the task fails rather than this method throwing.
+     */
+    Task<List<Face>> process(InputImage image);
+
+    /**
+     * Load models ahead of the first process() call, if that helps
+     */
+    default void prewarm() {
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,236 @@
+package com.eduface.app.utils;
+
+import android.graphics.Rect;
+
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProxy;
+
+import com.google.mlkit.vision.face.Face;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Scores how usable a detected face is for attendance and recognition.
+ * The score combines head pose (Euler angles), face size, sharpness (variance of the
+ * Laplacian over the face on the Y plane) and exposure (mean luma), each in [0, 1].
+ * Faces below the policy's minimum score are rejected before the recognizer or
+ * the attendance write. Not thread-safe: use from the detection callback thread.
+ */
+public class FaceQualityGate {
+
+    // Reasons for the last rejection (the weakest component)
+    public static final int REASON_NONE = 0;
+    public static final int REASON_POSE = 1;
+    public static final int REASON_SIZE = 2;
+    public static final int REASON_BLUR = 3;
+    public static final int REASON_LIGHTING = 4;
+
+    // At most this many samples per side when estimating sharpness
+    private static final int SHARPNESS_GRID = 48;
+
+    /**
+     * Quality thresholds
+     */
+    public static class Policy {
+        public static final Policy DEFAULT = new Policy(0.4f, 30f, 20f, 20f, 0.2f, 80f);
+        // Faces seen across a classroom fill a much smaller part of the frame
+        public static final Policy CLASSROOM = new Policy(0.4f, 30f, 20f, 20f, 0.08f, 80f);
+
+        private final float minScore;
+        private final float maxYaw;
+        private final float maxPitch;
+        private final float maxRoll;
+        private final float goodFaceWidth;
+        private final float goodSharpness;
+
+        /**
+         * @param minScore Minimum combined score for a face to pass
+         * @param maxYaw Head turn (degrees) at which the pose score reaches 0
+         * @param maxPitch Head tilt up/down (degrees) at which the pose score reaches 0
+         * @param maxRoll Head roll (degrees) at which the pose score reaches 0
+         * @param goodFaceWidth Face width, as a fraction of the image width, that scores 1
+         * @param goodSharpness Laplacian variance that scores 1
+         */
+        public Policy(float minScore, float maxYaw, float maxPitch, float maxRoll,
+                      float goodFaceWidth, float goodSharpness) {
+            this.minScore = minScore;
+            this.maxYaw = maxYaw;
+            this.maxPitch = maxPitch;
+            this.maxRoll = maxRoll;
+            this.goodFaceWidth = goodFaceWidth;
+            this.goodSharpness = goodSharpness;
+        }
+
+        public float getMinScore() {
+            return minScore;
+        }
+    }
+
+    private final Policy policy;
+    private float lastScore;
+    private int lastReason = REASON_NONE;
+
+    // Computed by measureLuma()
+    private float lumaMean;
+    private float laplacianVariance;
+
+    public FaceQualityGate(Policy policy) {
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Score a face and check it against the policy
+     *
+     * @param face Detected face
+     * @param box Face box in upright frame coordinates
+     * @param imageWidth Width of the upright image the face was detected in
+     * @param frame Open YUV camera frame, or null (sharpness and exposure are then not scored)
+     * @return true if the face is good enough
+     */
+    public boolean accept(Face face, Rect box, int imageWidth, @Nullable ImageProxy frame) {
+
+        float pose = 1f - Math.max(Math.abs(face.getHeadEulerAngleY()) / policy.maxYaw,
+                Math.max(Math.abs(face.getHeadEulerAngleX()) / policy.maxPitch,
+                        Math.abs(face.getHeadEulerAngleZ()) / policy.maxRoll));
+        float size = box.width() / (policy.goodFaceWidth * Math.max(1, imageWidth));
+
+        float sharpness = 1f;
+        float lighting = 1f;
+        if (frame != null && measureLuma(frame, box)) {
+            sharpness = laplacianVariance / policy.goodSharpness;
+            // Full score between 60 and 200, falling to 0 at 20 and 245
+            lighting = lumaMean < 60f ? (lumaMean - 20f) / 40f
+                    : lumaMean > 200f ? (245f - lumaMean) / 45f : 1f;
+        }
+
+        pose = clamp(pose);
+        size = clamp(size);
+        sharpness = clamp(sharpness);
+        lighting = clamp(lighting);
+        lastScore = pose * size * sharpness * lighting;
+
+        lastReason = REASON_POSE;
+        float weakest = pose;
+        if (size < weakest) {
+            weakest = size;
+            lastReason = REASON_SIZE;
+        }
+        if (sharpness < weakest) {
+            weakest = sharpness;
+            lastReason = REASON_BLUR;
+        }
+        if (lighting < weakest) {
+            lastReason = REASON_LIGHTING;
+        }
+
+        boolean accepted = lastScore >= policy.minScore;
+        if (accepted) {
+            lastReason = REASON_NONE;
+        }
+        return accepted;
+    }
+
+    /**
+     * Score from the last accept() call
+     */
+    public float getLastScore() {
+        return lastScore;
+    }
+
+    /**
+     * Why the last face was rejected (REASON_NONE if it passed)
+     */
+    public int getLastReason() {
+        return lastReason;
+    }
+
+    /**
+     * Sample the face region of the Y plane on a coarse grid and compute mean luma and
+     * the variance of the 4-neighbour Laplacian. The Laplacian is rotation invariant, so the
+     * box is mapped to sensor coordinates and sampled there without rotating pixels.
+     */
+    private boolean measureLuma(ImageProxy frame, Rect uprightBox) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int rotation = frame.getImageInfo().getRotationDegrees();
+
+        // Map the upright box to sensor coordinates
+        int left, top, right, bottom;
+        switch (rotation) {
+            case 90:
+                left = uprightBox.top;
+                right = uprightBox.bottom;
+                top = height - uprightBox.right;
+                bottom = height - uprightBox.left;
+                break;
+            case 180:
+                left = width - uprightBox.right;
+                right = width - uprightBox.left;
+                top = height - uprightBox.bottom;
+                bottom = height - uprightBox.top;
+                break;
+            case 270:
+                left = width - uprightBox.bottom;
+                right = width - uprightBox.top;
+                top = uprightBox.left;
+                bottom = uprightBox.right;
+                break;
+            default:
+                left = uprightBox.left;
+                right = uprightBox.right;
+                top = uprightBox.top;
+                bottom = uprightBox.bottom;
+                break;
+        }
+
+        int step = Math.max(1, Math.max(right - left, bottom - top) / SHARPNESS_GRID);
+        left = Math.max(step, left);
+        top = Math.max(step, top);
+        right = Math.min(width - 1 - step, right);
+        bottom = Math.min(height - 1 - step, bottom);
+        if (right <= left || bottom <= top) {
+            return false;
+        }
+
+        ImageProxy.PlaneProxy yPlane = frame.getPlanes()[0];
+        ByteBuffer luma = yPlane.getBuffer();
+        int rowStride = yPlane.getRowStride();
+        int pixelStride = yPlane.getPixelStride();
+        int rowStep = step * rowStride;
+        int columnStep = step * pixelStride;
+
+        long samples = 0;
+        long lumaSum = 0;
+        double laplacianSum = 0;
+        double laplacianSquares = 0;
+        for (int y = top; y < bottom; y += step) {
+            int rowOffset = y * rowStride;
+            for (int x = left; x < right; x += step) {
+                int index = rowOffset + x * pixelStride;
+                int center = luma.get(index) & 0xFF;
+                int laplacian = (luma.get(index - rowStep) & 0xFF)
+                        + (luma.get(index + rowStep) & 0xFF)
+                        + (luma.get(index - columnStep) & 0xFF)
+                        + (luma.get(index + columnStep) & 0xFF)
+                        - 4 * center;
+                lumaSum += center;
+                laplacianSum += laplacian;
+                laplacianSquares += (double) laplacian * laplacian;
+                samples++;
+            }
+        }
+
+        lumaMean = lumaSum / (float) samples;
+        double mean = laplacianSum / samples;
+        laplacianVariance = (float) (laplacianSquares / samples - mean * mean);
+        return true;
+    }
+
+    private static float clamp(float value) {
+        return value < 0f ? 0f : (value > 1f ? 1f : value);
+    }
+}
@@ -0,0 +1,77 @@
+package com.eduface.app.utils;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Debug;
+
+/**
+ * Counts object allocations made by the frame pipeline on the current thread.
+ * Only active in debuggable builds (allocation counting slows the runtime down);
+ * in release builds every call is a no-op returning 0.
+ * Allocation counting is process-wide, so it is refcounted across counters: it runs while
+ * at least one counter has not been stopped (e.g. while an old and a new pipeline overlap).
+ */
+public class FrameAllocationCounter {
+
+    /**
+     * Process-wide allocation counting, started by the first counter and stopped by the last
+     */
+    private static final class GlobalCounting {
+        private static int users;
+
+        @SuppressWarnings("deprecation")
+        static synchronized void acquire() {
+            if (users++ == 0) {
+                Debug.startAllocCounting();
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        static synchronized void release() {
+            if (--users == 0) {
+                Debug.stopAllocCounting();
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private boolean stopped;
+
+    public FrameAllocationCounter(Context context) {
+        this.enabled = (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        if (enabled) {
+            GlobalCounting.acquire();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Current allocation count of the calling thread, to pass to since()
+     */
+    @SuppressWarnings("deprecation")
+    public int mark() {
+        return enabled ? Debug.getThreadAllocCount() : 0;
+    }
+
+    /**
+     * Allocations made by the calling thread since mark()
+     */
+    @SuppressWarnings("deprecation")
+    public int since(int mark) {
+        return enabled ? Debug.getThreadAllocCount() - mark : 0;
+    }
+
+    /**
+     * Stop counting (when the pipeline shuts down); counting carries on for other counters.
+     * Safe to call more than once.
+     */
+    public synchronized void stop() {
+        if (enabled && !stopped) {
+            stopped = true;
+            GlobalCounting.release();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.eduface.app.utils;
+
+import android.util.Size;
+
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+
+/**
+ * Configuration for the camera frame pipeline feeding face detection.
+ * Controls backpressure, the number of frames allowed at the detector at once,
+ * analysis resolution and output format.
+ */
+public class FramePipelineConfig {
+
+    // Device class profiles (stored in PreferenceManager)
+    public static final String PROFILE_LOW_END = "low_end";
+    public static final String PROFILE_MID_RANGE = "mid_range";
+    public static final String PROFILE_HIGH_END = "high_end";
+
+    private final int backpressureStrategy;
+    private final int maxInFlight;
+    private final Size targetResolution;
+    private final int outputImageFormat;
+    private final int statsLogInterval;
+    private final AdaptiveFrameScheduler.Policy schedulerPolicy;
+    private final float minFaceSize;
+    private final boolean cascadeEnabled;
+    private final float roiFraction;
+
+    private FramePipelineConfig(Builder builder) {
+        this.backpressureStrategy = builder.backpressureStrategy;
+        this.maxInFlight = builder.maxInFlight;
+        this.targetResolution = builder.targetResolution;
+        this.outputImageFormat = builder.outputImageFormat;
+        this.statsLogInterval = builder.statsLogInterval;
+        this.schedulerPolicy = builder.schedulerPolicy;
+        this.minFaceSize = builder.minFaceSize;
+        this.cascadeEnabled = builder.cascadeEnabled;
+        this.roiFraction = builder.roiFraction;
+    }
+
+    /**
+     * Get the preset for a device class profile. Unknown profiles fall back to mid range.
+     */
+    public static FramePipelineConfig forProfile(String profile) {
+        return builderForProfile(profile).build();
+    }
+
+    /**
+     * Builder preset for a device class profile, to adjust (e.g. with a profiled resolution) before building
+     */
+    public static Builder builderForProfile(String profile) {
+        if (PROFILE_LOW_END.equals(profile)) {
+            // Small frames, one at a time: lowest latency, lowest detection rate
+            return new Builder()
+                    .setTargetResolution(new Size(480, 360))
+                    .setSchedulerPolicy(new AdaptiveFrameScheduler.Policy(1f, 10f, 0.1f, 1000))
+                    // The accurate model costs too much to load and run on slow devices
+                    .setCascadeEnabled(false);
+        } else if (PROFILE_HIGH_END.equals(profile)) {
+            // Queue a couple of frames so the detector is never idle
+            return new Builder()
+                    .setBackpressureStrategy(ImageAnalysis.STRATEGY_BLOCK_PRODUCER)
+                    .setMaxInFlight(2)
+                    .setTargetResolution(new Size(1280, 720))
+                    .setSchedulerPolicy(new AdaptiveFrameScheduler.Policy(5f, 30f, 0.08f, 1500));
+        }
+        return new Builder();
+    }
+
+    public int getBackpressureStrategy() {
+        return backpressureStrategy;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public Size getTargetResolution() {
+        return targetResolution;
+    }
+
+    public int getOutputImageFormat() {
+        return outputImageFormat;
+    }
+
+    public int getStatsLogInterval() {
+        return statsLogInterval;
+    }
+
+    public AdaptiveFrameScheduler.Policy getSchedulerPolicy() {
+        return schedulerPolicy;
+    }
+
+    public float getMinFaceSize() {
+        return minFaceSize;
+    }
+
+    public boolean isCascadeEnabled() {
+        return cascadeEnabled;
+    }
+
+    /**
+     * Side of the centre region analyzed, as a fraction of the frame (1 = whole frame)
+     */
+    public float getRoiFraction() {
+        return roiFraction;
+    }
+
+    /**
+     * Build an ImageAnalysis use case configured for this pipeline
+     */
+    public ImageAnalysis buildImageAnalysis() {
+        ResolutionSelector resolutionSelector = new ResolutionSelector.Builder()
+                .setResolutionStrategy(new ResolutionStrategy(targetResolution,
+                        ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                .build();
+
+        ImageAnalysis.Builder builder = new ImageAnalysis.Builder()
+                .setBackpressureStrategy(backpressureStrategy)
+                .setResolutionSelector(resolutionSelector)
+                .setOutputImageFormat(outputImageFormat);
+
+        // Queue depth only applies when blocking the producer; keep one slot per in-flight frame
+        if (backpressureStrategy == ImageAnalysis.STRATEGY_BLOCK_PRODUCER) {
+            builder.setImageQueueDepth(maxInFlight);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builder for FramePipelineConfig. Defaults match the mid range profile.
+     */
+    public static class Builder {
+        private int backpressureStrategy = ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST;
+        private int maxInFlight = 1;
+        private Size targetResolution = new Size(640, 480);
+        private int outputImageFormat = ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888;
+        private int statsLogInterval = 100;
+        private AdaptiveFrameScheduler.Policy schedulerPolicy = AdaptiveFrameScheduler.Policy.DEFAULT;
+        private float minFaceSize = 0.15f;
+        private boolean cascadeEnabled = true;
+        private float roiFraction = 1f;
+
+        public Builder setBackpressureStrategy(int backpressureStrategy) {
+            this.backpressureStrategy = backpressureStrategy;
+            return this;
+        }
+
+        /**
+         * Maximum number of frames handed to the detector at once. Extra frames are dropped.
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = Math.max(1, maxInFlight);
+            return this;
+        }
+
+        public Builder setTargetResolution(Size targetResolution) {
+            this.targetResolution = targetResolution;
+            return this;
+        }
+
+        public Builder setOutputImageFormat(int outputImageFormat) {
+            this.outputImageFormat = outputImageFormat;
+            return this;
+        }
+
+        /**
+         * Log stage timings every N detected frames (0 disables logging)
+         */
+        public Builder setStatsLogInterval(int statsLogInterval) {
+            this.statsLogInterval = statsLogInterval;
+            return this;
+        }
+
+        /**
+         * Policy for adapting the analysis rate to scene stability
+         */
+        public Builder setSchedulerPolicy(AdaptiveFrameScheduler.Policy schedulerPolicy) {
+            this.schedulerPolicy = schedulerPolicy;
+            return this;
+        }
+
+        /**
+         * Smallest face to detect, as a fraction of the image width.
+         * Classroom cameras covering a whole row of students need a smaller value (around 0.05).
+         */
+        public Builder setMinFaceSize(float minFaceSize) {
+            this.minFaceSize = minFaceSize;
+            return this;
+        }
+
+        /**
+         * Confirm each new tracked face with an accurate detector pass (see FaceDetectorCascade)
+         */
+        public Builder setCascadeEnabled(boolean cascadeEnabled) {
+            this.cascadeEnabled = cascadeEnabled;
+            return this;
+        }
+
+        /**
+         * Only analyze the centre of the frame (e.g. 0.7 for the middle 70% of each side).
+         * Faces near the edges are then ignored. 1 analyzes the whole frame.
+         */
+        public Builder setRoiFraction(float roiFraction) {
+            this.roiFraction = Math.max(0.2f, Math.min(1f, roiFraction));
+            return this;
+        }
+
+        public FramePipelineConfig build() {
+            return new FramePipelineConfig(this);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.eduface.app.utils;
+
+import java.util.Locale;
+
+/**
+ * Per-stage timing for the face detection frame pipeline.
+ * Stages: acquire (sensor to analyzer), convert (ImageProxy to InputImage),
+ * detect (ML Kit process, fast tier), callback (listener dispatch), recognize
+ * (crop, embedding and index match, when recognition is enabled) and confirm
+ * (accurate tier of the detector cascade, once per tracked face).
+ */
+public class FrameStats {
+
+    public static final int STAGE_ACQUIRE = 0;
+    public static final int STAGE_CONVERT = 1;
+    public static final int STAGE_DETECT = 2;
+    public static final int STAGE_CALLBACK = 3;
+    public static final int STAGE_RECOGNIZE = 4;
+    public static final int STAGE_CONFIRM = 5;
+
+    private static final String[] STAGE_NAMES = {"acquire", "convert", "detect", "callback", "recognize", "confirm"};
+
+    private final long[] counts = new long[STAGE_NAMES.length];
+    private final long[] totalNanos = new long[STAGE_NAMES.length];
+    private final long[] maxNanos = new long[STAGE_NAMES.length];
+    private long droppedFrames;
+    private long skippedFrames;
+    private long allocationFrames;
+    private long totalAllocations;
+    private long maxAllocations;
+
+    /**
+     * Record the time spent in a stage for one frame
+     */
+    public synchronized void record(int stage, long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        counts[stage]++;
+        totalNanos[stage] += nanos;
+        if (nanos > maxNanos[stage]) {
+            maxNanos[stage] = nanos;
+        }
+    }
+
+    /**
+     * Record a frame that was dropped before reaching the detector
+     */
+    public synchronized void recordDropped() {
+        droppedFrames++;
+    }
+
+    /**
+     * Record a frame that the scheduler chose not to analyze
+     */
+    public synchronized void recordSkipped() {
+        skippedFrames++;
+    }
+
+    /**
+     * Record the objects allocated by the pipeline for one steady-state frame (debug builds)
+     */
+    public synchronized void recordAllocations(long allocations) {
+        allocationFrames++;
+        totalAllocations += allocations;
+        if (allocations > maxAllocations) {
+            maxAllocations = allocations;
+        }
+    }
+
+    /**
+     * Number of frames that completed the given stage
+     */
+    public synchronized long getCount(int stage) {
+        return counts[stage];
+    }
+
+    /**
+     * Average time spent in a stage, in milliseconds
+     */
+    public synchronized double getAverageMillis(int stage) {
+        return counts[stage] == 0 ? 0 : totalNanos[stage] / (double) counts[stage] / 1_000_000.0;
+    }
+
+    /**
+     * Worst time spent in a stage, in milliseconds
+     */
+    public synchronized double getMaxMillis(int stage) {
+        return maxNanos[stage] / 1_000_000.0;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public synchronized long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Average objects allocated per steady-state frame (0 unless counting is enabled)
+     */
+    public synchronized double getAllocationsPerFrame() {
+        return allocationFrames == 0 ? 0 : totalAllocations / (double) allocationFrames;
+    }
+
+    public synchronized long getMaxAllocations() {
+        return maxAllocations;
+    }
+
+    /**
+     * Clear all counters
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            counts[i] = 0;
+            totalNanos[i] = 0;
+            maxNanos[i] = 0;
+        }
+        droppedFrames = 0;
+        skippedFrames = 0;
+        allocationFrames = 0;
+        totalAllocations = 0;
+        maxAllocations = 0;
+    }
+
+    /**
+     * One-line summary suitable for logcat
+     */
+    public synchronized String summary() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            builder.append(String.format(Locale.US, "%s avg=%.1fms max=%.1fms, ",
+                    STAGE_NAMES[i], getAverageMillis(i), getMaxMillis(i)));
+        }
+        builder.append("frames=").append(counts[STAGE_DETECT]);
+        builder.append(", dropped=").append(droppedFrames);
+        builder.append(", skipped=").append(skippedFrames);
+        if (allocationFrames > 0) {
+            builder.append(String.format(Locale.US, ", allocs/frame=%.1f (max %d)",
+                    getAllocationsPerFrame(), maxAllocations));
+        }
+        return builder.toString();
+    }
+}
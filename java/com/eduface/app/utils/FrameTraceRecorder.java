@@ -0,0 +1,203 @@
+package com.eduface.app.utils;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Ring buffer of the last N frames seen by the face detection pipeline, for diagnosing
+ * "it never saw my face" reports in the field. Each frame is a row of primitives in
+ * preallocated arrays, so recording a frame allocates nothing and costs a few stores.
+ *
+ * Per frame: sensor timestamp, time recorded (elapsedRealtimeNanos), outcome, detector
+ * latency, face count, box of the primary face (upright frame coordinates) and its tracking ID.
+ */
+public class FrameTraceRecorder {
+
+    public static final int OUTCOME_FACE = 0;
+    public static final int OUTCOME_NO_FACE = 1;
+    public static final int OUTCOME_LOW_QUALITY = 2;
+    public static final int OUTCOME_FAILED = 3;
+    public static final int OUTCOME_SKIPPED = 4;   // not analyzed (adaptive scheduler)
+    public static final int OUTCOME_DROPPED = 5;   // not analyzed (too many frames in flight)
+    public static final int OUTCOME_LIVENESS = 6;  // fed to a liveness challenge
+    public static final int OUTCOME_MULTI_FACE = 7;
+
+    private static final String[] OUTCOME_NAMES =
+            {"face", "no_face", "low_quality", "failed", "skipped", "dropped", "liveness", "multi_face"};
+
+    public static final int DEFAULT_CAPACITY = 1024; // about 30 s at 30 fps
+    public static final int NO_TRACKING_ID = -1;
+
+    private static final int MAGIC = 0x45465452; // "EFTR" as written big-endian
+    private static final int VERSION = 1;
+
+    // Fields of the int row
+    private static final int FIELD_OUTCOME = 0;
+    private static final int FIELD_LATENCY_MICROS = 1;
+    private static final int FIELD_FACE_COUNT = 2;
+    private static final int FIELD_LEFT = 3;
+    private static final int FIELD_TOP = 4;
+    private static final int FIELD_RIGHT = 5;
+    private static final int FIELD_BOTTOM = 6;
+    private static final int FIELD_TRACKING_ID = 7;
+    private static final int FIELDS = 8;
+
+    private final int capacity;
+    private final long[] frameTimestamps;
+    private final long[] recordedAt;
+    private final int[] values;
+    private int next;
+    private long recorded;
+
+    public FrameTraceRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FrameTraceRecorder(int capacity) {
+        this.capacity = capacity;
+        frameTimestamps = new long[capacity];
+        recordedAt = new long[capacity];
+        values = new int[capacity * FIELDS];
+    }
+
+    /**
+     * Record one frame, overwriting the oldest once the buffer is full
+     *
+     * @param latencyNanos Detector latency (0 if the frame was not analyzed)
+     * @param box Primary face box, or null if there was none
+     */
+    public synchronized void record(long frameTimestampNanos, int outcome, long latencyNanos, int faceCount,
+                                    @Nullable Rect box, @Nullable Integer trackingId) {
+        int row = next;
+        frameTimestamps[row] = frameTimestampNanos;
+        recordedAt[row] = SystemClock.elapsedRealtimeNanos();
+
+        int offset = row * FIELDS;
+        values[offset + FIELD_OUTCOME] = outcome;
+        values[offset + FIELD_LATENCY_MICROS] = (int) Math.min(Integer.MAX_VALUE, latencyNanos / 1000);
+        values[offset + FIELD_FACE_COUNT] = faceCount;
+        if (box != null) {
+            values[offset + FIELD_LEFT] = box.left;
+            values[offset + FIELD_TOP] = box.top;
+            values[offset + FIELD_RIGHT] = box.right;
+            values[offset + FIELD_BOTTOM] = box.bottom;
+        } else {
+            values[offset + FIELD_LEFT] = 0;
+            values[offset + FIELD_TOP] = 0;
+            values[offset + FIELD_RIGHT] = 0;
+            values[offset + FIELD_BOTTOM] = 0;
+        }
+        values[offset + FIELD_TRACKING_ID] = trackingId != null ? trackingId : NO_TRACKING_ID;
+
+        next = (row + 1) % capacity;
+        recorded++;
+    }
+
+    /**
+     * Number of frames currently held (at most the capacity)
+     */
+    public synchronized int size() {
+        return (int) Math.min(recorded, capacity);
+    }
+
+    /**
+     * Frames recorded since creation or the last clear(), including overwritten ones
+     */
+    public synchronized long getRecordedFrames() {
+        return recorded;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        recorded = 0;
+    }
+
+    /**
+     * Write the held frames, oldest first, as CSV with a header row
+     */
+    public void exportCsv(File file) throws IOException {
+        Snapshot snapshot = snapshot();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("frame_timestamp_ns,recorded_at_ns,outcome,latency_us,faces,left,top,right,bottom,tracking_id");
+            writer.newLine();
+            for (int i = 0; i < snapshot.size; i++) {
+                int offset = i * FIELDS;
+                writer.write(Long.toString(snapshot.frameTimestamps[i]));
+                writer.write(',');
+                writer.write(Long.toString(snapshot.recordedAt[i]));
+                writer.write(',');
+                writer.write(OUTCOME_NAMES[snapshot.values[offset + FIELD_OUTCOME]]);
+                for (int field = FIELD_LATENCY_MICROS; field < FIELDS; field++) {
+                    writer.write(',');
+                    writer.write(Integer.toString(snapshot.values[offset + field]));
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Write the held frames, oldest first, in a compact binary form.
+     *
+     * Layout (big-endian, as written by DataOutputStream):
+     *   header  magic "EFTR", version, frameCount, fieldsPerFrame
+     *   frames  frameTimestampNanos (long), recordedAtNanos (long), then the int fields in
+     *           the CSV column order (outcome as its OUTCOME_ value)
+     */
+    public void exportBinary(File file) throws IOException {
+        Snapshot snapshot = snapshot();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size);
+            out.writeInt(FIELDS);
+            for (int i = 0; i < snapshot.size; i++) {
+                out.writeLong(snapshot.frameTimestamps[i]);
+                out.writeLong(snapshot.recordedAt[i]);
+                int offset = i * FIELDS;
+                for (int field = 0; field < FIELDS; field++) {
+                    out.writeInt(snapshot.values[offset + field]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the held frames in chronological order, so exporting does not hold the lock during I/O
+     */
+    private synchronized Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(size());
+        int first = recorded > capacity ? next : 0;
+        for (int i = 0; i < snapshot.size; i++) {
+            int row = (first + i) % capacity;
+            snapshot.frameTimestamps[i] = frameTimestamps[row];
+            snapshot.recordedAt[i] = recordedAt[row];
+            System.arraycopy(values, row * FIELDS, snapshot.values, i * FIELDS, FIELDS);
+        }
+        return snapshot;
+    }
+
+    private static final class Snapshot {
+        final int size;
+        final long[] frameTimestamps;
+        final long[] recordedAt;
+        final int[] values;
+
+        Snapshot(int size) {
+            this.size = size;
+            frameTimestamps = new long[size];
+            recordedAt = new long[size];
+            values = new int[size * FIELDS];
+        }
+    }
+}
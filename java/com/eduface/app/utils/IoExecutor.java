@@ -0,0 +1,37 @@
+package com.eduface.app.utils;
+
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide background thread for file I/O (template file syncs, trace exports), so
+ * neither the main thread nor the analysis thread waits on the disk. Tasks run one at a
+ * time in submission order; the thread stops when idle.
+ */
+public final class IoExecutor {
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(1, 1,
+            30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "EduFace-IO");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private IoExecutor() {
+    }
+
+    public static Executor get() {
+        return EXECUTOR;
+    }
+}
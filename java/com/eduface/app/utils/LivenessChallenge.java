@@ -0,0 +1,116 @@
+package com.eduface.app.utils;
+
+import androidx.annotation.Nullable;
+
+import com.google.mlkit.vision.face.Face;
+
+/**
+ * Short liveness challenge evaluated over consecutive frames of the same tracked face:
+ * the student must blink (eyes open, closed, open again) and/or turn their head.
+ * A printed photo or a still screen produces neither signal.
+ * Needs faces from a detector with classification enabled (eye open probabilities).
+ */
+public class LivenessChallenge {
+
+    public static final int RESULT_PENDING = 0;
+    public static final int RESULT_PASSED = 1;
+    public static final int RESULT_FAILED = 2;
+
+    public static final long DEFAULT_WINDOW_MILLIS = 2000;
+
+    private static final float EYE_OPEN = 0.7f;
+    private static final float EYE_CLOSED = 0.3f;
+    private static final float HEAD_TURN_DEGREES = 15f;
+
+    private final long windowNanos;
+    private final boolean requireBlink;
+    private final boolean requireHeadTurn;
+
+    private long startNanos = Long.MIN_VALUE;
+    private Integer trackingId;
+    private Face lastFace;
+
+    // Blink progress: 0 = waiting for open eyes, 1 = waiting for closed, 2 = waiting for open again
+    private int blinkStage;
+    private boolean blinked;
+    private float baselineYaw;
+    private boolean turned;
+
+    /**
+     * Challenge requiring both a blink and a head turn within the default window
+     */
+    public LivenessChallenge() {
+        this(DEFAULT_WINDOW_MILLIS, true, true);
+    }
+
+    public LivenessChallenge(long windowMillis, boolean requireBlink, boolean requireHeadTurn) {
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.requireBlink = requireBlink;
+        this.requireHeadTurn = requireHeadTurn;
+    }
+
+    /**
+     * Feed one analyzed frame
+     *
+     * @param timestampNanos Camera frame timestamp
+     * @param face Primary face in the frame, or null if none
+     * @return RESULT_PENDING, RESULT_PASSED or RESULT_FAILED (window elapsed)
+     */
+    public synchronized int onFrame(long timestampNanos, @Nullable Face face) {
+        if (startNanos == Long.MIN_VALUE) {
+            startNanos = timestampNanos;
+        }
+
+        if (face != null) {
+            Integer faceTrackingId = face.getTrackingId();
+            if (faceTrackingId == null || !faceTrackingId.equals(trackingId)) {
+                // A different (or untracked) face: evidence must come from one person
+                restart(face);
+            } else {
+                observe(face);
+            }
+            lastFace = face;
+        }
+
+        if ((blinked || !requireBlink) && (turned || !requireHeadTurn)) {
+            return RESULT_PASSED;
+        }
+        return timestampNanos - startNanos > windowNanos ? RESULT_FAILED : RESULT_PENDING;
+    }
+
+    /**
+     * Last face fed to the challenge (the one that passed, once it has)
+     */
+    @Nullable
+    public synchronized Face getLastFace() {
+        return lastFace;
+    }
+
+    private void restart(Face face) {
+        trackingId = face.getTrackingId();
+        blinkStage = 0;
+        blinked = false;
+        turned = false;
+        baselineYaw = face.getHeadEulerAngleY();
+        observe(face);
+    }
+
+    private void observe(Face face) {
+        Float left = face.getLeftEyeOpenProbability();
+        Float right = face.getRightEyeOpenProbability();
+        if (left != null && right != null) {
+            float eyes = Math.max(left, right);
+            if (blinkStage == 0 && eyes >= EYE_OPEN) {
+                blinkStage = 1;
+            } else if (blinkStage == 1 && eyes <= EYE_CLOSED) {
+                blinkStage = 2;
+            } else if (blinkStage == 2 && eyes >= EYE_OPEN) {
+                blinked = true;
+            }
+        }
+
+        if (Math.abs(face.getHeadEulerAngleY() - baselineYaw) >= HEAD_TURN_DEGREES) {
+            turned = true;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.eduface.app.utils;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+
+import java.util.List;
+
+/**
+ * FaceDetectorEngine backed by a shared ML Kit detector (see SharedFaceDetectors).
+ * The detector is acquired on first use and released by close(). A frame that arrives after
+ * close() gets a failed task, so the caller's failure path still closes it.
+ */
+public class MlKitFaceDetectorEngine implements FaceDetectorEngine {
+
+    private final FaceDetectorOptions options;
+    private FaceDetector detector;
+    private boolean closed;
+
+    public MlKitFaceDetectorEngine(FaceDetectorOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Engine for the fast tier: runs on every analyzed frame, with tracking
+     */
+    public static MlKitFaceDetectorEngine fast(FramePipelineConfig config) {
+        return new MlKitFaceDetectorEngine(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .setMinFaceSize(config.getMinFaceSize()) // Minimum face size as a fraction of the image
+                .enableTracking()
+                .build());
+    }
+
+    /**
+     * Engine for the accurate tier: confirms attendance candidates
+     */
+    public static MlKitFaceDetectorEngine accurate(FramePipelineConfig config) {
+        return new MlKitFaceDetectorEngine(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .setMinFaceSize(config.getMinFaceSize())
+                .build());
+    }
+
+    @Override
+    public Task<List<Face>> process(InputImage image) {
+        FaceDetector current = getDetector();
+        if (current == null) {
+            return Tasks.forException(new IllegalStateException("Detector engine is closed"));
+        }
+        return current.process(image);
+    }
+
+    @Override
+    public void prewarm() {
+        FaceDetector current = getDetector();
+        if (current != null) {
+            SharedFaceDetectors.warmUp(current);
+        }
+    }
+
+    /**
+     * Shared detector, acquired on first use, or null once the engine is closed
+     */
+    private synchronized FaceDetector getDetector() {
+        if (closed) {
+            return null;
+        }
+        if (detector == null) {
+            detector = SharedFaceDetectors.acquire(options);
+        }
+        return detector;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (detector != null) {
+            SharedFaceDetectors.release(detector);
+            detector = null;
+        }
+    }
+}
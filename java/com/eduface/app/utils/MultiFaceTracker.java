@@ -0,0 +1,164 @@
+package com.eduface.app.utils;
+
+import android.graphics.Rect;
+
+import com.google.mlkit.vision.face.Face;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks every face in the frame by ML Kit tracking ID and reports each face
+ * once as an attendance candidate after it has stayed stable for a few frames.
+ * Used by the classroom (multi-face) mode of FaceDetectionHelper.
+ */
+public class MultiFaceTracker {
+
+    private static final int DEFAULT_STABLE_FRAMES = 3;
+    private static final int DEFAULT_MAX_MISSED_FRAMES = 10;
+    private static final float DEFAULT_MOTION_THRESHOLD = 0.15f;
+
+    private final int stableFramesRequired;
+    private final int maxMissedFrames;
+    private final float motionThreshold;
+
+    private final Map<Integer, Track> tracks = new HashMap<>();
+    private long frameIndex;
+    private int pendingFaces;
+
+    /**
+     * State for one tracked face
+     */
+    private static class Track {
+        int stableFrames;
+        long lastSeenFrame;
+        boolean emitted;
+        int centerX, centerY;
+    }
+
+    public MultiFaceTracker() {
+        this(DEFAULT_STABLE_FRAMES, DEFAULT_MAX_MISSED_FRAMES, DEFAULT_MOTION_THRESHOLD);
+    }
+
+    /**
+     * @param stableFramesRequired Consecutive stable frames before a face becomes a candidate
+     * @param maxMissedFrames Frames a face may be missing before its track is forgotten
+     * @param motionThreshold Allowed movement between frames, as a fraction of the box width
+     */
+    public MultiFaceTracker(int stableFramesRequired, int maxMissedFrames, float motionThreshold) {
+        this.stableFramesRequired = stableFramesRequired;
+        this.maxMissedFrames = maxMissedFrames;
+        this.motionThreshold = motionThreshold;
+    }
+
+    /**
+     * Update tracks with the faces of one frame.
+     *
+     * @return Faces that became attendance candidates in this frame (each tracking ID only once)
+     */
+    public List<Face> update(List<Face> faces) {
+        List<Face> candidates = new ArrayList<>();
+        update(faces, candidates);
+        return candidates;
+    }
+
+    /**
+     * Update tracks with the faces of one frame, adding new candidates to a caller-owned list
+     * (so the per-frame path does not allocate).
+     *
+     * @param candidates Cleared, then filled with faces that became attendance candidates
+     */
+    public synchronized void update(List<Face> faces, List<Face> candidates) {
+        frameIndex++;
+        candidates.clear();
+        pendingFaces = 0;
+        int seenTracks = 0;
+
+        // Indexed loop: no iterator per frame
+        for (int i = 0; i < faces.size(); i++) {
+            Face face = faces.get(i);
+            Integer trackingId = face.getTrackingId();
+            if (trackingId == null) {
+                // Without a tracking ID the face cannot be followed across frames
+                continue;
+            }
+
+            Rect box = face.getBoundingBox();
+            int width = Math.max(1, box.width());
+            Track track = tracks.get(trackingId);
+            if (track == null) {
+                track = new Track();
+                tracks.put(trackingId, track);
+            } else if (track.lastSeenFrame == frameIndex - 1
+                    && Math.abs(box.centerX() - track.centerX) <= motionThreshold * width
+                    && Math.abs(box.centerY() - track.centerY) <= motionThreshold * width) {
+                track.stableFrames++;
+            } else {
+                track.stableFrames = 0;
+            }
+
+            if (track.lastSeenFrame != frameIndex) {
+                seenTracks++;
+            }
+            track.lastSeenFrame = frameIndex;
+            track.centerX = box.centerX();
+            track.centerY = box.centerY();
+
+            if (!track.emitted && track.stableFrames + 1 >= stableFramesRequired) {
+                track.emitted = true;
+                candidates.add(face);
+            } else if (!track.emitted) {
+                pendingFaces++;
+            }
+        }
+
+        // Forget faces that left the frame (only look when some track was not seen,
+        // so frames with a stable set of faces do not create an iterator)
+        if (tracks.size() > seenTracks) {
+            Iterator<Track> iterator = tracks.values().iterator();
+            while (iterator.hasNext()) {
+                if (frameIndex - iterator.next().lastSeenFrame > maxMissedFrames) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether any visible face has not yet been reported as a candidate
+     */
+    public synchronized boolean hasPendingFaces() {
+        return pendingFaces > 0;
+    }
+
+    /**
+     * Report a candidate again once it has been stable for another few frames
+     * (e.g. when the frame it was reported in was not good enough to use)
+     */
+    public synchronized void retry(int trackingId) {
+        Track track = tracks.get(trackingId);
+        if (track != null && track.emitted) {
+            track.emitted = false;
+            track.stableFrames = 0;
+            pendingFaces++;
+        }
+    }
+
+    /**
+     * Number of faces currently tracked
+     */
+    public synchronized int getTrackedCount() {
+        return tracks.size();
+    }
+
+    /**
+     * Forget all tracks so every face is reported again
+     */
+    public synchronized void reset() {
+        tracks.clear();
+        pendingFaces = 0;
+    }
+}
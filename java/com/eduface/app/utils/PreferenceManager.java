@@ -2,6 +2,8 @@ package com.eduface.app.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Base64;
+import android.util.Size;
 
 /**
  * Utility class for managing user preferences and session data
@@ -16,6 +18,13 @@ public class PreferenceManager {
     private static final String KEY_USER_ROLE = "user_role";
     // Added key for total meetings attended
     private static final String KEY_TOTAL_MEETINGS_ATTENDED = "total_meetings_attended";
+    // Device class profile for the face detection frame pipeline
+    private static final String KEY_FRAME_PIPELINE_PROFILE = "frame_pipeline_profile";
+    private static final String KEY_LIVENESS_CHECK_ENABLED = "liveness_check_enabled";
+    private static final String KEY_ANALYSIS_RESOLUTION = "analysis_resolution";
+    private static final String KEY_ANALYSIS_ROI_PERCENT = "analysis_roi_percent";
+    private static final String KEY_EMBEDDER_DELEGATE_PREFIX = "embedder_delegate_";
+    private static final String KEY_PENDING_FACE_TEMPLATE_PREFIX = "pending_face_template_";
 
     private SharedPreferences sharedPreferences;
 
@@ -179,4 +188,100 @@ public class PreferenceManager {
     public void resetTotalMeetingsAttended() {
         saveInt(KEY_TOTAL_MEETINGS_ATTENDED, 0);
     }
+
+    // --- Methods for Face Detection Frame Pipeline ---
+
+    /**
+     * Get the frame pipeline profile (see FramePipelineConfig.PROFILE_*).
+     * Defaults to the mid range profile.
+     */
+    public String getFramePipelineProfile() {
+        return sharedPreferences.getString(KEY_FRAME_PIPELINE_PROFILE, FramePipelineConfig.PROFILE_MID_RANGE);
+    }
+
+    /**
+     * Set the frame pipeline profile for this device
+     */
+    public void setFramePipelineProfile(String profile) {
+        saveString(KEY_FRAME_PIPELINE_PROFILE, profile);
+    }
+
+    /**
+     * Whether attendance requires a liveness challenge (blink and head turn). Off by default.
+     */
+    public boolean isLivenessCheckEnabled() {
+        return getBoolean(KEY_LIVENESS_CHECK_ENABLED, false);
+    }
+
+    public void setLivenessCheckEnabled(boolean enabled) {
+        saveBoolean(KEY_LIVENESS_CHECK_ENABLED, enabled);
+    }
+
+    /**
+     * Analysis resolution chosen by device profiling, or null if the device has not been profiled
+     */
+    public Size getAnalysisResolution() {
+        String value = getString(KEY_ANALYSIS_RESOLUTION, null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Size.parseSize(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public void setAnalysisResolution(Size resolution) {
+        saveString(KEY_ANALYSIS_RESOLUTION, resolution.toString());
+    }
+
+    /**
+     * Centre region of interest analyzed for faces, as a fraction of the frame (1 = whole frame)
+     */
+    public float getAnalysisRoiFraction() {
+        return getInt(KEY_ANALYSIS_ROI_PERCENT, 100) / 100f;
+    }
+
+    public void setAnalysisRoiFraction(float fraction) {
+        saveInt(KEY_ANALYSIS_ROI_PERCENT, Math.round(fraction * 100));
+    }
+
+    /**
+     * Embedding model backend chosen by benchmarking on a device model (see
+     * EmbedderDelegateSelector), or null if that model has not been benchmarked
+     */
+    public String getEmbedderDelegate(String deviceModel) {
+        return getString(KEY_EMBEDDER_DELEGATE_PREFIX + deviceModel, null);
+    }
+
+    public void setEmbedderDelegate(String deviceModel, String delegate) {
+        saveString(KEY_EMBEDDER_DELEGATE_PREFIX + deviceModel, delegate);
+    }
+
+    /**
+     * Face template moving average not yet written back (see TemplateRefresher), or null
+     */
+    public byte[] getPendingFaceTemplate(String userId) {
+        String value = getString(KEY_PENDING_FACE_TEMPLATE_PREFIX + userId, null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Base64.decode(value, Base64.NO_WRAP);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Store (or clear, with null) the pending face template of a user
+     */
+    public void setPendingFaceTemplate(String userId, byte[] template) {
+        if (template == null) {
+            remove(KEY_PENDING_FACE_TEMPLATE_PREFIX + userId);
+        } else {
+            saveString(KEY_PENDING_FACE_TEMPLATE_PREFIX + userId, Base64.encodeToString(template, Base64.NO_WRAP));
+        }
+    }
 }
@@ -0,0 +1,187 @@
+package com.eduface.app.utils;
+
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * One-off device profiling that picks the analysis resolution for this device.
+ * Runs as its own step once attendance has been marked in a session on an unprofiled device,
+ * so the capture itself is never interrupted: the real pipeline is run at each candidate
+ * resolution in turn, the camera being rebound with an analysis stream at the candidate
+ * (onRebind), the live FaceDetectionHelper analyzing a fixed number of frames, and the stage
+ * recording how often a face was found and the helper's own convert + detect latency. No
+ * frames are copied and no extra detector runs, so the timings are the pipeline's.
+ *
+ * Once every candidate has been measured, the cheapest resolution that finds the face nearly
+ * as often as the best one, within the latency budget, is reported to the listener. If a face
+ * was hardly ever in view no resolution is chosen, so the next session profiles again.
+ */
+public class ResolutionProfiler {
+
+    private static final String TAG = "ResolutionProfiler";
+
+    // Candidates from cheapest to most expensive (4:3, like the default analysis stream)
+    public static final Size[] CANDIDATES = {
+            new Size(320, 240), new Size(480, 360), new Size(640, 480), new Size(960, 720)
+    };
+
+    // Analyzed frames measured per candidate (the first few after a rebind are ignored)
+    private static final int WARMUP_FRAMES = 3;
+    private static final int STAGE_FRAMES = 20;
+    // The best candidate must have found a face in at least this many frames for a result
+    private static final int MIN_FACE_FRAMES = 10;
+
+    // A resolution qualifies if it finds the face this often relative to the best candidate...
+    private static final float TARGET_DETECTION_RATE = 0.9f;
+
+    /**
+     * Interface for profiling callbacks (called on the analysis thread)
+     */
+    public interface Listener {
+        /**
+         * Rebind the analysis stream at this resolution and call attach() with the new helper
+         */
+        void onRebind(Size resolution);
+
+        /**
+         * Every candidate has been measured; the camera is no longer needed for profiling
+         *
+         * @param resolution Resolution to persist, or null if too few faces were in view
+         */
+        void onFinished(@Nullable Size resolution);
+    }
+
+    private final Listener listener;
+    private final long latencyBudgetNanos;
+
+    private final double[] latencyMillis = new double[CANDIDATES.length];
+    private final int[] faceFrames = new int[CANDIDATES.length];
+    private int stage = CANDIDATES.length - 1; // Measured from the largest down
+    private int stageFrames;
+    private FrameStats stageStats;
+    private boolean done;
+
+    /**
+     * @param targetFps ...and can be analyzed at least this fast
+     */
+    public ResolutionProfiler(float targetFps, Listener listener) {
+        this.listener = listener;
+        this.latencyBudgetNanos = (long) (1_000_000_000L / targetFps);
+    }
+
+    /**
+     * Resolution to bind the analysis stream at for the current stage
+     */
+    public synchronized Size getCurrentResolution() {
+        return CANDIDATES[stage];
+    }
+
+    /**
+     * Start measuring the current stage with a helper freshly bound at getCurrentResolution()
+     */
+    public synchronized void attach(FaceDetectionHelper helper) {
+        stageStats = helper.getFrameStats();
+        stageFrames = 0;
+        faceFrames[stage] = 0;
+    }
+
+    /**
+     * Record the outcome of one analyzed frame
+     *
+     * @param faceFound Whether the detector found a face (usable or not)
+     */
+    public void onFrameAnalyzed(boolean faceFound) {
+        Size next;
+        synchronized (this) {
+            if (done || stageStats == null) {
+                return;
+            }
+            stageFrames++;
+            if (stageFrames <= WARMUP_FRAMES) {
+                if (stageFrames == WARMUP_FRAMES) {
+                    // Leave the stream's start-up frames out of the timings
+                    stageStats.reset();
+                }
+                return;
+            }
+            if (faceFound) {
+                faceFrames[stage]++;
+            }
+            if (stageFrames < WARMUP_FRAMES + STAGE_FRAMES) {
+                return;
+            }
+
+            // Stage complete: the helper's own timings for this stream
+            latencyMillis[stage] = stageStats.getAverageMillis(FrameStats.STAGE_CONVERT)
+                    + stageStats.getAverageMillis(FrameStats.STAGE_DETECT);
+            stageStats = null;
+            if (stage == 0) {
+                finish();
+                return;
+            }
+            stage--;
+            next = CANDIDATES[stage];
+        }
+        listener.onRebind(next);
+    }
+
+    /**
+     * Stop profiling without a result (e.g. the session ended early)
+     */
+    public synchronized void cancel() {
+        done = true;
+        stageStats = null;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Pick and report the result (called with the lock held)
+     */
+    private void finish() {
+        done = true;
+        int bestFaces = 0;
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            Log.d(TAG, String.format(Locale.US, "%s: avg=%.1fms, face frames=%d/%d",
+                    CANDIDATES[i], latencyMillis[i], faceFrames[i], STAGE_FRAMES));
+            bestFaces = Math.max(bestFaces, faceFrames[i]);
+        }
+        if (bestFaces < MIN_FACE_FRAMES) {
+            // No face in view for long enough: profile again next session
+            Log.d(TAG, "Too few faces in view, resolution not chosen");
+            listener.onFinished(null);
+            return;
+        }
+
+        Size chosen = choose(bestFaces);
+        Log.d(TAG, "Chosen analysis resolution: " + chosen);
+        listener.onFinished(chosen);
+    }
+
+    /**
+     * Cheapest candidate meeting both the detection rate and the latency budget; failing that,
+     * the best detection rate within the budget; failing that, the cheapest candidate
+     */
+    private Size choose(int bestFaces) {
+        double budgetMillis = latencyBudgetNanos / 1_000_000.0;
+        int bestWithinBudget = -1;
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            if (latencyMillis[i] > budgetMillis) {
+                continue;
+            }
+            if (faceFrames[i] >= TARGET_DETECTION_RATE * bestFaces) {
+                return CANDIDATES[i];
+            }
+            if (bestWithinBudget < 0 || faceFrames[i] > faceFrames[bestWithinBudget]) {
+                bestWithinBudget = i;
+            }
+        }
+        return CANDIDATES[Math.max(0, bestWithinBudget)];
+    }
+}
@@ -0,0 +1,107 @@
+package com.eduface.app.utils;
+
+import android.graphics.Point;
+
+import androidx.camera.core.ImageProxy;
+
+import com.google.mlkit.vision.common.InputImage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies the centre region of interest of a YUV_420_888 camera frame into an NV21 buffer,
+ * so the detector only has to look at the part of the frame where a student's face can be.
+ * Face boxes detected on the crop are relative to it; add the upright offset to get
+ * frame coordinates.
+ */
+public final class RoiFrameCropper {
+
+    private RoiFrameCropper() {
+    }
+
+    /**
+     * Size in bytes of the NV21 buffer needed for a frame of this size
+     */
+    public static int bufferSize(int width, int height, float fraction) {
+        return cropWidth(width, fraction) * cropHeight(height, fraction) * 3 / 2;
+    }
+
+    /**
+     * Crop the centre of a frame
+     *
+     * @param fraction Side length of the region as a fraction of the frame (0 to 1)
+     * @param nv21 Buffer of at least bufferSize() bytes; must stay untouched until detection completes
+     * @param uprightOffset Receives the top-left corner of the region in upright (rotated) coordinates
+     * @return Image for ML Kit backed by the buffer
+     */
+    public static InputImage crop(ImageProxy image, float fraction, byte[] nv21, Point uprightOffset) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int rotation = image.getImageInfo().getRotationDegrees();
+
+        // Even sizes and offsets keep the 2x2 chroma subsampling aligned
+        int cropWidth = cropWidth(width, fraction);
+        int cropHeight = cropHeight(height, fraction);
+        int cropX = ((width - cropWidth) / 2) & ~1;
+        int cropY = ((height - cropHeight) / 2) & ~1;
+
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        ByteBuffer yPlane = planes[0].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        int yPixelStride = planes[0].getPixelStride();
+
+        int out = 0;
+        for (int row = 0; row < cropHeight; row++) {
+            int rowStart = (cropY + row) * yRowStride + cropX * yPixelStride;
+            if (yPixelStride == 1) {
+                yPlane.position(rowStart);
+                yPlane.get(nv21, out, cropWidth);
+                out += cropWidth;
+            } else {
+                for (int col = 0; col < cropWidth; col++) {
+                    nv21[out++] = yPlane.get(rowStart + col * yPixelStride);
+                }
+            }
+        }
+        yPlane.rewind();
+
+        ByteBuffer uPlane = planes[1].getBuffer();
+        ByteBuffer vPlane = planes[2].getBuffer();
+        int uvRowStride = planes[1].getRowStride();
+        int uvPixelStride = planes[1].getPixelStride();
+        for (int row = 0; row < cropHeight / 2; row++) {
+            int rowStart = (cropY / 2 + row) * uvRowStride + (cropX / 2) * uvPixelStride;
+            for (int col = 0; col < cropWidth / 2; col++) {
+                int index = rowStart + col * uvPixelStride;
+                nv21[out++] = vPlane.get(index);
+                nv21[out++] = uPlane.get(index);
+            }
+        }
+
+        // Where the crop lands once the frame is rotated upright
+        switch (rotation) {
+            case 90:
+                uprightOffset.set(height - cropY - cropHeight, cropX);
+                break;
+            case 180:
+                uprightOffset.set(width - cropX - cropWidth, height - cropY - cropHeight);
+                break;
+            case 270:
+                uprightOffset.set(cropY, width - cropX - cropWidth);
+                break;
+            default:
+                uprightOffset.set(cropX, cropY);
+                break;
+        }
+
+        return InputImage.fromByteArray(nv21, cropWidth, cropHeight, rotation, InputImage.IMAGE_FORMAT_NV21);
+    }
+
+    private static int cropWidth(int width, float fraction) {
+        return Math.max(2, (int) (width * fraction)) & ~1;
+    }
+
+    private static int cropHeight(int height, float fraction) {
+        return Math.max(2, (int) (height * fraction)) & ~1;
+    }
+}
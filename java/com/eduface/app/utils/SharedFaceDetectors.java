@@ -0,0 +1,126 @@
+package com.eduface.app.utils;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-scoped, reference-counted ML Kit face detectors, one per set of options.
+ * Screens acquire a detector instead of creating their own, so a model loaded (and warmed
+ * up) by one activity is still loaded when the next one needs it. A detector is closed
+ * only after it has been unused for CLOSE_DELAY_MILLIS, which covers the hand-over from
+ * the dashboard to the meeting screen.
+ */
+public final class SharedFaceDetectors {
+
+    private static final String TAG = "SharedFaceDetectors";
+    private static final long CLOSE_DELAY_MILLIS = 60_000;
+    private static final int WARM_UP_IMAGE_SIZE = 240;
+
+    private static final Map<FaceDetectorOptions, Entry> entries = new HashMap<>();
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * One shared detector
+     */
+    private static class Entry {
+        final FaceDetectorOptions options;
+        final FaceDetector detector;
+        int references;
+        boolean warm;
+        Runnable pendingClose;
+
+        Entry(FaceDetectorOptions options) {
+            this.options = options;
+            this.detector = FaceDetection.getClient(options);
+        }
+    }
+
+    private SharedFaceDetectors() {
+    }
+
+    /**
+     * Get the shared detector for these options (created on first use).
+     * Every acquire must be matched by a release.
+     */
+    public static synchronized FaceDetector acquire(FaceDetectorOptions options) {
+        Entry entry = entries.get(options);
+        if (entry == null) {
+            entry = new Entry(options);
+            entries.put(options, entry);
+        }
+        if (entry.pendingClose != null) {
+            handler.removeCallbacks(entry.pendingClose);
+            entry.pendingClose = null;
+        }
+        entry.references++;
+        return entry.detector;
+    }
+
+    /**
+     * Give back a detector obtained from acquire()
+     */
+    public static synchronized void release(FaceDetector detector) {
+        Entry entry = find(detector);
+        if (entry == null || entry.references == 0) {
+            return;
+        }
+        entry.references--;
+        if (entry.references == 0) {
+            final Entry unused = entry;
+            entry.pendingClose = () -> closeIfUnused(unused);
+            handler.postDelayed(entry.pendingClose, CLOSE_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Load the detector's model ahead of time by running it once on a blank image,
+     * off the main thread. Does nothing if the detector is already warm.
+     * The caller must hold a reference until the warm-up completes.
+     */
+    public static void warmUp(FaceDetector detector) {
+        synchronized (SharedFaceDetectors.class) {
+            Entry entry = find(detector);
+            if (entry == null || entry.warm) {
+                return;
+            }
+            entry.warm = true;
+        }
+
+        // Optional: if the thread is too busy, the first real frame loads the model instead
+        AnalysisExecutor.getInstance().offer(() -> {
+            Bitmap blank = Bitmap.createBitmap(WARM_UP_IMAGE_SIZE, WARM_UP_IMAGE_SIZE, Bitmap.Config.ARGB_8888);
+            long start = SystemClock.elapsedRealtime();
+            detector.process(InputImage.fromBitmap(blank, 0))
+                    .addOnCompleteListener(task -> Log.d(TAG, "Detector warmed up in "
+                            + (SystemClock.elapsedRealtime() - start) + "ms"));
+        });
+    }
+
+    private static Entry find(FaceDetector detector) {
+        for (Entry entry : entries.values()) {
+            if (entry.detector == detector) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static synchronized void closeIfUnused(Entry entry) {
+        entry.pendingClose = null;
+        if (entry.references == 0 && entries.get(entry.options) == entry) {
+            entries.remove(entry.options);
+            entry.detector.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.eduface.app.adapters;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.eduface.app.models.AttendanceRow;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Which attendance changes the adapter's diff treats as a new item or a rebind
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AttendanceAdapterTest {
+
+    private static final long JOINED_AT = 1_700_000_000_000L;
+
+    @Test
+    public void itemsAreMatchedByDocumentId() {
+        assertTrue(AttendanceAdapter.DIFF_CALLBACK.areItemsTheSame(row("a1", true), row("a1", false)));
+        assertFalse(AttendanceAdapter.DIFF_CALLBACK.areItemsTheSame(row("a1", true), row("a2", true)));
+    }
+
+    @Test
+    public void reloadedRowIsNotRebound() {
+        // Decoded again from a fresh page: a different instance with the same values
+        assertTrue(AttendanceAdapter.DIFF_CALLBACK.areContentsTheSame(row("a1", true), row("a1", true)));
+    }
+
+    @Test
+    public void changedStatusTriggersRebind() {
+        assertFalse(AttendanceAdapter.DIFF_CALLBACK.areContentsTheSame(row("a1", true), row("a1", false)));
+    }
+
+    private static AttendanceRowViewModel row(String id, boolean present) {
+        return AttendanceRowViewModel.from(new AttendanceRow(id, "meeting", "user", "student@school.edu",
+                "Student", "Algebra II", JOINED_AT, JOINED_AT + 30 * 60_000L, present));
+    }
+}
@@ -0,0 +1,183 @@
+package com.eduface.app.adapters;
+
+import android.view.View;
+
+import com.eduface.app.R;
+import com.eduface.app.models.AttendanceRow;
+import com.eduface.app.utils.DateFormatCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Micro-benchmark of binding attendance rows.
+ * Compares the old bind path (status branch, join time formatting and duration computed
+ * from an AttendanceRow on every bind) with binding a precomputed AttendanceRowViewModel,
+ * over a simulated scroll up and down a 500-row meeting roster. Row views are stood in for
+ * by plain fields, so only the per-bind work the view model removes is measured; the one-off
+ * cost of building the view models (done off the main thread) is reported separately.
+ * Uses warmup and measurement rounds in the style of JMH. Only Android constants are used,
+ * so run main() from the unit test classpath. It is not part of the test suite.
+ */
+public class AttendanceBindBenchmark {
+
+    private static final int ROSTER_SIZE = 500;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURE_ROUNDS = 10;
+    // Each round scrolls down the list and back up, binding every row twice
+    private static final int BINDS_PER_ROW = 2;
+
+    // Keeps results alive so the JIT cannot drop the loops
+    private static volatile int sink;
+
+    /**
+     * Stand-in for the views of one row
+     */
+    private static final class RowViews {
+        String meetingTitle;
+        String studentName;
+        String studentEmail;
+        String status;
+        int statusBackground;
+        String joinTime;
+        int joinTimeVisibility;
+        String duration;
+        int durationVisibility;
+
+        int checksum() {
+            return statusBackground + joinTimeVisibility + durationVisibility
+                    + (joinTime != null ? joinTime.length() : 0)
+                    + (duration != null ? duration.length() : 0);
+        }
+    }
+
+    private AttendanceBindBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        System.out.println(run());
+    }
+
+    /**
+     * Run the benchmark and return a printable report (nanoseconds per bind)
+     */
+    public static String run() {
+        List<AttendanceRow> rows = roster(new Random(42));
+        DateFormatCache joinTimeFormat = DateFormatCache.forPattern(DateFormatCache.PATTERN_ATTENDANCE_TIME);
+        RowViews views = new RowViews();
+
+        double oldNanos = measure(() -> {
+            for (int pass = 0; pass < BINDS_PER_ROW; pass++) {
+                for (AttendanceRow row : rows) {
+                    bindRow(row, joinTimeFormat, views);
+                    sink += views.checksum();
+                }
+            }
+        });
+
+        List<AttendanceRowViewModel> viewModels = new ArrayList<>(ROSTER_SIZE);
+        long precomputeStart = System.nanoTime();
+        for (AttendanceRow row : rows) {
+            viewModels.add(AttendanceRowViewModel.from(row));
+        }
+        double precomputeNanos = (System.nanoTime() - precomputeStart) / (double) ROSTER_SIZE;
+
+        double viewModelNanos = measure(() -> {
+            for (int pass = 0; pass < BINDS_PER_ROW; pass++) {
+                for (AttendanceRowViewModel viewModel : viewModels) {
+                    bindViewModel(viewModel, views);
+                    sink += views.checksum();
+                }
+            }
+        });
+
+        return String.format(Locale.US,
+                "rows  old bind(ns)  view model bind(ns)  speedup  precompute(ns/row, once)\n"
+                        + "%4d  %12.0f  %19.0f  %6.1fx  %24.0f\n",
+                ROSTER_SIZE, oldNanos, viewModelNanos, oldNanos / viewModelNanos, precomputeNanos);
+    }
+
+    /**
+     * The bind path before view models: everything is derived from the row on each bind
+     */
+    private static void bindRow(AttendanceRow row, DateFormatCache joinTimeFormat, RowViews views) {
+        views.meetingTitle = row.getMeetingTitle();
+        views.studentName = row.getStudentName();
+        views.studentEmail = row.getStudentEmail();
+        if (row.isPresent()) {
+            views.status = "Present";
+            views.statusBackground = R.drawable.status_present_background;
+        } else {
+            views.status = "Absent";
+            views.statusBackground = R.drawable.status_absent_background;
+        }
+
+        long joinedAt = row.getJoinedAtMillis();
+        if (joinedAt != AttendanceRow.NO_TIME) {
+            views.joinTime = joinTimeFormat.format(joinedAt);
+            views.joinTimeVisibility = View.VISIBLE;
+        } else {
+            views.joinTime = "N/A";
+            views.joinTimeVisibility = View.GONE;
+        }
+
+        String duration = row.getFormattedDuration();
+        if (duration != null && !duration.isEmpty()) {
+            views.duration = duration;
+            views.durationVisibility = View.VISIBLE;
+        } else {
+            views.duration = "N/A";
+            views.durationVisibility = View.GONE;
+        }
+    }
+
+    /**
+     * The current bind path (see AttendanceAdapter.onBindViewHolder)
+     */
+    private static void bindViewModel(AttendanceRowViewModel viewModel, RowViews views) {
+        views.meetingTitle = viewModel.getMeetingTitle();
+        views.studentName = viewModel.getStudentName();
+        views.studentEmail = viewModel.getStudentEmail();
+        views.status = viewModel.getStatusText();
+        views.statusBackground = viewModel.getStatusBackground();
+        String joinTime = viewModel.getJoinTime();
+        views.joinTime = joinTime;
+        views.joinTimeVisibility = joinTime != null ? View.VISIBLE : View.GONE;
+        String duration = viewModel.getDuration();
+        views.duration = duration;
+        views.durationVisibility = duration != null ? View.VISIBLE : View.GONE;
+    }
+
+    /**
+     * One meeting's roster: most students join within a few minutes, some are absent
+     */
+    private static List<AttendanceRow> roster(Random random) {
+        long meetingStart = 1_700_000_000_000L;
+        List<AttendanceRow> rows = new ArrayList<>(ROSTER_SIZE);
+        for (int i = 0; i < ROSTER_SIZE; i++) {
+            boolean present = random.nextInt(10) != 0;
+            long joinedAt = present ? meetingStart + random.nextInt(300_000) : AttendanceRow.NO_TIME;
+            long leftAt = present ? joinedAt + 2_400_000L + random.nextInt(1_200_000) : AttendanceRow.NO_TIME;
+            rows.add(new AttendanceRow("attendance" + i, "meeting", "user" + i, "student" + i + "@school.edu",
+                    "Student " + i, "Algebra II", joinedAt, leftAt, present));
+        }
+        return rows;
+    }
+
+    /**
+     * Average nanoseconds per bind over the measurement rounds
+     */
+    private static double measure(Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed / (double) (MEASURE_ROUNDS * BINDS_PER_ROW * ROSTER_SIZE);
+    }
+}
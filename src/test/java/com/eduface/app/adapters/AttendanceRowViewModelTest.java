@@ -0,0 +1,56 @@
+package com.eduface.app.adapters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import com.eduface.app.R;
+import com.eduface.app.models.AttendanceRow;
+
+import org.junit.Test;
+
+/**
+ * Display values resolved from decoded attendance rows
+ */
+public class AttendanceRowViewModelTest {
+
+    private static final long JOINED_AT = 1_700_000_000_000L;
+
+    @Test
+    public void presentRowShowsJoinTimeAndDuration() {
+        AttendanceRowViewModel viewModel = AttendanceRowViewModel.from(
+                row("a1", JOINED_AT, JOINED_AT + 75 * 60_000L, true));
+
+        assertEquals(AttendanceRowViewModel.STATUS_PRESENT, viewModel.getStatus());
+        assertEquals("Present", viewModel.getStatusText());
+        assertEquals(R.drawable.status_present_background, viewModel.getStatusBackground());
+        assertEquals("1 hr 15 min", viewModel.getDuration());
+        assertEquals("a1", viewModel.getId());
+    }
+
+    @Test
+    public void absentRowHasNoJoinTime() {
+        AttendanceRowViewModel viewModel = AttendanceRowViewModel.from(
+                row("a2", AttendanceRow.NO_TIME, AttendanceRow.NO_TIME, false));
+
+        assertEquals("Absent", viewModel.getStatusText());
+        assertEquals(R.drawable.status_absent_background, viewModel.getStatusBackground());
+        assertNull(viewModel.getJoinTime());
+        assertEquals("0 min", viewModel.getDuration());
+    }
+
+    @Test
+    public void equalWhenRowsBindIdentically() {
+        AttendanceRow row = row("a3", JOINED_AT, JOINED_AT + 60_000L, true);
+
+        assertEquals(AttendanceRowViewModel.from(row), AttendanceRowViewModel.from(row));
+        assertEquals(AttendanceRowViewModel.from(row).hashCode(), AttendanceRowViewModel.from(row).hashCode());
+        assertNotEquals(AttendanceRowViewModel.from(row),
+                AttendanceRowViewModel.from(row("a3", JOINED_AT, JOINED_AT + 120_000L, true)));
+    }
+
+    private static AttendanceRow row(String id, long joinedAt, long leftAt, boolean present) {
+        return new AttendanceRow(id, "meeting", "user", "student@school.edu", "Student",
+                "Algebra II", joinedAt, leftAt, present);
+    }
+}
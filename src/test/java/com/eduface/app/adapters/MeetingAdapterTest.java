@@ -0,0 +1,61 @@
+package com.eduface.app.adapters;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.eduface.app.models.Meeting;
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Date;
+
+/**
+ * Which meeting changes the adapter's diff treats as a new item or a rebind
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MeetingAdapterTest {
+
+    private static final Date CREATED_AT = new Date(1_700_000_000_000L);
+
+    @Test
+    public void itemsAreMatchedByDocumentId() {
+        assertTrue(MeetingAdapter.DIFF_CALLBACK.areItemsTheSame(meeting("m1"), meeting("m1")));
+        assertFalse(MeetingAdapter.DIFF_CALLBACK.areItemsTheSame(meeting("m1"), meeting("m2")));
+    }
+
+    @Test
+    public void unchangedMeetingIsNotRebound() {
+        assertTrue(MeetingAdapter.DIFF_CALLBACK.areContentsTheSame(meeting("m1"), meeting("m1")));
+    }
+
+    @Test
+    public void shownFieldsTriggerRebind() {
+        Meeting ended = meeting("m1");
+        ended.setActive(false);
+        Meeting renamed = meeting("m1");
+        renamed.setTitle("Geometry");
+        Meeting scheduled = meeting("m1");
+        scheduled.setScheduledTime(new Timestamp(new Date(CREATED_AT.getTime() + 3_600_000L)));
+
+        assertFalse(MeetingAdapter.DIFF_CALLBACK.areContentsTheSame(meeting("m1"), ended));
+        assertFalse(MeetingAdapter.DIFF_CALLBACK.areContentsTheSame(meeting("m1"), renamed));
+        assertFalse(MeetingAdapter.DIFF_CALLBACK.areContentsTheSame(meeting("m1"), scheduled));
+    }
+
+    @Test
+    public void hiddenFieldsDoNotTriggerRebind() {
+        Meeting other = meeting("m1");
+        other.setSubject("Science");
+        other.setEndedAt(new Date());
+
+        assertTrue(MeetingAdapter.DIFF_CALLBACK.areContentsTheSame(meeting("m1"), other));
+    }
+
+    private static Meeting meeting(String id) {
+        return new Meeting(id, "ABC123", "Algebra II", "Teacher", "Maths", "teacher1", true,
+                CREATED_AT, null);
+    }
+}
@@ -0,0 +1,90 @@
+package com.eduface.app.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+/**
+ * Decoding attendance documents into rows
+ */
+public class AttendanceRowTest {
+
+    private static final long JOINED_AT = 1_700_000_000_000L;
+
+    @Test
+    public void everyFieldIsDecoded() {
+        DocumentSnapshot document = document("a1", new Date(JOINED_AT), new Date(JOINED_AT + 45 * 60_000L), true);
+
+        AttendanceRow row = AttendanceRow.fromSnapshot(document);
+
+        assertEquals("a1", row.getId());
+        assertEquals("meeting", row.getMeetingId());
+        assertEquals("user", row.getUserId());
+        assertEquals("student@school.edu", row.getStudentEmail());
+        assertEquals("Student", row.getStudentName());
+        assertEquals("Algebra II", row.getMeetingTitle());
+        assertEquals(JOINED_AT, row.getJoinedAtMillis());
+        assertEquals(JOINED_AT + 45 * 60_000L, row.getLeftAtMillis());
+        assertTrue(row.isPresent());
+        assertEquals(45, row.getDurationMinutes());
+    }
+
+    @Test
+    public void missingFieldsDecodeToDefaults() {
+        DocumentSnapshot document = mock(DocumentSnapshot.class);
+        when(document.getId()).thenReturn("a2");
+
+        AttendanceRow row = AttendanceRow.fromSnapshot(document);
+
+        assertNull(row.getStudentName());
+        assertEquals(AttendanceRow.NO_TIME, row.getJoinedAtMillis());
+        assertEquals(AttendanceRow.NO_TIME, row.getLeftAtMillis());
+        assertFalse(row.isPresent());
+        assertEquals(0, row.getDurationMinutes());
+    }
+
+    @Test
+    public void openAttendanceLastsUntilNow() {
+        long joinedAt = System.currentTimeMillis() - 10 * 60_000L;
+        AttendanceRow row = AttendanceRow.fromSnapshot(document("a3", new Date(joinedAt), null, true));
+
+        assertEquals(AttendanceRow.NO_TIME, row.getLeftAtMillis());
+        assertTrue(row.getDurationMinutes() >= 10);
+    }
+
+    @Test
+    public void rowsWithSameFieldsAreEqual() {
+        AttendanceRow row = AttendanceRow.fromSnapshot(document("a4", new Date(JOINED_AT), null, true));
+        AttendanceRow same = AttendanceRow.fromSnapshot(document("a4", new Date(JOINED_AT), null, true));
+        AttendanceRow left = AttendanceRow.fromSnapshot(
+                document("a4", new Date(JOINED_AT), new Date(JOINED_AT + 60_000L), true));
+
+        assertEquals(row, same);
+        assertEquals(row.hashCode(), same.hashCode());
+        assertNotEquals(row, left);
+    }
+
+    private static DocumentSnapshot document(String id, Date joinedAt, Date leftAt, boolean present) {
+        DocumentSnapshot document = mock(DocumentSnapshot.class);
+        when(document.getId()).thenReturn(id);
+        when(document.getString("meetingId")).thenReturn("meeting");
+        when(document.getString("userId")).thenReturn("user");
+        when(document.getString("studentEmail")).thenReturn("student@school.edu");
+        when(document.getString("studentName")).thenReturn("Student");
+        when(document.getString("meetingTitle")).thenReturn("Algebra II");
+        when(document.getDate("joinedAt")).thenReturn(joinedAt);
+        when(document.getDate("leftAt")).thenReturn(leftAt);
+        when(document.getBoolean("present")).thenReturn(present);
+        return document;
+    }
+}
@@ -0,0 +1,73 @@
+package com.eduface.app.recognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Backend benchmarking with fake interpreters of known speed and output
+ */
+public class EmbedderDelegateSelectorTest {
+
+    private static final ByteBuffer MODEL = ByteBuffer.allocateDirect(1);
+    private static final float[] EMBEDDING = {1f, 2f, 2f};
+
+    @Test
+    public void picksFastestBackend() {
+        FakeBackends backends = new FakeBackends()
+                .available(FaceEmbedder.DELEGATE_CPU, EMBEDDING, 4)
+                .available(FaceEmbedder.DELEGATE_XNNPACK, EMBEDDING, 2)
+                .available(FaceEmbedder.DELEGATE_NNAPI, EMBEDDING, 0);
+        StringBuilder report = new StringBuilder();
+
+        int delegate = EmbedderDelegateSelector.select(MODEL, report, backends);
+
+        assertEquals(FaceEmbedder.DELEGATE_NNAPI, delegate);
+        // The reference kernels are measured first
+        assertEquals(FaceEmbedder.DELEGATE_CPU, (int) backends.getOpened().get(0));
+        assertTrue(report.toString(), report.toString().contains("xnnpack: "));
+    }
+
+    @Test
+    public void skipsBackendThatDisagreesWithCpu() {
+        FakeBackends backends = new FakeBackends()
+                .available(FaceEmbedder.DELEGATE_CPU, EMBEDDING, 4)
+                .available(FaceEmbedder.DELEGATE_XNNPACK, EMBEDDING, 2)
+                // Fastest, but a lossy driver
+                .available(FaceEmbedder.DELEGATE_NNAPI, new float[]{2f, -1f, 0f}, 0);
+        StringBuilder report = new StringBuilder();
+
+        int delegate = EmbedderDelegateSelector.select(MODEL, report, backends);
+
+        assertEquals(FaceEmbedder.DELEGATE_XNNPACK, delegate);
+        assertTrue(report.toString(), report.toString().contains("nnapi: embeddings differ from cpu"));
+    }
+
+    @Test
+    public void fallsBackToCpuWhenAcceleratorsAreUnavailable() {
+        FakeBackends backends = new FakeBackends().available(FaceEmbedder.DELEGATE_CPU, EMBEDDING, 0);
+        StringBuilder report = new StringBuilder();
+
+        int delegate = EmbedderDelegateSelector.select(MODEL, report, backends);
+
+        assertEquals(FaceEmbedder.DELEGATE_CPU, delegate);
+        assertTrue(report.toString(), report.toString().contains("xnnpack: unavailable"));
+        assertTrue(report.toString(), report.toString().contains("nnapi: unavailable"));
+    }
+
+    @Test
+    public void closesEveryBackendItOpens() {
+        FakeBackends backends = new FakeBackends()
+                .available(FaceEmbedder.DELEGATE_CPU, EMBEDDING, 0)
+                .available(FaceEmbedder.DELEGATE_NNAPI, new float[]{2f, -1f, 0f}, 0);
+
+        EmbedderDelegateSelector.select(MODEL, new StringBuilder(), backends);
+
+        verify(backends.getInterpreter(FaceEmbedder.DELEGATE_CPU)).close();
+        verify(backends.getInterpreter(FaceEmbedder.DELEGATE_NNAPI)).close();
+    }
+}
@@ -0,0 +1,112 @@
+package com.eduface.app.recognition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Micro-benchmark comparing QuantizedEmbeddingStore against a naive List&lt;float[]&gt; scan.
+ * Uses warmup and measurement rounds in the style of JMH. Has no Android dependencies;
+ * run main() from the unit test classpath. It is not part of the test suite.
+ */
+public class EmbeddingSearchBenchmark {
+
+    private static final int DIMENSION = 128;
+    private static final int[] TEMPLATE_COUNTS = {1_000, 10_000, 50_000};
+    private static final int WARMUP_ROUNDS = 30;
+    private static final int MEASURE_ROUNDS = 20;
+    private static final int QUERIES_PER_ROUND = 20;
+    private static final int TOP_K = 5;
+
+    // Keeps results alive so the JIT cannot drop the loops
+    private static volatile float sink;
+
+    private EmbeddingSearchBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        System.out.println(run());
+    }
+
+    /**
+     * Run all sizes and return a printable report (microseconds per query)
+     */
+    public static String run() {
+        StringBuilder report = new StringBuilder("templates  naive(us)  int8(us)  speedup\n");
+        Random random = new Random(42);
+
+        for (int count : TEMPLATE_COUNTS) {
+            List<float[]> naive = new ArrayList<>(count);
+            QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(DIMENSION, count);
+            for (int i = 0; i < count; i++) {
+                float[] embedding = randomUnitVector(random);
+                naive.add(embedding);
+                store.add("user" + i, embedding);
+            }
+
+            float[][] queries = new float[QUERIES_PER_ROUND][];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = randomUnitVector(random);
+            }
+
+            double naiveMicros = measure(() -> {
+                for (float[] query : queries) {
+                    sink += naiveBest(naive, query);
+                }
+            });
+
+            int[] rows = new int[TOP_K];
+            float[] scores = new float[TOP_K];
+            double storeMicros = measure(() -> {
+                for (float[] query : queries) {
+                    store.search(query, TOP_K, -1f, rows, scores);
+                    sink += scores[0];
+                }
+            });
+
+            report.append(String.format(Locale.US, "%9d  %9.1f  %8.1f  %6.1fx\n",
+                    count, naiveMicros, storeMicros, naiveMicros / storeMicros));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Average microseconds per query over the measurement rounds
+     */
+    private static double measure(Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed / 1000.0 / (MEASURE_ROUNDS * QUERIES_PER_ROUND);
+    }
+
+    /**
+     * Baseline: boxed list of float arrays, best cosine score
+     */
+    private static float naiveBest(List<float[]> templates, float[] query) {
+        float best = -Float.MAX_VALUE;
+        for (float[] template : templates) {
+            float dot = 0f;
+            for (int i = 0; i < query.length; i++) {
+                dot += template[i] * query[i];
+            }
+            best = Math.max(best, dot);
+        }
+        return best;
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        EmbeddingIndex.normalize(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,74 @@
+package com.eduface.app.recognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Backend fallback and output normalization, with fake interpreters
+ */
+public class FaceEmbedderTest {
+
+    private static final ByteBuffer MODEL = ByteBuffer.allocateDirect(1);
+
+    @Test
+    public void fallsBackToCpuWhenAcceleratedBackendsFail() {
+        FakeBackends backends = new FakeBackends().available(FaceEmbedder.DELEGATE_CPU, new float[]{1f, 0f}, 0);
+
+        FaceEmbedder embedder = new FaceEmbedder(MODEL, FaceEmbedder.DELEGATE_NNAPI, backends);
+
+        assertEquals(FaceEmbedder.DELEGATE_CPU, embedder.getDelegate());
+        assertEquals(Arrays.asList(FaceEmbedder.DELEGATE_NNAPI, FaceEmbedder.DELEGATE_XNNPACK,
+                FaceEmbedder.DELEGATE_CPU), backends.getOpened());
+    }
+
+    @Test
+    public void startsAtPreferredBackend() {
+        FakeBackends backends = new FakeBackends()
+                .available(FaceEmbedder.DELEGATE_NNAPI, new float[]{1f, 0f}, 0)
+                .available(FaceEmbedder.DELEGATE_XNNPACK, new float[]{1f, 0f}, 0);
+
+        FaceEmbedder embedder = new FaceEmbedder(MODEL, FaceEmbedder.DELEGATE_XNNPACK, backends);
+
+        assertEquals(FaceEmbedder.DELEGATE_XNNPACK, embedder.getDelegate());
+        assertEquals(Arrays.asList(FaceEmbedder.DELEGATE_XNNPACK), backends.getOpened());
+        assertEquals(FakeBackends.INPUT_SIZE, embedder.getInputSize());
+        assertEquals(2, embedder.getEmbeddingSize());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void failsWhenNoBackendOpens() {
+        new FaceEmbedder(MODEL, FaceEmbedder.DELEGATE_NNAPI, new FakeBackends());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownDelegate() {
+        new FaceEmbedder(MODEL, 7, new FakeBackends());
+    }
+
+    @Test
+    public void embeddingIsNormalizedAndCloseReleasesInterpreter() {
+        FakeBackends backends = new FakeBackends().available(FaceEmbedder.DELEGATE_CPU, new float[]{3f, 4f}, 0);
+        FaceEmbedder embedder = new FaceEmbedder(MODEL, FaceEmbedder.DELEGATE_CPU, backends);
+
+        float[] embedding = embedder.embed(ByteBuffer.allocateDirect(4));
+        embedder.close();
+
+        assertArrayEquals(new float[]{0.6f, 0.8f}, embedding, 1e-6f);
+        verify(backends.getInterpreter(FaceEmbedder.DELEGATE_CPU)).close();
+    }
+
+    @Test
+    public void delegateNamesRoundTrip() {
+        for (int delegate = FaceEmbedder.DELEGATE_NNAPI; delegate <= FaceEmbedder.DELEGATE_CPU; delegate++) {
+            assertEquals(delegate, FaceEmbedder.parseDelegate(FaceEmbedder.getDelegateName(delegate)));
+        }
+        assertEquals(-1, FaceEmbedder.parseDelegate(null));
+        assertEquals(-1, FaceEmbedder.parseDelegate("gpu"));
+    }
+}
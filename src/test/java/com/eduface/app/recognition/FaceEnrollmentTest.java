@@ -0,0 +1,118 @@
+package com.eduface.app.recognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Shot spacing, consistency checks and the averaged template of face enrollment
+ */
+public class FaceEnrollmentTest {
+
+    private static final int DIMENSION = 4;
+    private static final long SHOT_INTERVAL_MILLIS = 500;
+    private static final float TOLERANCE = 1e-5f;
+
+    @Test
+    public void completesAfterRequiredShots() {
+        FaceEnrollment enrollment = new FaceEnrollment(3);
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(enrollment.isComplete());
+            assertTrue(enrollment.addShot(axis(0), i * SHOT_INTERVAL_MILLIS));
+        }
+
+        assertTrue(enrollment.isComplete());
+        assertEquals(3, enrollment.getShotCount());
+        // Further shots are not taken
+        assertFalse(enrollment.addShot(axis(0), 3 * SHOT_INTERVAL_MILLIS));
+        assertEquals(3, enrollment.getShotCount());
+    }
+
+    @Test
+    public void shotsTooCloseTogetherAreRejected() {
+        FaceEnrollment enrollment = new FaceEnrollment();
+
+        assertTrue(enrollment.addShot(axis(0), 1000));
+        assertFalse(enrollment.addShot(axis(0), 1100));
+        assertTrue(enrollment.addShot(axis(0), 1000 + SHOT_INTERVAL_MILLIS));
+        assertEquals(2, enrollment.getShotCount());
+    }
+
+    @Test
+    public void inconsistentShotIsRejected() {
+        FaceEnrollment enrollment = new FaceEnrollment();
+        enrollment.addShot(axis(0), 0);
+
+        // Someone else stepped in front of the camera
+        assertFalse(enrollment.addShot(axis(1), SHOT_INTERVAL_MILLIS));
+        // A slightly different pose of the same face is fine
+        assertTrue(enrollment.addShot(mix(0, 1), 2 * SHOT_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void otherDimensionIsRejected() {
+        FaceEnrollment enrollment = new FaceEnrollment();
+        enrollment.addShot(axis(0), 0);
+
+        assertFalse(enrollment.addShot(new float[DIMENSION + 1], SHOT_INTERVAL_MILLIS));
+        assertEquals(1, enrollment.getShotCount());
+    }
+
+    @Test
+    public void templateIsNormalizedMean() {
+        FaceEnrollment enrollment = new FaceEnrollment(2);
+        enrollment.addShot(axis(0), 0);
+        enrollment.addShot(mix(0, 1), SHOT_INTERVAL_MILLIS);
+
+        float[] expected = {1f + (float) Math.sqrt(0.5), (float) Math.sqrt(0.5), 0f, 0f};
+        EmbeddingIndex.normalize(expected);
+        float[] template = enrollment.getTemplate();
+
+        assertArrayEquals(expected, template, TOLERANCE);
+        // A copy: changing it does not change the enrollment
+        template[0] = 0f;
+        assertArrayEquals(expected, enrollment.getTemplate(), TOLERANCE);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void templateNeedsAShot() {
+        new FaceEnrollment().getTemplate();
+    }
+
+    @Test
+    public void resetDiscardsShots() {
+        FaceEnrollment enrollment = new FaceEnrollment(1);
+        enrollment.addShot(axis(0), 1000);
+        assertTrue(enrollment.isComplete());
+
+        enrollment.reset();
+
+        assertEquals(0, enrollment.getShotCount());
+        // The first shot after a reset is not held back by the interval or the old shots
+        assertTrue(enrollment.addShot(axis(1), 1001));
+        assertArrayEquals(axis(1), enrollment.getTemplate(), TOLERANCE);
+    }
+
+    @Test
+    public void atLeastOneShotIsRequired() {
+        assertEquals(1, new FaceEnrollment(0).getRequiredShots());
+        assertEquals(FaceEnrollment.DEFAULT_SHOTS, new FaceEnrollment().getRequiredShots());
+    }
+
+    private static float[] axis(int index) {
+        float[] vector = new float[DIMENSION];
+        vector[index] = 1f;
+        return vector;
+    }
+
+    private static float[] mix(int first, int second) {
+        float[] vector = new float[DIMENSION];
+        vector[first] = (float) Math.sqrt(0.5);
+        vector[second] = (float) Math.sqrt(0.5);
+        return vector;
+    }
+}
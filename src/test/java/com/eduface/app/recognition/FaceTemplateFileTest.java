@@ -0,0 +1,181 @@
+package com.eduface.app.recognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistence, replacement, removal and compaction of the memory-mapped template file
+ */
+public class FaceTemplateFileTest {
+
+    private static final int DIMENSION = 8;
+    // int8 quantization of a unit vector is accurate to about 1/127 per component
+    private static final float TOLERANCE = 0.02f;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private FaceTemplateFile templateFile;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), FaceTemplateFile.DEFAULT_FILE_NAME);
+        templateFile = FaceTemplateFile.open(file, DIMENSION);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        templateFile.close();
+    }
+
+    @Test
+    public void templatesSurviveReopen() throws IOException {
+        Map<String, float[]> templates = new HashMap<>();
+        templates.put("alice", axis(0));
+        templates.put("bob", axis(1));
+        templateFile.appendAll(templates);
+        templateFile.setLastSyncMillis(1234L);
+
+        reopen(DIMENSION);
+
+        assertEquals(2, templateFile.getLiveCount());
+        assertTrue(templateFile.contains("alice"));
+        assertArrayEquals(axis(1), templateFile.getEmbedding("bob"), TOLERANCE);
+        assertEquals(1234L, templateFile.getLastSyncMillis());
+    }
+
+    @Test
+    public void lastAppendWins() throws IOException {
+        templateFile.append("alice", axis(0));
+        templateFile.append("alice", axis(2));
+
+        assertTrue(templateFile.isCurrent("alice", axis(2)));
+        assertFalse(templateFile.isCurrent("alice", axis(0)));
+        assertEquals(1, templateFile.getLiveCount());
+
+        reopen(DIMENSION);
+        assertArrayEquals(axis(2), templateFile.getEmbedding("alice"), TOLERANCE);
+    }
+
+    @Test
+    public void removeAppendsTombstone() throws IOException {
+        templateFile.append("alice", axis(0));
+        templateFile.append("bob", axis(1));
+        templateFile.remove("alice");
+
+        assertFalse(templateFile.contains("alice"));
+        assertNull(templateFile.getEmbedding("alice"));
+
+        reopen(DIMENSION);
+        assertFalse(templateFile.contains("alice"));
+        assertEquals(1, templateFile.getLiveCount());
+    }
+
+    @Test
+    public void searchRanksByScore() throws IOException {
+        templateFile.append("alice", axis(0));
+        templateFile.append("bob", axis(1));
+        templateFile.append("carol", mix(0, 1));
+
+        int[] records = new int[2];
+        float[] scores = new float[2];
+        int found = templateFile.search(axis(0), 2, 0.5f, records, scores);
+
+        assertEquals(2, found);
+        assertEquals("alice", templateFile.getId(records[0]));
+        assertEquals("carol", templateFile.getId(records[1]));
+        assertTrue(scores[0] > scores[1]);
+        assertEquals(1f, scores[0], TOLERANCE);
+    }
+
+    @Test
+    public void partialRecordIsIgnoredAndOverwritten() throws IOException {
+        templateFile.append("alice", axis(0));
+        templateFile.close();
+        // A process killed mid-append leaves a few bytes past the published records
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(raw.length());
+            raw.write(new byte[]{1, 2, 3, 4, 5});
+        }
+
+        templateFile = FaceTemplateFile.open(file, DIMENSION);
+        assertEquals(1, templateFile.getLiveCount());
+
+        templateFile.append("bob", axis(1));
+        reopen(DIMENSION);
+        assertEquals(2, templateFile.getLiveCount());
+        assertArrayEquals(axis(1), templateFile.getEmbedding("bob"), TOLERANCE);
+    }
+
+    @Test
+    public void compactionKeepsOnlyCurrentTemplates() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            templateFile.append("alice", axis(i));
+        }
+        templateFile.append("bob", axis(1));
+        templateFile.remove("bob");
+        long before = file.length();
+
+        assertTrue(templateFile.needsCompaction());
+        templateFile.compact();
+
+        assertTrue(file.length() < before);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertEquals(1, templateFile.getLiveCount());
+        assertArrayEquals(axis(4), templateFile.getEmbedding("alice"), TOLERANCE);
+        assertFalse(templateFile.needsCompaction());
+
+        reopen(DIMENSION);
+        assertEquals(1, templateFile.getLiveCount());
+        assertFalse(templateFile.contains("bob"));
+    }
+
+    @Test
+    public void fileForOtherDimensionIsDiscarded() throws IOException {
+        templateFile.append("alice", axis(0));
+
+        reopen(DIMENSION * 2);
+
+        assertEquals(0, templateFile.getLiveCount());
+        assertEquals(0L, templateFile.getLastSyncMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongDimensionIsRejected() throws IOException {
+        templateFile.append("alice", new float[DIMENSION + 1]);
+    }
+
+    private void reopen(int dimension) throws IOException {
+        templateFile.close();
+        templateFile = FaceTemplateFile.open(file, dimension);
+    }
+
+    private static float[] axis(int index) {
+        float[] vector = new float[DIMENSION];
+        vector[index] = 1f;
+        return vector;
+    }
+
+    private static float[] mix(int first, int second) {
+        float[] vector = new float[DIMENSION];
+        vector[first] = (float) Math.sqrt(0.5);
+        vector[second] = (float) Math.sqrt(0.5);
+        return vector;
+    }
+}
@@ -0,0 +1,79 @@
+package com.eduface.app.recognition;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Backend factory for JVM tests: each backend is a mocked interpreter that writes a fixed
+ * embedding and takes a fixed time per run, or fails to open, so no TFLite native code runs
+ */
+class FakeBackends implements FaceEmbedder.BackendFactory {
+
+    static final int INPUT_SIZE = 4;
+
+    private final float[][] outputs = new float[3][];
+    private final long[] runMillis = new long[3];
+    private final Interpreter[] interpreters = new Interpreter[3];
+    private final List<Integer> opened = new ArrayList<>();
+
+    /**
+     * Backend that opens and outputs this (unnormalized) embedding
+     */
+    FakeBackends available(int delegate, float[] output, long runMillis) {
+        outputs[delegate] = output;
+        this.runMillis[delegate] = runMillis;
+        return this;
+    }
+
+    /**
+     * Delegates opened so far, in order (including those that failed to open)
+     */
+    List<Integer> getOpened() {
+        return opened;
+    }
+
+    /**
+     * Interpreter of a backend that has been opened
+     */
+    Interpreter getInterpreter(int delegate) {
+        return interpreters[delegate];
+    }
+
+    @Override
+    public FaceEmbedder.Backend open(java.nio.ByteBuffer model, int delegate) {
+        opened.add(delegate);
+        if (outputs[delegate] == null) {
+            throw new UnsupportedOperationException(FaceEmbedder.getDelegateName(delegate) + " not on this device");
+        }
+        Interpreter interpreter = mockInterpreter(outputs[delegate], runMillis[delegate]);
+        interpreters[delegate] = interpreter;
+        return new FaceEmbedder.Backend(interpreter, delegate, null);
+    }
+
+    private static Interpreter mockInterpreter(float[] result, long runMillis) {
+        Interpreter interpreter = mock(Interpreter.class);
+        Tensor input = mock(Tensor.class);
+        when(input.shape()).thenReturn(new int[]{1, INPUT_SIZE, INPUT_SIZE, 3});
+        Tensor output = mock(Tensor.class);
+        when(output.shape()).thenReturn(new int[]{1, result.length});
+        when(interpreter.getInputTensor(0)).thenReturn(input);
+        when(interpreter.getOutputTensor(0)).thenReturn(output);
+        doAnswer(invocation -> {
+            if (runMillis > 0) {
+                Thread.sleep(runMillis);
+            }
+            float[][] out = invocation.getArgument(1);
+            System.arraycopy(result, 0, out[0], 0, result.length);
+            return null;
+        }).when(interpreter).run(any(), any());
+        return interpreter;
+    }
+}
@@ -0,0 +1,170 @@
+package com.eduface.app.recognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * int8 quantization accuracy and top-k search of the flat embedding store
+ */
+public class QuantizedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 16;
+
+    @Test
+    public void decodedRowsAreUnitLengthApproximations() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(DIMENSION);
+        float[] embedding = random(new Random(1));
+        int row = store.add("alice", embedding);
+
+        float[] decoded = store.get(row);
+
+        EmbeddingIndex.normalize(embedding);
+        assertArrayEquals(embedding, decoded, 0.01f);
+        assertEquals("alice", store.getId(row));
+    }
+
+    @Test
+    public void scoresApproximateCosineSimilarity() {
+        Random random = new Random(2);
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(DIMENSION);
+        float[] template = random(random);
+        float[] query = random(random);
+        store.add("alice", template);
+
+        int[] rows = new int[1];
+        float[] scores = new float[1];
+        assertEquals(1, store.search(query, 1, -1f, rows, scores));
+
+        assertEquals(cosine(template, query), scores[0], 0.02f);
+    }
+
+    @Test
+    public void searchReturnsTopKInDescendingOrder() {
+        Random random = new Random(3);
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(DIMENSION, 1);
+        float[] query = random(random);
+        float[][] templates = new float[50][];
+        for (int i = 0; i < templates.length; i++) {
+            templates[i] = random(random);
+            store.add("user" + i, templates[i]);
+        }
+        // One template is the query itself and must come first
+        store.add("self", query);
+
+        int[] rows = new int[5];
+        float[] scores = new float[5];
+        int found = store.search(query, 5, -1f, rows, scores);
+
+        assertEquals(5, found);
+        assertEquals("self", store.getId(rows[0]));
+        assertEquals(1f, scores[0], 0.02f);
+        for (int i = 1; i < found; i++) {
+            assertTrue(scores[i - 1] >= scores[i]);
+        }
+        // Nothing left out beats the last result
+        for (int i = 0; i < templates.length; i++) {
+            assertTrue(cosine(templates[i], query) <= scores[found - 1] + 0.02f
+                    || contains(rows, found, i));
+        }
+    }
+
+    @Test
+    public void thresholdLimitsResults() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(2);
+        store.add("same", new float[]{1f, 0f});
+        store.add("orthogonal", new float[]{0f, 1f});
+        store.add("opposite", new float[]{-1f, 0f});
+
+        int[] rows = new int[3];
+        float[] scores = new float[3];
+        int found = store.search(new float[]{1f, 0f}, 3, 0.5f, rows, scores);
+
+        assertEquals(1, found);
+        assertEquals("same", store.getId(rows[0]));
+    }
+
+    @Test
+    public void kIsBoundedByOutputArrays() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(2);
+        store.add("a", new float[]{1f, 0f});
+        store.add("b", new float[]{1f, 0.1f});
+        store.add("c", new float[]{1f, 0.2f});
+
+        int[] rows = new int[2];
+        float[] scores = new float[2];
+        assertEquals(2, store.search(new float[]{1f, 0f}, 10, -1f, rows, scores));
+        assertEquals(0, store.search(new float[]{1f, 0f}, 0, -1f, rows, scores));
+    }
+
+    @Test
+    public void setReplacesRowAndZeroVectorScoresZero() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(2);
+        int row = store.add("alice", new float[]{1f, 0f});
+        store.set(row, new float[]{0f, 0f});
+
+        int[] rows = new int[1];
+        float[] scores = new float[1];
+        assertEquals(1, store.search(new float[]{1f, 0f}, 1, -1f, rows, scores));
+        assertEquals(0f, scores[0], 0f);
+    }
+
+    @Test
+    public void wrongDimensionIsRejectedWithoutAddingRow() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(DIMENSION);
+        try {
+            store.add("alice", new float[DIMENSION - 1]);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    public void insertResultKeepsListSortedAndBounded() {
+        int[] rows = new int[3];
+        float[] scores = new float[3];
+        int found = 0;
+        found = QuantizedEmbeddingStore.insertResult(0, 0.5f, found, 3, rows, scores);
+        found = QuantizedEmbeddingStore.insertResult(1, 0.9f, found, 3, rows, scores);
+        found = QuantizedEmbeddingStore.insertResult(2, 0.7f, found, 3, rows, scores);
+        found = QuantizedEmbeddingStore.insertResult(3, 0.8f, found, 3, rows, scores);
+
+        assertEquals(3, found);
+        assertArrayEquals(new int[]{1, 3, 2}, rows);
+    }
+
+    private static float[] random(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return (float) (dot / Math.sqrt(normA * normB));
+    }
+
+    private static boolean contains(int[] rows, int count, int row) {
+        for (int i = 0; i < count; i++) {
+            if (rows[i] == row) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,111 @@
+package com.eduface.app.recognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Moving average updates and the write-back threshold of the face template refresher
+ */
+public class TemplateRefresherTest {
+
+    private static final int DIMENSION = 4;
+    private static final float TOLERANCE = 1e-5f;
+    private static final float CONFIDENT = 0.9f;
+
+    @Test
+    public void weakMatchIsIgnored() {
+        TemplateRefresher refresher = new TemplateRefresher(axis(0), null);
+
+        assertFalse(refresher.offer(axis(1), TemplateRefresher.DEFAULT_MIN_SCORE - 0.01f));
+
+        assertArrayEquals(axis(0), refresher.getTemplate(), TOLERANCE);
+        assertEquals(0f, refresher.getDrift(), TOLERANCE);
+    }
+
+    @Test
+    public void otherDimensionIsIgnored() {
+        TemplateRefresher refresher = new TemplateRefresher(axis(0), null);
+
+        assertFalse(refresher.offer(new float[DIMENSION + 1], CONFIDENT));
+        assertEquals(0f, refresher.getDrift(), TOLERANCE);
+    }
+
+    @Test
+    public void oneMatchMovesAverageWithoutWriteBack() {
+        TemplateRefresher refresher = new TemplateRefresher(axis(0), null);
+
+        assertTrue(refresher.offer(axis(1), CONFIDENT));
+
+        float[] expected = {0.9f, 0.1f, 0f, 0f};
+        EmbeddingIndex.normalize(expected);
+        assertArrayEquals(expected, refresher.getTemplate(), TOLERANCE);
+        assertEquals(1f - expected[0], refresher.getDrift(), TOLERANCE);
+        assertFalse(refresher.needsWriteBack());
+    }
+
+    @Test
+    public void consistentChangeReachesWriteBack() {
+        TemplateRefresher refresher = new TemplateRefresher(axis(0), null);
+
+        int offers = 0;
+        float drift = 0f;
+        while (!refresher.needsWriteBack()) {
+            assertTrue(offers++ < 10);
+            refresher.offer(axis(1), CONFIDENT);
+            assertTrue(refresher.getDrift() > drift);
+            drift = refresher.getDrift();
+        }
+        assertTrue(offers > 1);
+        assertTrue(refresher.getDrift() >= TemplateRefresher.DEFAULT_DRIFT_THRESHOLD);
+    }
+
+    @Test
+    public void pendingAverageIsResumed() {
+        TemplateRefresher first = new TemplateRefresher(axis(0), null);
+        first.offer(axis(1), CONFIDENT);
+
+        TemplateRefresher resumed = new TemplateRefresher(axis(0), first.getTemplate());
+
+        assertEquals(first.getDrift(), resumed.getDrift(), TOLERANCE);
+    }
+
+    @Test
+    public void pendingAverageOfOtherDimensionIsDropped() {
+        TemplateRefresher refresher = new TemplateRefresher(axis(0), new float[DIMENSION + 1]);
+
+        assertArrayEquals(axis(0), refresher.getTemplate(), TOLERANCE);
+        assertEquals(0f, refresher.getDrift(), TOLERANCE);
+    }
+
+    @Test
+    public void inputsAreNormalizedCopies() {
+        float[] stored = {2f, 0f, 0f, 0f};
+        TemplateRefresher refresher = new TemplateRefresher(stored, null);
+
+        assertEquals(0f, refresher.getDrift(), TOLERANCE);
+        assertArrayEquals(axis(0), refresher.getTemplate(), TOLERANCE);
+        assertEquals(2f, stored[0], 0f);
+
+        refresher.getTemplate()[0] = 0f;
+        assertArrayEquals(axis(0), refresher.getTemplate(), TOLERANCE);
+    }
+
+    @Test
+    public void summaryShowsDrift() {
+        TemplateRefresher refresher = new TemplateRefresher(axis(0), null, 0.5f, 0.5f, 0.25f);
+        refresher.offer(axis(1), CONFIDENT);
+
+        assertEquals("drift=0.2929 (threshold 0.2500)", refresher.summary());
+        assertTrue(refresher.needsWriteBack());
+    }
+
+    private static float[] axis(int index) {
+        float[] vector = new float[DIMENSION];
+        vector[index] = 1f;
+        return vector;
+    }
+}
@@ -0,0 +1,139 @@
+package com.eduface.app.recognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Rect;
+
+import com.eduface.app.replay.ReplayImageProxy;
+import com.eduface.app.replay.YuvFrameSequence;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Crop, rotation and colour conversion of faces cut straight from YUV camera frames
+ */
+@RunWith(RobolectricTestRunner.class)
+public class YuvFaceCropperTest {
+
+    private static final float TOLERANCE = 1e-4f;
+    private static final int DARK = 0;
+    private static final int BRIGHT = 255;
+    // Left half of the sensor image dark, right half bright
+    private static final IntBinaryOperator LEFT_DARK = (x, y) -> x < 4 ? DARK : BRIGHT;
+
+    @Test
+    public void grayFrameGivesGrayInput() {
+        YuvFaceCropper cropper = new YuvFaceCropper(4);
+        ByteBuffer output = cropper.acquire();
+
+        assertTrue(cropper.crop(frame(64, 48, 0, (x, y) -> 200, 128, 128), new Rect(16, 16, 32, 32), output));
+
+        assertEquals(4 * 4 * 3 * 4, output.remaining());
+        while (output.hasRemaining()) {
+            assertEquals(FaceEmbedder.normalizeChannel(200), output.getFloat(), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void chromaIsConvertedToRgb() {
+        YuvFaceCropper cropper = new YuvFaceCropper(2);
+        ByteBuffer output = cropper.acquire();
+
+        // Strong red difference: red clips, green drops, blue is unaffected
+        assertTrue(cropper.crop(frame(8, 8, 0, (x, y) -> 128, 128, 228), new Rect(0, 0, 8, 8), output));
+
+        assertEquals(FaceEmbedder.normalizeChannel(255), output.getFloat(), TOLERANCE);
+        assertEquals(FaceEmbedder.normalizeChannel(128 - 0.714136f * 100), output.getFloat(), TOLERANCE);
+        assertEquals(FaceEmbedder.normalizeChannel(128), output.getFloat(), TOLERANCE);
+    }
+
+    @Test
+    public void uprightFrameIsNotRotated() {
+        // Output pixels in row order: top left, top right, bottom left, bottom right
+        assertLuma(new int[]{DARK, BRIGHT, DARK, BRIGHT}, 0);
+    }
+
+    @Test
+    public void frameRotated90IsTurnedUpright() {
+        // The sensor's left edge is at the top of the upright image
+        assertLuma(new int[]{DARK, DARK, BRIGHT, BRIGHT}, 90);
+    }
+
+    @Test
+    public void frameRotated180IsTurnedUpright() {
+        assertLuma(new int[]{BRIGHT, DARK, BRIGHT, DARK}, 180);
+    }
+
+    @Test
+    public void frameRotated270IsTurnedUpright() {
+        assertLuma(new int[]{BRIGHT, BRIGHT, DARK, DARK}, 270);
+    }
+
+    @Test
+    public void boxOutsideFrameIsRejected() {
+        YuvFaceCropper cropper = new YuvFaceCropper(2);
+
+        assertFalse(cropper.crop(frame(8, 8, 0, LEFT_DARK, 128, 128), new Rect(100, 100, 110, 110),
+                cropper.acquire()));
+    }
+
+    @Test
+    public void releasedBufferIsReused() {
+        YuvFaceCropper cropper = new YuvFaceCropper(2);
+        ByteBuffer buffer = cropper.acquire();
+        buffer.putFloat(1f);
+
+        cropper.release(buffer);
+        ByteBuffer reused = cropper.acquire();
+
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertTrue(reused.isDirect());
+    }
+
+    /**
+     * Crop the whole of an 8x8 half dark, half bright frame to 2x2 and check each pixel's luma
+     */
+    private static void assertLuma(int[] expected, int rotation) {
+        YuvFaceCropper cropper = new YuvFaceCropper(2);
+        ByteBuffer output = cropper.acquire();
+        assertTrue(cropper.crop(frame(8, 8, rotation, LEFT_DARK, 128, 128), new Rect(0, 0, 8, 8), output));
+
+        int[] actual = new int[expected.length];
+        for (int i = 0; i < actual.length; i++) {
+            float red = output.getFloat();
+            output.getFloat();
+            output.getFloat();
+            actual[i] = Math.abs(red - FaceEmbedder.normalizeChannel(BRIGHT)) < TOLERANCE ? BRIGHT : DARK;
+        }
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+    }
+
+    private static ReplayImageProxy frame(int width, int height, int rotation, IntBinaryOperator luma,
+                                          int u, int v) {
+        YuvFrameSequence.Frame frame = new YuvFrameSequence.Frame();
+        frame.width = width;
+        frame.height = height;
+        frame.rotationDegrees = rotation;
+        frame.y = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                frame.y[y * width + x] = (byte) luma.applyAsInt(x, y);
+            }
+        }
+        frame.u = new byte[width / 2 * height / 2];
+        frame.v = new byte[width / 2 * height / 2];
+        Arrays.fill(frame.u, (byte) u);
+        Arrays.fill(frame.v, (byte) v);
+        return new ReplayImageProxy(frame);
+    }
+}
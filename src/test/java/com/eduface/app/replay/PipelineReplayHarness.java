@@ -0,0 +1,215 @@
+package com.eduface.app.replay;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.SystemClock;
+
+import com.eduface.app.utils.FaceDetectionHelper;
+import com.eduface.app.utils.FaceDetectorEngine;
+import com.eduface.app.utils.FramePipelineConfig;
+import com.google.mlkit.vision.face.Face;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline replay of the face detection pipeline. Feeds recorded YUV frames through
+ * FaceDetectionHelper.analyze() (or stills through processBitmap()) and records the
+ * listener event and end-to-end latency of each one, so a change to the pipeline can be
+ * checked against a known sequence of events and its latency percentiles compared.
+ *
+ * Test-only: with a ScriptedFaceDetectorEngine the replay is deterministic and runs as a
+ * Robolectric unit test (see PipelineReplayTest).
+ */
+public class PipelineReplayHarness implements FaceDetectionHelper.FaceDetectionListener {
+
+    public static final String EVENT_FACE = "face";
+    public static final String EVENT_NO_FACE = "no_face";
+    public static final String EVENT_LOW_QUALITY = "low_quality";
+    public static final String EVENT_FAILED = "failed";
+    // The frame was closed without a callback (skipped by the scheduler or dropped)
+    public static final String EVENT_SKIPPED = "skipped";
+
+    private static final long FRAME_TIMEOUT_MILLIS = 5000;
+
+    private final FaceDetectionHelper helper;
+    private volatile String lastEvent;
+    private volatile CountDownLatch eventLatch;
+
+    /**
+     * @param engine Fast-tier detector; confirmation is not replayed
+     */
+    public PipelineReplayHarness(Context context, FramePipelineConfig config, FaceDetectorEngine engine) {
+        helper = new FaceDetectionHelper(context, this, config, engine, null);
+        // Deliver callbacks on the detector's thread, so scripted replays never leave the caller's thread
+        helper.setCallbackExecutor(Runnable::run);
+    }
+
+    /**
+     * Pipeline under replay, e.g. to install a quality gate before replaying
+     */
+    public FaceDetectionHelper getHelper() {
+        return helper;
+    }
+
+    /**
+     * Replay a recording through the camera frame path
+     */
+    public Result replay(File recording) throws IOException, InterruptedException {
+        Result result = new Result();
+        try (YuvFrameSequence sequence = YuvFrameSequence.open(recording)) {
+            YuvFrameSequence.Frame frame = new YuvFrameSequence.Frame();
+            while (sequence.next(frame)) {
+                ReplayImageProxy image = new ReplayImageProxy(frame);
+                lastEvent = null;
+                long start = SystemClock.elapsedRealtimeNanos();
+                helper.analyze(image);
+                if (!image.awaitClose(FRAME_TIMEOUT_MILLIS)) {
+                    throw new IllegalStateException("Frame " + result.size() + " was never closed");
+                }
+                String event = lastEvent;
+                result.add(event != null ? event : EVENT_SKIPPED, SystemClock.elapsedRealtimeNanos() - start);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replay stills through processBitmap()
+     */
+    public Result replay(List<Bitmap> stills) throws InterruptedException {
+        Result result = new Result();
+        for (int i = 0; i < stills.size(); i++) {
+            eventLatch = new CountDownLatch(1);
+            lastEvent = null;
+            long start = SystemClock.elapsedRealtimeNanos();
+            helper.processBitmap(stills.get(i));
+            if (!eventLatch.await(FRAME_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("No event for still " + i);
+            }
+            result.add(lastEvent, SystemClock.elapsedRealtimeNanos() - start);
+        }
+        eventLatch = null;
+        return result;
+    }
+
+    public void shutdown() {
+        helper.shutdown();
+    }
+
+    @Override
+    public void onFaceDetected(Face face, Rect boundingBox, float confidence) {
+        onEvent(EVENT_FACE);
+    }
+
+    @Override
+    public void onFaceDetectionFailed(Exception e) {
+        onEvent(EVENT_FAILED);
+    }
+
+    @Override
+    public void onNoFaceDetected() {
+        onEvent(EVENT_NO_FACE);
+    }
+
+    @Override
+    public void onLowQualityFace(Face face, int reason, float score) {
+        onEvent(EVENT_LOW_QUALITY);
+    }
+
+    private void onEvent(String event) {
+        lastEvent = event;
+        CountDownLatch latch = eventLatch;
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Events and latencies of one replay, in input order
+     */
+    public static class Result {
+        private final List<String> events = new ArrayList<>();
+        private long[] latencies = new long[64];
+
+        void add(String event, long latencyNanos) {
+            if (events.size() == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[events.size()] = latencyNanos;
+            events.add(event);
+        }
+
+        public int size() {
+            return events.size();
+        }
+
+        public List<String> getEvents() {
+            return Collections.unmodifiableList(events);
+        }
+
+        /**
+         * Number of inputs that produced the given event
+         */
+        public int count(String event) {
+            int count = 0;
+            for (int i = 0; i < events.size(); i++) {
+                if (events.get(i).equals(event)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Latency percentile over all inputs, in milliseconds
+         *
+         * @param percentile 0 to 100
+         */
+        public double getLatencyMillis(double percentile) {
+            if (events.isEmpty()) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, events.size());
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(rank, sorted.length - 1))] / 1_000_000.0;
+        }
+
+        /**
+         * Check the replay produced exactly these events
+         *
+         * @throws AssertionError Describing the first difference
+         */
+        public void assertEvents(String... expected) {
+            int common = Math.min(expected.length, events.size());
+            for (int i = 0; i < common; i++) {
+                if (!expected[i].equals(events.get(i))) {
+                    throw new AssertionError("Event " + i + ": expected " + expected[i] + " but was " + events.get(i));
+                }
+            }
+            if (expected.length != events.size()) {
+                throw new AssertionError("Expected " + expected.length + " events but was " + events.size());
+            }
+        }
+
+        /**
+         * One-line summary suitable for logcat
+         */
+        public String summary() {
+            return String.format(Locale.US,
+                    "inputs=%d, faces=%d, none=%d, lowQuality=%d, failed=%d, skipped=%d, p50=%.1fms p90=%.1fms p99=%.1fms",
+                    size(), count(EVENT_FACE), count(EVENT_NO_FACE), count(EVENT_LOW_QUALITY),
+                    count(EVENT_FAILED), count(EVENT_SKIPPED),
+                    getLatencyMillis(50), getLatencyMillis(90), getLatencyMillis(99));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.eduface.app.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.graphics.Rect;
+
+import com.eduface.app.utils.FramePipelineConfig;
+import com.google.mlkit.vision.face.Face;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Scripted replays of the camera frame path: the events each recorded frame produces and
+ * the latency the pipeline adds on top of the detector.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PipelineReplayTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    // Well above the default policy's 15 fps, so every frame is analyzed
+    private static final long FRAME_INTERVAL_NANOS = 100_000_000L;
+    private static final long DETECTOR_LATENCY_MILLIS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ScriptedFaceDetectorEngine engine;
+    private PipelineReplayHarness harness;
+
+    @Before
+    public void setUp() {
+        engine = new ScriptedFaceDetectorEngine(DETECTOR_LATENCY_MILLIS);
+        harness = new PipelineReplayHarness(RuntimeEnvironment.getApplication(),
+                new FramePipelineConfig.Builder().build(), engine);
+    }
+
+    @After
+    public void tearDown() {
+        harness.shutdown();
+    }
+
+    @Test
+    public void replayReportsScriptedEventsInOrder() throws Exception {
+        Face face = mockFace(1, new Rect(16, 8, 48, 40));
+        engine.thenNoFaces()
+                .thenFaces(Collections.singletonList(face))
+                .thenFaces(Collections.singletonList(face))
+                .thenFailure()
+                .thenNoFaces();
+
+        PipelineReplayHarness.Result result = harness.replay(record(5, FRAME_INTERVAL_NANOS));
+
+        result.assertEvents(
+                PipelineReplayHarness.EVENT_NO_FACE,
+                PipelineReplayHarness.EVENT_FACE,
+                PipelineReplayHarness.EVENT_FACE,
+                PipelineReplayHarness.EVENT_FAILED,
+                PipelineReplayHarness.EVENT_NO_FACE);
+        assertEquals(5, engine.getCalls());
+    }
+
+    @Test
+    public void latencyIncludesDetectorTime() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            engine.thenNoFaces();
+        }
+
+        PipelineReplayHarness.Result result = harness.replay(record(10, FRAME_INTERVAL_NANOS));
+
+        assertEquals(10, result.count(PipelineReplayHarness.EVENT_NO_FACE));
+        double p50 = result.getLatencyMillis(50);
+        double p99 = result.getLatencyMillis(99);
+        assertTrue("p50 " + p50 + "ms below detector latency", p50 >= DETECTOR_LATENCY_MILLIS);
+        assertTrue("p99 " + p99 + "ms below p50 " + p50 + "ms", p99 >= p50);
+        // Conversion and dispatch of a small frame add little on top of the detector
+        assertTrue("p99 " + p99 + "ms", p99 < DETECTOR_LATENCY_MILLIS + 50);
+    }
+
+    @Test
+    public void framesWithinSchedulerIntervalAreSkipped() throws Exception {
+        engine.thenNoFaces().thenNoFaces();
+
+        // 10 ms apart: the second frame comes too soon after the first at 15 fps
+        PipelineReplayHarness.Result result = harness.replay(record(3, 10_000_000L));
+
+        result.assertEvents(
+                PipelineReplayHarness.EVENT_NO_FACE,
+                PipelineReplayHarness.EVENT_SKIPPED,
+                PipelineReplayHarness.EVENT_SKIPPED);
+        assertEquals(1, engine.getCalls());
+    }
+
+    @Test
+    public void frameAfterShutdownFailsAndIsClosed() throws Exception {
+        harness.shutdown();
+
+        // A frame CameraX delivers after the session ended must still be closed
+        PipelineReplayHarness.Result result = harness.replay(record(1, FRAME_INTERVAL_NANOS));
+
+        result.assertEvents(PipelineReplayHarness.EVENT_FAILED);
+        assertEquals(0, engine.getCalls());
+    }
+
+    /**
+     * Write a recording of uniform grey frames at a fixed interval
+     */
+    private File record(int frames, long intervalNanos) throws IOException {
+        File file = folder.newFile();
+        YuvFrameSequence.Frame frame = new YuvFrameSequence.Frame();
+        frame.width = WIDTH;
+        frame.height = HEIGHT;
+        frame.y = new byte[WIDTH * HEIGHT];
+        frame.u = new byte[(WIDTH / 2) * (HEIGHT / 2)];
+        frame.v = new byte[(WIDTH / 2) * (HEIGHT / 2)];
+        Arrays.fill(frame.y, (byte) 0x80);
+        Arrays.fill(frame.u, (byte) 0x80);
+        Arrays.fill(frame.v, (byte) 0x80);
+
+        try (YuvFrameSequence.Writer writer = new YuvFrameSequence.Writer(file)) {
+            for (int i = 0; i < frames; i++) {
+                frame.timestampNanos = 1_000_000_000L + i * intervalNanos;
+                writer.write(new ReplayImageProxy(frame));
+            }
+        }
+        return file;
+    }
+
+    private static Face mockFace(int trackingId, Rect boundingBox) {
+        Face face = mock(Face.class);
+        when(face.getTrackingId()).thenReturn(trackingId);
+        when(face.getBoundingBox()).thenReturn(boundingBox);
+        return face;
+    }
+}
@@ -0,0 +1,157 @@
+package com.eduface.app.replay;
+
+import android.graphics.ImageFormat;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.media.Image;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageInfo;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.impl.TagBundle;
+import androidx.camera.core.impl.utils.ExifData;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageProxy over a recorded frame, so replayed frames go through the same analyze()
+ * path as camera frames. There is no media Image behind it (getImage() returns null);
+ * FaceDetectionHelper copies such frames into NV21 instead.
+ */
+public class ReplayImageProxy implements ImageProxy, ImageInfo {
+
+    private final YuvFrameSequence.Frame frame;
+    private final PlaneProxy[] planes;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private Rect cropRect;
+
+    /**
+     * @param frame Recorded frame; must not be changed until this proxy is closed
+     */
+    public ReplayImageProxy(YuvFrameSequence.Frame frame) {
+        this.frame = frame;
+        this.cropRect = new Rect(0, 0, frame.width, frame.height);
+        this.planes = new PlaneProxy[]{
+                new Plane(frame.y, frame.width),
+                new Plane(frame.u, frame.width / 2),
+                new Plane(frame.v, frame.width / 2)
+        };
+    }
+
+    /**
+     * Wait until the pipeline has closed this frame
+     *
+     * @return False if it was still open after the timeout
+     */
+    public boolean awaitClose(long timeoutMillis) throws InterruptedException {
+        return closed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        closed.countDown();
+    }
+
+    @NonNull
+    @Override
+    public Rect getCropRect() {
+        return cropRect;
+    }
+
+    @Override
+    public void setCropRect(@Nullable Rect rect) {
+        cropRect = rect != null ? rect : new Rect(0, 0, frame.width, frame.height);
+    }
+
+    @Override
+    public int getFormat() {
+        return ImageFormat.YUV_420_888;
+    }
+
+    @Override
+    public int getWidth() {
+        return frame.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return frame.height;
+    }
+
+    @NonNull
+    @Override
+    public PlaneProxy[] getPlanes() {
+        return planes;
+    }
+
+    @NonNull
+    @Override
+    public ImageInfo getImageInfo() {
+        return this;
+    }
+
+    @Nullable
+    @Override
+    public Image getImage() {
+        return null;
+    }
+
+    @NonNull
+    @Override
+    public TagBundle getTagBundle() {
+        return TagBundle.emptyBundle();
+    }
+
+    @Override
+    public long getTimestamp() {
+        return frame.timestampNanos;
+    }
+
+    @Override
+    public int getRotationDegrees() {
+        return frame.rotationDegrees;
+    }
+
+    @NonNull
+    @Override
+    public Matrix getSensorToBufferTransformMatrix() {
+        return new Matrix();
+    }
+
+    @Override
+    public void populateExifData(@NonNull ExifData.Builder exifBuilder) {
+        exifBuilder.setOrientationDegrees(frame.rotationDegrees);
+    }
+
+    /**
+     * Tightly packed plane (pixel stride 1)
+     */
+    private static final class Plane implements PlaneProxy {
+        private final ByteBuffer buffer;
+        private final int rowStride;
+
+        Plane(byte[] data, int rowStride) {
+            this.buffer = ByteBuffer.wrap(data);
+            this.rowStride = rowStride;
+        }
+
+        @Override
+        public int getRowStride() {
+            return rowStride;
+        }
+
+        @Override
+        public int getPixelStride() {
+            return 1;
+        }
+
+        @NonNull
+        @Override
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+    }
+}
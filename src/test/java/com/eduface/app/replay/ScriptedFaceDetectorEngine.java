@@ -0,0 +1,100 @@
+package com.eduface.app.replay;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.eduface.app.utils.FaceDetectorEngine;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Deterministic FaceDetectorEngine for offline replay: call N returns the N-th scripted
+ * result, whatever the image contains. Results complete immediately (after an optional
+ * simulated latency), so with a direct callback executor a whole replay runs on one thread.
+ *
+ * Face objects cannot be constructed outside ML Kit, so scripts are built from faces captured
+ * by a real detector run or from Mockito mocks in unit tests.
+ */
+public class ScriptedFaceDetectorEngine implements FaceDetectorEngine {
+
+    private final List<List<Face>> script = new ArrayList<>();
+    private final long latencyMillis;
+    private int calls;
+    private boolean closed;
+
+    /**
+     * @param latencyMillis Time each call blocks for, to model detector cost (0 for none)
+     */
+    public ScriptedFaceDetectorEngine(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Append the result of the next call
+     */
+    public synchronized ScriptedFaceDetectorEngine thenFaces(List<Face> faces) {
+        script.add(Collections.unmodifiableList(new ArrayList<>(faces)));
+        return this;
+    }
+
+    /**
+     * Append a call that finds no faces
+     */
+    public synchronized ScriptedFaceDetectorEngine thenNoFaces() {
+        script.add(Collections.emptyList());
+        return this;
+    }
+
+    /**
+     * Append a call that fails
+     */
+    public synchronized ScriptedFaceDetectorEngine thenFailure() {
+        script.add(null);
+        return this;
+    }
+
+    /**
+     * Number of process() calls so far
+     */
+    public synchronized int getCalls() {
+        return calls;
+    }
+
+    @Override
+    public Task<List<Face>> process(InputImage image) {
+        List<Face> result;
+        synchronized (this) {
+            if (closed) {
+                // Like MlKitFaceDetectorEngine: a late frame fails instead of throwing
+                return Tasks.forException(new IllegalStateException("Detector engine is closed"));
+            }
+            if (calls >= script.size()) {
+                throw new IllegalStateException("Script exhausted after " + calls + " calls");
+            }
+            result = script.get(calls++);
+        }
+        if (latencyMillis > 0) {
+            SystemClock.sleep(latencyMillis);
+        }
+        return resultTask(result);
+    }
+
+    private static Task<List<Face>> resultTask(@Nullable List<Face> faces) {
+        if (faces == null) {
+            return Tasks.forException(new IllegalStateException("Scripted detector failure"));
+        }
+        return Tasks.forResult(faces);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,147 @@
+package com.eduface.app.replay;
+
+import androidx.camera.core.ImageProxy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Recorded camera frames for offline replay.
+ *
+ * Layout (big-endian, as written by DataOutputStream):
+ *   header  magic "EYUV", version
+ *   frames  width, height, rotationDegrees, timestampNanos (long), then the Y, U and V
+ *           planes as tightly packed I420 (width*height, then 2 x width/2*height/2 bytes)
+ *
+ * Frames are read one at a time, so long recordings do not need to fit in memory.
+ */
+public class YuvFrameSequence implements Closeable {
+
+    private static final int MAGIC = 0x45595556; // "EYUV"
+    private static final int VERSION = 1;
+
+    private final DataInputStream in;
+
+    /**
+     * One recorded frame. Plane arrays are reused between next() calls.
+     */
+    public static class Frame {
+        public int width;
+        public int height;
+        public int rotationDegrees;
+        public long timestampNanos;
+        public byte[] y = new byte[0];
+        public byte[] u = new byte[0];
+        public byte[] v = new byte[0];
+    }
+
+    private YuvFrameSequence(DataInputStream in) {
+        this.in = in;
+    }
+
+    public static YuvFrameSequence open(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            in.close();
+            throw new IOException("Not a frame recording: " + file);
+        }
+        return new YuvFrameSequence(in);
+    }
+
+    /**
+     * Read the next frame into a holder
+     *
+     * @return False at the end of the recording
+     */
+    public boolean next(Frame frame) throws IOException {
+        try {
+            frame.width = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        frame.height = in.readInt();
+        frame.rotationDegrees = in.readInt();
+        frame.timestampNanos = in.readLong();
+
+        int lumaSize = frame.width * frame.height;
+        int chromaSize = (frame.width / 2) * (frame.height / 2);
+        if (frame.y.length != lumaSize) {
+            frame.y = new byte[lumaSize];
+        }
+        if (frame.u.length != chromaSize) {
+            frame.u = new byte[chromaSize];
+            frame.v = new byte[chromaSize];
+        }
+        in.readFully(frame.y);
+        in.readFully(frame.u);
+        in.readFully(frame.v);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Records camera frames in the format read by YuvFrameSequence (e.g. to build a test recording)
+     */
+    public static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private byte[] row = new byte[0];
+
+        public Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        /**
+         * Append a YUV_420_888 frame. The caller still owns (and closes) the frame.
+         */
+        public void write(ImageProxy image) throws IOException {
+            int width = image.getWidth() & ~1;
+            int height = image.getHeight() & ~1;
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(image.getImageInfo().getRotationDegrees());
+            out.writeLong(image.getImageInfo().getTimestamp());
+
+            ImageProxy.PlaneProxy[] planes = image.getPlanes();
+            writePlane(planes[0], width, height);
+            writePlane(planes[1], width / 2, height / 2);
+            writePlane(planes[2], width / 2, height / 2);
+        }
+
+        private void writePlane(ImageProxy.PlaneProxy plane, int width, int height) throws IOException {
+            ByteBuffer buffer = plane.getBuffer();
+            int rowStride = plane.getRowStride();
+            int pixelStride = plane.getPixelStride();
+            if (row.length < width) {
+                row = new byte[width];
+            }
+            for (int y = 0; y < height; y++) {
+                int rowStart = y * rowStride;
+                for (int x = 0; x < width; x++) {
+                    row[x] = buffer.get(rowStart + x * pixelStride);
+                }
+                out.write(row, 0, width);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.eduface.app.ui.attendance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import com.eduface.app.adapters.AttendanceRowViewModel;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cursor paging, end detection, retries and cancellation of the attendance pager
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AttendancePagerTest {
+
+    private static final int PAGE_SIZE = 2;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final Query query = mock(Query.class);
+    private final AttendanceDecodeStats decodeStats = new AttendanceDecodeStats();
+    private final RecordingListener listener = new RecordingListener();
+    private final AttendancePager pager = new AttendancePager(query, PAGE_SIZE, listener, decodeStats);
+
+    @Test
+    public void pagesFollowTheCursorUntilAShortPage() throws InterruptedException {
+        DocumentSnapshot first = document("a1");
+        DocumentSnapshot second = document("a2");
+        Query firstPage = mock(Query.class);
+        when(query.limit(PAGE_SIZE)).thenReturn(firstPage);
+        when(firstPage.get()).thenReturn(Tasks.forResult(snapshot(first, second)));
+        Query afterSecond = mock(Query.class);
+        Query secondPage = mock(Query.class);
+        when(query.startAfter(second)).thenReturn(afterSecond);
+        when(afterSecond.limit(PAGE_SIZE)).thenReturn(secondPage);
+        when(secondPage.get()).thenReturn(Tasks.forResult(snapshot(document("a3"))));
+
+        pager.start();
+        assertTrue(pager.isLoading());
+        assertFalse(pager.loadNextPage());
+        awaitPages(1);
+
+        assertEquals(Arrays.asList("a1", "a2"), listener.ids.get(0));
+        assertTrue(listener.firstPages.get(0));
+        assertTrue(listener.hasMore.get(0));
+        assertTrue(pager.hasMore());
+
+        assertTrue(pager.loadNextPage());
+        awaitPages(2);
+
+        assertEquals(Arrays.asList("a3"), listener.ids.get(1));
+        assertFalse(listener.firstPages.get(1));
+        assertFalse(listener.hasMore.get(1));
+        assertFalse(pager.hasMore());
+        assertFalse(pager.loadNextPage());
+        assertEquals(2, decodeStats.getPageCount());
+        assertEquals(3, decodeStats.getRowCount());
+    }
+
+    @Test
+    public void failedPageIsRetriedFromTheSameCursor() throws InterruptedException {
+        Query firstPage = mock(Query.class);
+        when(query.limit(PAGE_SIZE)).thenReturn(firstPage);
+        when(firstPage.get())
+                .thenReturn(Tasks.forException(new IllegalStateException("offline")))
+                .thenReturn(Tasks.forResult(snapshot(document("a1"))));
+
+        pager.start();
+        awaitFailures(1);
+        assertFalse(pager.isLoading());
+
+        assertTrue(pager.loadNextPage());
+        awaitPages(1);
+        // Still the first page: the failure did not move the cursor
+        assertTrue(listener.firstPages.get(0));
+        assertEquals(Arrays.asList("a1"), listener.ids.get(0));
+    }
+
+    @Test
+    public void cancelledPageIsDropped() throws InterruptedException {
+        Query firstPage = mock(Query.class);
+        TaskCompletionSource<QuerySnapshot> result = new TaskCompletionSource<>();
+        when(query.limit(PAGE_SIZE)).thenReturn(firstPage);
+        when(firstPage.get()).thenReturn(result.getTask());
+
+        pager.start();
+        pager.cancel();
+        result.setResult(snapshot(document("a1")));
+        idleFor(200);
+
+        assertTrue(listener.ids.isEmpty());
+        assertFalse(pager.hasMore());
+        assertFalse(pager.loadNextPage());
+        pager.start();
+        assertFalse(pager.isLoading());
+    }
+
+    /**
+     * Decoding runs on the pager's own thread: keep running the main looper until it delivers
+     */
+    private void awaitPages(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (listener.ids.size() < count && System.currentTimeMillis() < deadline) {
+            idleFor(5);
+        }
+        assertEquals(count, listener.ids.size());
+    }
+
+    private void awaitFailures(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (listener.failures < count && System.currentTimeMillis() < deadline) {
+            idleFor(5);
+        }
+        assertEquals(count, listener.failures);
+    }
+
+    private static void idleFor(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        do {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(1);
+        } while (System.currentTimeMillis() < deadline);
+    }
+
+    private static QuerySnapshot snapshot(DocumentSnapshot... documents) {
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(Arrays.asList(documents));
+        return snapshot;
+    }
+
+    private static DocumentSnapshot document(String id) {
+        DocumentSnapshot document = mock(DocumentSnapshot.class);
+        when(document.getId()).thenReturn(id);
+        when(document.getBoolean("present")).thenReturn(true);
+        return document;
+    }
+
+    /**
+     * Records pages by their document IDs (callbacks arrive on the main thread)
+     */
+    private static class RecordingListener implements AttendancePager.Listener {
+        final List<List<String>> ids = new ArrayList<>();
+        final List<Boolean> firstPages = new ArrayList<>();
+        final List<Boolean> hasMore = new ArrayList<>();
+        int failures;
+
+        @Override
+        public void onPageLoaded(List<AttendanceRowViewModel> rows, boolean firstPage, boolean more) {
+            List<String> pageIds = new ArrayList<>();
+            for (AttendanceRowViewModel row : rows) {
+                pageIds.add(row.getId());
+            }
+            ids.add(pageIds);
+            firstPages.add(firstPage);
+            hasMore.add(more);
+        }
+
+        @Override
+        public void onPageFailed(Exception e) {
+            failures++;
+        }
+    }
+}
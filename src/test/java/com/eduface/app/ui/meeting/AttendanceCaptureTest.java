@@ -0,0 +1,169 @@
+package com.eduface.app.ui.meeting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import com.eduface.app.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transitions of the attendance capture state machine and their coalesced delivery
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AttendanceCaptureTest {
+
+    private final List<Integer> states = new ArrayList<>();
+    private final List<Integer> hints = new ArrayList<>();
+    private AttendanceCapture capture;
+
+    @Before
+    public void setUp() {
+        capture = new AttendanceCapture((state, hint) -> {
+            states.add(state);
+            hints.add(hint);
+        });
+    }
+
+    @Test
+    public void stableFaceWithoutVerificationStartsWrite() {
+        capture.start();
+        for (int i = 0; i < AttendanceCapture.DEFAULT_STABLE_FRAMES - 1; i++) {
+            capture.onFace(false);
+            assertEquals(AttendanceCapture.STATE_STABILIZING, capture.getState());
+        }
+        capture.onFace(false);
+        assertEquals(AttendanceCapture.STATE_WRITING, capture.getState());
+
+        capture.onWriteSucceeded();
+        assertTrue(capture.isDone());
+    }
+
+    @Test
+    public void verificationComesBeforeWrite() {
+        capture.start();
+        for (int i = 0; i < AttendanceCapture.DEFAULT_STABLE_FRAMES; i++) {
+            capture.onFace(true);
+        }
+        assertEquals(AttendanceCapture.STATE_VERIFYING, capture.getState());
+
+        // More face frames while verifying do not start the write
+        capture.onFace(true);
+        assertEquals(AttendanceCapture.STATE_VERIFYING, capture.getState());
+
+        capture.onVerified();
+        assertEquals(AttendanceCapture.STATE_WRITING, capture.getState());
+    }
+
+    @Test
+    public void lostFaceRestartsStabilization() {
+        capture.start();
+        capture.onFace(false);
+        capture.onFace(false);
+        capture.onNoFace(R.string.face_not_detected);
+        assertEquals(AttendanceCapture.STATE_SEARCHING, capture.getState());
+
+        capture.onFace(false);
+        capture.onFace(false);
+        assertEquals(AttendanceCapture.STATE_STABILIZING, capture.getState());
+    }
+
+    @Test
+    public void writeInFlightIgnoresFrameEvents() {
+        capture = new AttendanceCapture((state, hint) -> states.add(state), 1);
+        capture.start();
+        capture.onFace(false);
+
+        capture.onNoFace(R.string.face_not_detected);
+        capture.onFace(false);
+        capture.onVerified();
+        capture.stop();
+        assertEquals(AttendanceCapture.STATE_WRITING, capture.getState());
+    }
+
+    @Test
+    public void eventsBeforeStartAreIgnored() {
+        capture.onFace(false);
+        capture.onNoFace(R.string.face_not_detected);
+
+        assertEquals(AttendanceCapture.STATE_IDLE, capture.getState());
+        idleMainLooper();
+        assertTrue(states.isEmpty());
+    }
+
+    @Test
+    public void changesBetweenMessagesAreCoalesced() {
+        capture.start();
+        for (int i = 0; i < 30; i++) {
+            capture.onFace(false);
+        }
+        idleMainLooper();
+
+        // Only the latest state is delivered, once
+        assertEquals(1, states.size());
+        assertEquals(AttendanceCapture.STATE_WRITING, (int) states.get(0));
+        assertEquals(R.string.marking_attendance, (int) hints.get(0));
+    }
+
+    @Test
+    public void repeatedStateIsNotDeliveredAgain() {
+        capture.start();
+        idleMainLooper();
+        capture.onNoFace(R.string.face_not_detected);
+        idleMainLooper();
+        capture.onNoFace(R.string.face_not_detected);
+        idleMainLooper();
+
+        assertEquals(2, states.size());
+        assertEquals(R.string.verifying_face, (int) hints.get(0));
+        assertEquals(R.string.face_not_detected, (int) hints.get(1));
+    }
+
+    @Test
+    public void retriedWriteIsDeliveredEvenIfFailureWasCoalesced() {
+        capture = new AttendanceCapture((state, hint) -> states.add(state), 1);
+        capture.start();
+        capture.onFace(false);
+        idleMainLooper();
+        assertEquals(AttendanceCapture.STATE_WRITING, (int) states.get(states.size() - 1));
+        int delivered = states.size();
+
+        // Fails and is retried before the main thread runs: the listener must start a new write
+        capture.onWriteFailed();
+        capture.onFace(false);
+        idleMainLooper();
+
+        assertEquals(delivered + 1, states.size());
+        assertEquals(AttendanceCapture.STATE_WRITING, (int) states.get(delivered));
+    }
+
+    @Test
+    public void stopReturnsToIdleUnlessDone() {
+        capture = new AttendanceCapture((state, hint) -> states.add(state), 1);
+        capture.start();
+        capture.stop();
+        assertEquals(AttendanceCapture.STATE_IDLE, capture.getState());
+
+        capture.start();
+        capture.onFace(false);
+        capture.onWriteSucceeded();
+        capture.stop();
+        capture.start();
+        assertTrue(capture.isDone());
+        assertFalse(capture.summary().isEmpty());
+    }
+
+    private static void idleMainLooper() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
@@ -0,0 +1,133 @@
+package com.eduface.app.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Frame rate throttling and the slow down / speed up rules of the frame scheduler
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AdaptiveFrameSchedulerTest {
+
+    // 10 fps while searching, down to 2 fps after a second of stillness
+    private static final AdaptiveFrameScheduler.Policy POLICY =
+            new AdaptiveFrameScheduler.Policy(2f, 10f, 0.1f, 1000);
+    private static final float FPS_TOLERANCE = 0.01f;
+
+    @Test
+    public void framesAreThrottledToMaxFps() {
+        AdaptiveFrameScheduler scheduler = new AdaptiveFrameScheduler(POLICY);
+
+        assertTrue(scheduler.shouldAnalyze(millis(0)));
+        assertFalse(scheduler.shouldAnalyze(millis(50)));
+        assertTrue(scheduler.shouldAnalyze(millis(100)));
+        assertFalse(scheduler.shouldAnalyze(millis(133)));
+    }
+
+    @Test
+    public void stillFaceSlowsDownToMinFps() {
+        AdaptiveFrameScheduler scheduler = new AdaptiveFrameScheduler(POLICY);
+
+        long end = observeStill(scheduler, 0, 900, box(0));
+        // Not stable for long enough yet
+        assertEquals(10f, scheduler.getCurrentFps(), FPS_TOLERANCE);
+
+        observeStill(scheduler, end, 5000, box(0));
+        assertEquals(2f, scheduler.getCurrentFps(), FPS_TOLERANCE);
+    }
+
+    @Test
+    public void movementRestoresMaxFps() {
+        AdaptiveFrameScheduler scheduler = new AdaptiveFrameScheduler(POLICY);
+        long end = observeStill(scheduler, 0, 5000, box(0));
+
+        assertTrue(scheduler.shouldAnalyze(millis(end + 500)));
+        // A fifth of the box width, past the 10% threshold
+        scheduler.onFaceObserved(1, box(20));
+
+        assertEquals(10f, scheduler.getCurrentFps(), FPS_TOLERANCE);
+    }
+
+    @Test
+    public void smallMovementKeepsSlowRate() {
+        AdaptiveFrameScheduler scheduler = new AdaptiveFrameScheduler(POLICY);
+        long end = observeStill(scheduler, 0, 5000, box(0));
+
+        assertTrue(scheduler.shouldAnalyze(millis(end + 500)));
+        scheduler.onFaceObserved(1, box(5));
+
+        assertEquals(2f, scheduler.getCurrentFps(), FPS_TOLERANCE);
+    }
+
+    @Test
+    public void newFaceRestoresMaxFps() {
+        AdaptiveFrameScheduler scheduler = new AdaptiveFrameScheduler(POLICY);
+        long end = observeStill(scheduler, 0, 5000, box(0));
+
+        assertTrue(scheduler.shouldAnalyze(millis(end + 500)));
+        scheduler.onFaceObserved(2, box(0));
+
+        assertEquals(10f, scheduler.getCurrentFps(), FPS_TOLERANCE);
+    }
+
+    @Test
+    public void lostFaceRestoresMaxFps() {
+        AdaptiveFrameScheduler scheduler = new AdaptiveFrameScheduler(POLICY);
+        observeStill(scheduler, 0, 5000, box(0));
+
+        scheduler.onNoFace();
+
+        assertEquals(10f, scheduler.getCurrentFps(), FPS_TOLERANCE);
+    }
+
+    @Test
+    public void resetAnalyzesNextFrame() {
+        AdaptiveFrameScheduler scheduler = new AdaptiveFrameScheduler(POLICY);
+        long end = observeStill(scheduler, 0, 5000, box(0));
+        assertFalse(scheduler.shouldAnalyze(millis(end + 1)));
+
+        scheduler.reset();
+
+        assertTrue(scheduler.shouldAnalyze(millis(end + 1)));
+        assertEquals(10f, scheduler.getCurrentFps(), FPS_TOLERANCE);
+    }
+
+    @Test
+    public void policyKeepsMinBelowMax() {
+        AdaptiveFrameScheduler.Policy policy = new AdaptiveFrameScheduler.Policy(20f, 5f, 0.1f, 0);
+
+        assertEquals(5f, policy.getMinFps(), FPS_TOLERANCE);
+        assertEquals(5f, policy.getMaxFps(), FPS_TOLERANCE);
+    }
+
+    /**
+     * Feed 30 fps camera frames from start to end (ms) with the same face in every analyzed one
+     *
+     * @return Timestamp (ms) of the last analyzed frame
+     */
+    private static long observeStill(AdaptiveFrameScheduler scheduler, long start, long end, Rect box) {
+        long lastAnalyzed = start;
+        for (long t = start; t <= end; t += 33) {
+            if (scheduler.shouldAnalyze(millis(t))) {
+                scheduler.onFaceObserved(1, box);
+                lastAnalyzed = t;
+            }
+        }
+        return lastAnalyzed;
+    }
+
+    private static long millis(long millis) {
+        return millis * 1_000_000L;
+    }
+
+    private static Rect box(int offsetX) {
+        return new Rect(100 + offsetX, 100, 200 + offsetX, 200);
+    }
+}
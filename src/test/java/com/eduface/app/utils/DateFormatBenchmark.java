@@ -0,0 +1,105 @@
+package com.eduface.app.utils;
+
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Micro-benchmark of the date formatting done when binding list rows.
+ * Compares the old bind path (a new SimpleDateFormat per row), a shared java.time formatter
+ * and DateFormatCache, over a simulated scroll up and down a long attendance list.
+ * Uses warmup and measurement rounds in the style of JMH. Has no Android dependencies;
+ * run main() from the unit test classpath. It is not part of the test suite.
+ */
+public class DateFormatBenchmark {
+
+    private static final int[] ROW_COUNTS = {100, 1_000, 10_000};
+    // Attendance rows of one meeting are a few seconds apart, meetings are hours apart
+    private static final int ROWS_PER_MEETING = 40;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURE_ROUNDS = 10;
+    // Each round scrolls down the list and back up, binding every row twice
+    private static final int BINDS_PER_ROW = 2;
+
+    // Keeps results alive so the JIT cannot drop the loops
+    private static volatile int sink;
+
+    private DateFormatBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        System.out.println(run());
+    }
+
+    /**
+     * Run all sizes and return a printable report (nanoseconds per bind)
+     */
+    public static String run() {
+        StringBuilder report = new StringBuilder("rows  new SDF(ns)  java.time(ns)  cached(ns)  speedup\n");
+        Random random = new Random(42);
+        String pattern = DateFormatCache.PATTERN_ATTENDANCE_TIME;
+        DateTimeFormatter shared = DateTimeFormatter.ofPattern(pattern, Locale.US);
+        ZoneId zone = ZoneId.systemDefault();
+
+        for (int count : ROW_COUNTS) {
+            long[] times = new long[count];
+            long meetingStart = 1_700_000_000_000L;
+            for (int i = 0; i < count; i++) {
+                if (i % ROWS_PER_MEETING == 0) {
+                    meetingStart += 3_600_000L + random.nextInt(86_400_000);
+                }
+                times[i] = meetingStart + random.nextInt(120_000);
+            }
+
+            double sdfNanos = measure(times, () -> {
+                for (int pass = 0; pass < BINDS_PER_ROW; pass++) {
+                    for (long time : times) {
+                        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+                        sink += format.format(new Date(time)).length();
+                    }
+                }
+            });
+
+            double javaTimeNanos = measure(times, () -> {
+                for (int pass = 0; pass < BINDS_PER_ROW; pass++) {
+                    for (long time : times) {
+                        sink += shared.format(Instant.ofEpochMilli(time).atZone(zone)).length();
+                    }
+                }
+            });
+
+            // Fresh cache per size, as on opening the screen
+            DateFormatCache cache = new DateFormatCache(pattern, 256);
+            double cachedNanos = measure(times, () -> {
+                for (int pass = 0; pass < BINDS_PER_ROW; pass++) {
+                    for (long time : times) {
+                        sink += cache.format(time).length();
+                    }
+                }
+            });
+
+            report.append(String.format(Locale.US, "%5d  %11.0f  %13.0f  %10.0f  %6.1fx\n",
+                    count, sdfNanos, javaTimeNanos, cachedNanos, sdfNanos / cachedNanos));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Average nanoseconds per bind over the measurement rounds
+     */
+    private static double measure(long[] times, Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed / (double) (MEASURE_ROUNDS * BINDS_PER_ROW * times.length);
+    }
+}
@@ -0,0 +1,109 @@
+package com.eduface.app.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+/**
+ * Minute keying, LRU eviction and pattern validation of the shared date format cache
+ */
+public class DateFormatCacheTest {
+
+    private static final String PATTERN = "yyyy-MM-dd HH:mm";
+    // 2023-11-14 22:13:20 UTC
+    private static final long TIME = 1_700_000_000_000L;
+    private static final long MINUTE = 60_000L;
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void timesWithinAMinuteShareOneEntry() {
+        DateFormatCache cache = new DateFormatCache(PATTERN, 4);
+        long minuteStart = TIME - TIME % MINUTE;
+
+        String first = cache.format(minuteStart);
+        String last = cache.format(minuteStart + MINUTE - 1);
+
+        assertEquals("2023-11-14 22:13", first);
+        assertSame(first, last);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals("2023-11-14 22:14", cache.format(minuteStart + MINUTE));
+    }
+
+    @Test
+    public void timesBeforeEpochRoundDownToTheirMinute() {
+        DateFormatCache cache = new DateFormatCache(PATTERN, 4);
+
+        assertEquals("1969-12-31 23:59", cache.format(-1L));
+        assertEquals("1969-12-31 23:59", cache.format(-MINUTE));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedMinuteIsEvicted() {
+        DateFormatCache cache = new DateFormatCache(PATTERN, 2);
+        cache.format(TIME);
+        cache.format(TIME + MINUTE);
+        // Touch the first minute so the second is the least recently used
+        cache.format(TIME);
+        cache.format(TIME + 2 * MINUTE);
+        assertEquals(3, cache.getMissCount());
+
+        cache.format(TIME);
+        assertEquals(3, cache.getMissCount());
+        cache.format(TIME + MINUTE);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void zoneChangeDropsCachedStrings() {
+        DateFormatCache cache = new DateFormatCache(PATTERN, 4);
+        assertEquals("2023-11-14 22:13", cache.format(TIME));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+02:00"));
+
+        assertEquals("2023-11-15 00:13", cache.format(TIME));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void patternsShowingSecondsAreRejected() {
+        String[] rejected = {"HH:mm:ss", "HH:mm:ss.SSS", "HH:mm n", "A"};
+        for (String pattern : rejected) {
+            try {
+                new DateFormatCache(pattern, 4);
+                throw new AssertionError("Accepted " + pattern);
+            } catch (IllegalArgumentException expected) {
+                // Every time within a minute would show the first second formatted
+            }
+        }
+        // Quoted letters are literal text, not fields
+        new DateFormatCache("MMM dd 'since' HH:mm", 4);
+    }
+
+    @Test
+    public void sharedInstancePerPattern() {
+        assertSame(DateFormatCache.forPattern(DateFormatCache.PATTERN_MEETING_TIME),
+                DateFormatCache.forPattern(DateFormatCache.PATTERN_MEETING_TIME));
+        assertNotSame(DateFormatCache.forPattern(DateFormatCache.PATTERN_MEETING_TIME),
+                DateFormatCache.forPattern(DateFormatCache.PATTERN_ATTENDANCE_TIME));
+    }
+}
@@ -0,0 +1,162 @@
+package com.eduface.app.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.graphics.Rect;
+
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tier routing, box matching and per-track verdicts of the two-tier detector
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FaceDetectorCascadeTest {
+
+    private final FaceDetectorEngine fastEngine = mock(FaceDetectorEngine.class);
+    private final FaceDetectorEngine accurateEngine = mock(FaceDetectorEngine.class);
+    private final FrameStats stats = new FrameStats();
+
+    @Test
+    public void tiersRunOnTheirOwnEngines() {
+        FaceDetectorCascade cascade = new FaceDetectorCascade(fastEngine, accurateEngine, stats);
+        InputImage image = mock(InputImage.class);
+        Task<List<Face>> fast = task();
+        Task<List<Face>> accurate = task();
+        when(fastEngine.process(image)).thenReturn(fast);
+        when(accurateEngine.process(image)).thenReturn(accurate);
+
+        assertTrue(cascade.isConfirmationEnabled());
+        assertSame(fast, cascade.detect(image));
+        assertSame(accurate, cascade.confirm(image));
+    }
+
+    @Test
+    public void confirmationNeedsAccurateTier() {
+        FaceDetectorCascade cascade = new FaceDetectorCascade(fastEngine, null, stats);
+
+        assertFalse(cascade.isConfirmationEnabled());
+        try {
+            cascade.confirm(mock(InputImage.class));
+            fail("Confirmed without an accurate tier");
+        } catch (IllegalStateException expected) {
+            // The helper checks isConfirmationEnabled() first
+        }
+    }
+
+    @Test
+    public void closeReleasesBothTiersOnce() {
+        FaceDetectorCascade cascade = new FaceDetectorCascade(fastEngine, accurateEngine, stats);
+
+        cascade.close();
+        cascade.close();
+        cascade.prewarm();
+
+        verify(fastEngine, times(1)).close();
+        verify(accurateEngine, times(1)).close();
+        verify(fastEngine, times(0)).prewarm();
+        try {
+            cascade.confirm(mock(InputImage.class));
+            fail("Confirmed after close");
+        } catch (IllegalStateException expected) {
+            // Closed cascades do not start accurate passes
+        }
+    }
+
+    @Test
+    public void matchPicksBestOverlap() {
+        Face fastFace = face(new Rect(100, 100, 200, 200));
+        Face shifted = face(new Rect(150, 150, 250, 250));
+        Face tight = face(new Rect(105, 105, 195, 195));
+
+        assertSame(tight, FaceDetectorCascade.match(fastFace, Arrays.asList(shifted, tight)));
+    }
+
+    @Test
+    public void matchIgnoresOtherFaces() {
+        Face fastFace = face(new Rect(100, 100, 200, 200));
+        // Overlaps, but well under the minimum intersection-over-union
+        Face neighbour = face(new Rect(180, 180, 280, 280));
+
+        assertNull(FaceDetectorCascade.match(fastFace, Collections.singletonList(neighbour)));
+        assertNull(FaceDetectorCascade.match(fastFace, Collections.emptyList()));
+    }
+
+    @Test
+    public void verdictsAreRememberedPerTrack() {
+        FaceDetectorCascade cascade = new FaceDetectorCascade(fastEngine, accurateEngine, stats);
+
+        cascade.setVerdict(1, true);
+        cascade.setVerdict(2, false);
+        // Untracked faces are counted but cannot be remembered
+        cascade.setVerdict(null, true);
+
+        assertEquals(FaceDetectorCascade.VERDICT_CONFIRMED, cascade.getVerdict(1));
+        assertEquals(FaceDetectorCascade.VERDICT_REJECTED, cascade.getVerdict(2));
+        assertEquals(FaceDetectorCascade.VERDICT_UNKNOWN, cascade.getVerdict(3));
+        assertEquals(FaceDetectorCascade.VERDICT_UNKNOWN, cascade.getVerdict(null));
+        assertEquals(2, cascade.getConfirmedFaces());
+        assertEquals(1, cascade.getRejectedFaces());
+
+        cascade.reset();
+        assertEquals(FaceDetectorCascade.VERDICT_UNKNOWN, cascade.getVerdict(1));
+    }
+
+    @Test
+    public void leastRecentlyUsedVerdictIsEvicted() {
+        FaceDetectorCascade cascade = new FaceDetectorCascade(fastEngine, accurateEngine, stats);
+        for (int id = 0; id < 32; id++) {
+            cascade.setVerdict(id, true);
+        }
+        // Still in view, so looked up every frame
+        cascade.getVerdict(0);
+
+        cascade.setVerdict(32, true);
+
+        assertEquals(FaceDetectorCascade.VERDICT_CONFIRMED, cascade.getVerdict(0));
+        assertEquals(FaceDetectorCascade.VERDICT_UNKNOWN, cascade.getVerdict(1));
+        assertEquals(FaceDetectorCascade.VERDICT_CONFIRMED, cascade.getVerdict(32));
+    }
+
+    @Test
+    public void latenciesGoToTheirStages() {
+        FaceDetectorCascade cascade = new FaceDetectorCascade(fastEngine, accurateEngine, stats);
+
+        cascade.recordFast(1_000_000L);
+        cascade.recordFast(3_000_000L);
+        cascade.recordAccurate(20_000_000L);
+
+        assertEquals(2, stats.getCount(FrameStats.STAGE_DETECT));
+        assertEquals(1, stats.getCount(FrameStats.STAGE_CONFIRM));
+        assertEquals(2.0, stats.getAverageMillis(FrameStats.STAGE_DETECT), 1e-6);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Task<List<Face>> task() {
+        return mock(Task.class);
+    }
+
+    private static Face face(Rect box) {
+        Face face = mock(Face.class);
+        when(face.getBoundingBox()).thenReturn(box);
+        return face;
+    }
+}
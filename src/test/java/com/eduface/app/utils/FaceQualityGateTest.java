@@ -0,0 +1,113 @@
+package com.eduface.app.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.graphics.Rect;
+
+import com.eduface.app.replay.ReplayImageProxy;
+import com.eduface.app.replay.YuvFrameSequence;
+import com.google.mlkit.vision.face.Face;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Pose, size, sharpness and lighting scores of the face quality gate and the rejection reason
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FaceQualityGateTest {
+
+    private static final int IMAGE_SIZE = 128;
+    private static final Rect FACE_BOX = new Rect(32, 32, 96, 96);
+
+    private final FaceQualityGate gate = new FaceQualityGate(FaceQualityGate.Policy.DEFAULT);
+
+    @Test
+    public void frontalFaceIsAccepted() {
+        assertTrue(gate.accept(face(0f, 0f), FACE_BOX, IMAGE_SIZE, null));
+        assertEquals(1f, gate.getLastScore(), 1e-6f);
+        assertEquals(FaceQualityGate.REASON_NONE, gate.getLastReason());
+    }
+
+    @Test
+    public void turnedHeadIsRejectedForPose() {
+        assertFalse(gate.accept(face(25f, 0f), FACE_BOX, IMAGE_SIZE, null));
+        assertEquals(FaceQualityGate.REASON_POSE, gate.getLastReason());
+    }
+
+    @Test
+    public void smallFaceIsRejectedForSize() {
+        // 40 of 640 pixels wide: a third of the policy's good face width
+        assertFalse(gate.accept(face(0f, 0f), new Rect(0, 0, 40, 40), 640, null));
+        assertEquals(FaceQualityGate.REASON_SIZE, gate.getLastReason());
+    }
+
+    @Test
+    public void classroomPolicyAcceptsSmallerFaces() {
+        FaceQualityGate classroom = new FaceQualityGate(FaceQualityGate.Policy.CLASSROOM);
+
+        assertTrue(classroom.accept(face(0f, 0f), new Rect(0, 0, 40, 40), 640, null));
+    }
+
+    @Test
+    public void flatFrameIsRejectedForBlur() {
+        assertFalse(gate.accept(face(0f, 0f), FACE_BOX, IMAGE_SIZE, frame(128, 128)));
+        assertEquals(FaceQualityGate.REASON_BLUR, gate.getLastReason());
+    }
+
+    @Test
+    public void darkFrameIsRejectedForLighting() {
+        assertFalse(gate.accept(face(0f, 0f), FACE_BOX, IMAGE_SIZE, frame(0, 30)));
+        assertEquals(FaceQualityGate.REASON_LIGHTING, gate.getLastReason());
+    }
+
+    @Test
+    public void sharpWellLitFrameIsAccepted() {
+        assertTrue(gate.accept(face(0f, 0f), FACE_BOX, IMAGE_SIZE, frame(80, 180)));
+        assertEquals(FaceQualityGate.REASON_NONE, gate.getLastReason());
+    }
+
+    @Test
+    public void boxOutsideFrameSkipsPixelScores() {
+        // Nothing to sample: only pose and size count
+        assertTrue(gate.accept(face(0f, 0f), new Rect(200, 200, 264, 264), IMAGE_SIZE, frame(128, 128)));
+    }
+
+    @Test
+    public void weakestScoreIsReported() {
+        // Slightly turned but far too blurry
+        assertFalse(gate.accept(face(10f, 0f), FACE_BOX, IMAGE_SIZE, frame(128, 128)));
+        assertEquals(FaceQualityGate.REASON_BLUR, gate.getLastReason());
+    }
+
+    private static Face face(float yaw, float pitch) {
+        Face face = mock(Face.class);
+        when(face.getHeadEulerAngleY()).thenReturn(yaw);
+        when(face.getHeadEulerAngleX()).thenReturn(pitch);
+        when(face.getHeadEulerAngleZ()).thenReturn(0f);
+        return face;
+    }
+
+    /**
+     * Upright frame with a checkerboard of two luma values (equal values give a flat frame)
+     */
+    private static ReplayImageProxy frame(int even, int odd) {
+        YuvFrameSequence.Frame frame = new YuvFrameSequence.Frame();
+        frame.width = IMAGE_SIZE;
+        frame.height = IMAGE_SIZE;
+        frame.y = new byte[IMAGE_SIZE * IMAGE_SIZE];
+        for (int y = 0; y < IMAGE_SIZE; y++) {
+            for (int x = 0; x < IMAGE_SIZE; x++) {
+                frame.y[y * IMAGE_SIZE + x] = (byte) ((x + y) % 2 == 0 ? even : odd);
+            }
+        }
+        frame.u = new byte[IMAGE_SIZE * IMAGE_SIZE / 4];
+        frame.v = new byte[IMAGE_SIZE * IMAGE_SIZE / 4];
+        return new ReplayImageProxy(frame);
+    }
+}
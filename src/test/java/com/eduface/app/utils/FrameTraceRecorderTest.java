@@ -0,0 +1,82 @@
+package com.eduface.app.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Rect;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ring buffer wrap-around and the export formats of the detection trace
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FrameTraceRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void binaryExportStartsWithMagicAndKeepsNewestFrames() throws IOException {
+        FrameTraceRecorder recorder = new FrameTraceRecorder(2);
+        recorder.record(100, FrameTraceRecorder.OUTCOME_NO_FACE, 0, 0, null, null);
+        recorder.record(200, FrameTraceRecorder.OUTCOME_FACE, 5_000_000, 1, new Rect(1, 2, 3, 4), 7);
+        recorder.record(300, FrameTraceRecorder.OUTCOME_SKIPPED, 0, 0, null, null);
+        File file = folder.newFile();
+
+        recorder.exportBinary(file);
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] magic = new byte[4];
+            in.readFully(magic);
+            assertEquals("EFTR", new String(magic, StandardCharsets.US_ASCII));
+            assertEquals(1, in.readInt()); // version
+            assertEquals(2, in.readInt()); // frames held
+            assertEquals(8, in.readInt()); // fields per frame
+
+            // Oldest held frame first: the frame at 100 was overwritten
+            assertEquals(200, in.readLong());
+            in.readLong(); // recorded at
+            assertEquals(FrameTraceRecorder.OUTCOME_FACE, in.readInt());
+            assertEquals(5000, in.readInt()); // latency in microseconds
+            assertEquals(1, in.readInt());
+            assertEquals(1, in.readInt());
+            assertEquals(2, in.readInt());
+            assertEquals(3, in.readInt());
+            assertEquals(4, in.readInt());
+            assertEquals(7, in.readInt());
+            assertEquals(300, in.readLong());
+        }
+        assertEquals(3, recorder.getRecordedFrames());
+    }
+
+    @Test
+    public void csvExportHasHeaderAndOneRowPerFrame() throws IOException {
+        FrameTraceRecorder recorder = new FrameTraceRecorder();
+        recorder.record(100, FrameTraceRecorder.OUTCOME_NO_FACE, 0, 0, null, null);
+        recorder.record(200, FrameTraceRecorder.OUTCOME_FAILED, 0, 0, null, null);
+        File file = folder.newFile();
+
+        recorder.exportCsv(file);
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            assertTrue(reader.readLine().startsWith("frame_timestamp_ns,"));
+            assertTrue(reader.readLine().startsWith("100,"));
+            assertTrue(reader.readLine().startsWith("200,"));
+            assertNull(reader.readLine());
+        }
+    }
+}
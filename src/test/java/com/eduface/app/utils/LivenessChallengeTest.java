@@ -0,0 +1,97 @@
+package com.eduface.app.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.mlkit.vision.face.Face;
+
+import org.junit.Test;
+
+/**
+ * Blink and head turn detection over consecutive frames of one tracked face
+ */
+public class LivenessChallengeTest {
+
+    private static final long FRAME_NANOS = 100_000_000L;
+
+    @Test
+    public void blinkAndHeadTurnPass() {
+        LivenessChallenge challenge = new LivenessChallenge();
+
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(0), face(1, 0.9f, 0f)));
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(1), face(1, 0.1f, 0f)));
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(2), face(1, 0.9f, 0f)));
+        Face turned = face(1, 0.9f, 20f);
+        assertEquals(LivenessChallenge.RESULT_PASSED, challenge.onFrame(frame(3), turned));
+        assertSame(turned, challenge.getLastFace());
+    }
+
+    @Test
+    public void stillFaceFailsAfterWindow() {
+        LivenessChallenge challenge = new LivenessChallenge(1000, true, true);
+        Face still = face(1, 0.9f, 0f);
+
+        for (int i = 0; i <= 10; i++) {
+            assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(i), still));
+        }
+        assertEquals(LivenessChallenge.RESULT_FAILED, challenge.onFrame(frame(11), still));
+    }
+
+    @Test
+    public void closedEyesAloneAreNotABlink() {
+        LivenessChallenge challenge = new LivenessChallenge(1000, true, false);
+
+        // Eyes must be seen open first, so a photo with closed eyes does not count
+        challenge.onFrame(frame(0), face(1, 0.1f, 0f));
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(1), face(1, 0.9f, 0f)));
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(2), face(1, 0.1f, 0f)));
+        assertEquals(LivenessChallenge.RESULT_PASSED, challenge.onFrame(frame(3), face(1, 0.9f, 0f)));
+    }
+
+    @Test
+    public void differentFaceRestartsChallenge() {
+        LivenessChallenge challenge = new LivenessChallenge(2000, true, false);
+
+        challenge.onFrame(frame(0), face(1, 0.9f, 0f));
+        challenge.onFrame(frame(1), face(1, 0.1f, 0f));
+        // Someone else opens their eyes: the blink must come from one person
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(2), face(2, 0.9f, 0f)));
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(3), face(2, 0.1f, 0f)));
+        assertEquals(LivenessChallenge.RESULT_PASSED, challenge.onFrame(frame(4), face(2, 0.9f, 0f)));
+    }
+
+    @Test
+    public void headTurnIsMeasuredFromFirstPose() {
+        LivenessChallenge challenge = new LivenessChallenge(2000, false, true);
+
+        // Already turned when the challenge starts: that pose is the baseline
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(0), face(1, 0.9f, 20f)));
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(1), face(1, 0.9f, 25f)));
+        assertEquals(LivenessChallenge.RESULT_PASSED, challenge.onFrame(frame(2), face(1, 0.9f, 0f)));
+    }
+
+    @Test
+    public void framesWithoutFaceKeepProgress() {
+        LivenessChallenge challenge = new LivenessChallenge(2000, true, false);
+
+        challenge.onFrame(frame(0), face(1, 0.9f, 0f));
+        challenge.onFrame(frame(1), face(1, 0.1f, 0f));
+        assertEquals(LivenessChallenge.RESULT_PENDING, challenge.onFrame(frame(2), null));
+        assertEquals(LivenessChallenge.RESULT_PASSED, challenge.onFrame(frame(3), face(1, 0.9f, 0f)));
+    }
+
+    private static long frame(int index) {
+        return 5_000_000_000L + index * FRAME_NANOS;
+    }
+
+    private static Face face(int trackingId, float eyesOpen, float yaw) {
+        Face face = mock(Face.class);
+        when(face.getTrackingId()).thenReturn(trackingId);
+        when(face.getLeftEyeOpenProbability()).thenReturn(eyesOpen);
+        when(face.getRightEyeOpenProbability()).thenReturn(eyesOpen);
+        when(face.getHeadEulerAngleY()).thenReturn(yaw);
+        return face;
+    }
+}
@@ -0,0 +1,131 @@
+package com.eduface.app.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.graphics.Rect;
+
+import com.google.mlkit.vision.face.Face;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stability counting, one-time reporting and track expiry of the classroom face tracker
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MultiFaceTrackerTest {
+
+    @Test
+    public void stableFaceIsReportedOnce() {
+        MultiFaceTracker tracker = new MultiFaceTracker();
+        Face face = face(1, 100, 100);
+
+        assertTrue(tracker.update(Collections.singletonList(face)).isEmpty());
+        assertTrue(tracker.hasPendingFaces());
+        assertTrue(tracker.update(Collections.singletonList(face)).isEmpty());
+
+        List<Face> candidates = tracker.update(Collections.singletonList(face));
+        assertEquals(1, candidates.size());
+        assertSame(face, candidates.get(0));
+        assertFalse(tracker.hasPendingFaces());
+
+        assertTrue(tracker.update(Collections.singletonList(face)).isEmpty());
+    }
+
+    @Test
+    public void movementRestartsStabilization() {
+        MultiFaceTracker tracker = new MultiFaceTracker();
+
+        tracker.update(Collections.singletonList(face(1, 100, 100)));
+        tracker.update(Collections.singletonList(face(1, 100, 100)));
+        // Moved by half the box width, well past the 15% threshold
+        assertTrue(tracker.update(Collections.singletonList(face(1, 150, 100))).isEmpty());
+        assertTrue(tracker.update(Collections.singletonList(face(1, 150, 100))).isEmpty());
+        assertEquals(1, tracker.update(Collections.singletonList(face(1, 152, 101))).size());
+    }
+
+    @Test
+    public void everyFaceIsReportedSeparately() {
+        MultiFaceTracker tracker = new MultiFaceTracker(2, 10, 0.15f);
+        List<Face> frame = Arrays.asList(face(1, 100, 100), face(2, 400, 100));
+
+        assertTrue(tracker.update(frame).isEmpty());
+        assertEquals(2, tracker.update(frame).size());
+        assertEquals(2, tracker.getTrackedCount());
+
+        // A third student sits down; the others are not reported again
+        List<Face> candidates = tracker.update(Arrays.asList(frame.get(0), frame.get(1), face(3, 700, 100)));
+        assertTrue(candidates.isEmpty());
+        assertTrue(tracker.hasPendingFaces());
+        candidates = tracker.update(Arrays.asList(frame.get(0), frame.get(1), face(3, 700, 100)));
+        assertEquals(1, candidates.size());
+        assertEquals(Integer.valueOf(3), candidates.get(0).getTrackingId());
+    }
+
+    @Test
+    public void faceWithoutTrackingIdIsIgnored() {
+        MultiFaceTracker tracker = new MultiFaceTracker(1, 10, 0.15f);
+
+        assertTrue(tracker.update(Collections.singletonList(face(null, 100, 100))).isEmpty());
+        assertEquals(0, tracker.getTrackedCount());
+        assertFalse(tracker.hasPendingFaces());
+    }
+
+    @Test
+    public void missingFaceIsForgottenAndReportedAgain() {
+        MultiFaceTracker tracker = new MultiFaceTracker(1, 2, 0.15f);
+        Face face = face(1, 100, 100);
+
+        assertEquals(1, tracker.update(Collections.singletonList(face)).size());
+        tracker.update(Collections.emptyList());
+        tracker.update(Collections.emptyList());
+        assertEquals(1, tracker.getTrackedCount());
+        tracker.update(Collections.emptyList());
+        assertEquals(0, tracker.getTrackedCount());
+
+        assertEquals(1, tracker.update(Collections.singletonList(face)).size());
+    }
+
+    @Test
+    public void retryReportsAfterAnotherStableRun() {
+        MultiFaceTracker tracker = new MultiFaceTracker();
+        Face face = face(1, 100, 100);
+
+        tracker.update(Collections.singletonList(face));
+        tracker.update(Collections.singletonList(face));
+        assertEquals(1, tracker.update(Collections.singletonList(face)).size());
+
+        tracker.retry(1);
+        assertTrue(tracker.hasPendingFaces());
+        assertTrue(tracker.update(Collections.singletonList(face)).isEmpty());
+        assertEquals(1, tracker.update(Collections.singletonList(face)).size());
+    }
+
+    @Test
+    public void resetReportsEveryFaceAgain() {
+        MultiFaceTracker tracker = new MultiFaceTracker(1, 10, 0.15f);
+        Face face = face(1, 100, 100);
+
+        assertEquals(1, tracker.update(Collections.singletonList(face)).size());
+        tracker.reset();
+        assertEquals(0, tracker.getTrackedCount());
+        assertEquals(1, tracker.update(Collections.singletonList(face)).size());
+    }
+
+    private static Face face(Integer trackingId, int centerX, int centerY) {
+        Face face = mock(Face.class);
+        when(face.getTrackingId()).thenReturn(trackingId);
+        when(face.getBoundingBox()).thenReturn(new Rect(centerX - 50, centerY - 50, centerX + 50, centerY + 50));
+        return face;
+    }
+}